@@ -4,14 +4,21 @@ import com.example.bankcards.dto.*;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardSummaryRepository.CardSummary;
+import com.example.bankcards.service.ApproximateCountService;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.TotalCountMode;
 import com.example.bankcards.service.UserService;
+import com.example.bankcards.util.KeysetCursorUtils;
 import com.example.bankcards.util.PageableUtils;
 import com.example.bankcards.security.PermissionService;
 import com.example.bankcards.security.SecurityUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -20,6 +27,7 @@ import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
 import java.util.List;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.example.bankcards.exception.UserNotFoundException;
@@ -46,19 +54,26 @@ public class CardController {
 
     private static final Logger log = LoggerFactory.getLogger(CardController.class);
 
+    // Поля для курсорной сортировки: только NOT NULL колонки, иначе keyset-условие теряет строки
+    private static final Set<String> KEYSET_SORT_FIELDS = Set.of("id", "status", "expirationDate");
+    private static final Sort LIST_SORT = Sort.by("id");
+
     private final CardService cardService;
     private final UserService userService;
     private final CardMapper cardMapper;
     private final PermissionService permissionService;
     private final SecurityUtil securityUtil; // новый компонент
+    private final ApproximateCountService approximateCountService;
 
     @Autowired
-    public CardController(CardService cardService, UserService userService, CardMapper cardMapper, PermissionService permissionService, SecurityUtil securityUtil) {
+    public CardController(CardService cardService, UserService userService, CardMapper cardMapper, PermissionService permissionService, SecurityUtil securityUtil,
+                          ApproximateCountService approximateCountService) {
         this.cardService = cardService;
         this.userService = userService;
         this.cardMapper = cardMapper;
         this.permissionService = permissionService;
         this.securityUtil = securityUtil;
+        this.approximateCountService = approximateCountService;
     }
 
     // Создание новой карты
@@ -103,25 +118,26 @@ public class CardController {
     // Получение всех карт пользователя
     @GetMapping("/user/{userId}")
     public ResponseEntity<List<CardDto>> getUserCards(@PathVariable Long userId) {
-        List<Card> cards = cardService.getCardsByUserId(userId);
-        List<CardDto> cardDtos = cardMapper.toDtoList(cards);
-        return ResponseEntity.ok(cardDtos);
+        CardSearchDto searchDto = new CardSearchDto();
+        searchDto.setUserId(userId);
+        return ResponseEntity.ok(summaryList(searchDto));
     }
 
     // Получение активных карт пользователя
     @GetMapping("/user/{userId}/active")
     public ResponseEntity<List<CardDto>> getActiveUserCards(@PathVariable Long userId) {
-        List<Card> cards = cardService.getActiveCardsByUserId(userId);
-        List<CardDto> cardDtos = cardMapper.toDtoList(cards);
-        return ResponseEntity.ok(cardDtos);
+        CardSearchDto searchDto = new CardSearchDto();
+        searchDto.setUserId(userId);
+        searchDto.setStatus(CardStatus.ACTIVE);
+        return ResponseEntity.ok(summaryList(searchDto));
     }
 
     // Получение карт по статусу
     @GetMapping("/status/{status}")
     public ResponseEntity<List<CardDto>> getCardsByStatus(@PathVariable CardStatus status) {
-        List<Card> cards = cardService.getCardsByStatus(status);
-        List<CardDto> cardDtos = cardMapper.toDtoList(cards);
-        return ResponseEntity.ok(cardDtos);
+        CardSearchDto searchDto = new CardSearchDto();
+        searchDto.setStatus(status);
+        return ResponseEntity.ok(summaryList(searchDto));
     }
 
     // Блокировка карты
@@ -212,7 +228,8 @@ public class CardController {
     }
 
     // Поиск карт с комбинированными фильтрами
-    @Operation(summary = "Поиск карт", description = "Комбинированный поиск по статусу, пользователю, владельцу и маске номера")
+    @Operation(summary = "Поиск карт", description = "Комбинированный поиск по статусу, пользователю, владельцу и маске номера "
+            + "(последние 4 цифры или полный номер); не более size карт по возрастанию id, следующие — параметром page")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "ОК",
                     content = @Content(mediaType = "application/json",
@@ -226,16 +243,18 @@ public class CardController {
             @RequestParam(required = false) CardStatus status,
             @RequestParam(required = false) Long userId,
             @RequestParam(required = false) String ownerName,
-            @RequestParam(required = false) String mask) {
+            @RequestParam(defaultValue = "false") boolean ownerNamePrefix,
+            @RequestParam(required = false) String mask,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "100") int size) {
         boolean isAdmin = securityUtil.isAdmin();
         Long effectiveUserId = isAdmin ? userId : securityUtil.getCurrentUserId();
         CardSearchDto searchDto = new CardSearchDto(status, effectiveUserId, ownerName, mask);
-        List<Card> cards = cardService.searchCards(searchDto);
-        if (!isAdmin) {
-            Long currentId = securityUtil.getCurrentUserId();
-            cards = cards.stream().filter(c -> c.getUser() != null && c.getUser().getId() != null && c.getUser().getId().equals(currentId)).toList();
-        }
-        List<CardDto> cardDtos = cardMapper.toDtoList(cards);
+        searchDto.setOwnerNamePrefix(ownerNamePrefix);
+        searchDto.setOwnerOnly(!isAdmin);
+        // Выдача ограничена страницей (size + 1 строк, без COUNT) — таблица целиком в память не читается
+        Pageable pageable = PageableUtils.createPageable(page, size, "id", "asc");
+        List<CardDto> cardDtos = cardMapper.toSummaryDtoList(cardService.searchCardSummarySlice(searchDto, pageable).getContent());
         return ResponseEntity.ok(cardDtos);
     }
 
@@ -251,14 +270,13 @@ public class CardController {
     })
     @GetMapping("/search/mask/{mask}")
     public ResponseEntity<List<CardDto>> searchCardsByMask(@PathVariable String mask) {
-        boolean isAdmin = securityUtil.isAdmin();
-        List<Card> cards = cardService.searchCardsByMask(mask);
-        if (!isAdmin) {
-            Long currentId = securityUtil.getCurrentUserId();
-            cards = cards.stream().filter(c -> c.getUser() != null && c.getUser().getId() != null && c.getUser().getId().equals(currentId)).toList();
+        if (mask.trim().isEmpty()) {
+            return ResponseEntity.ok(List.of());
         }
-        List<CardDto> cardDtos = cardMapper.toDtoList(cards);
-        return ResponseEntity.ok(cardDtos);
+        CardSearchDto searchDto = new CardSearchDto();
+        searchDto.setMask(mask);
+        restrictToCurrentUser(searchDto);
+        return ResponseEntity.ok(summaryList(searchDto));
     }
 
     // Поиск карт по имени владельца
@@ -273,14 +291,13 @@ public class CardController {
     })
     @GetMapping("/search/owner")
     public ResponseEntity<List<CardDto>> searchCardsByOwnerName(@RequestParam String ownerName) {
-        boolean isAdmin = securityUtil.isAdmin();
-        List<Card> cards = cardService.searchCardsByOwnerName(ownerName);
-        if (!isAdmin) {
-            Long currentId = securityUtil.getCurrentUserId();
-            cards = cards.stream().filter(c -> c.getUser() != null && c.getUser().getId() != null && c.getUser().getId().equals(currentId)).toList();
+        if (ownerName.trim().isEmpty()) {
+            return ResponseEntity.ok(List.of());
         }
-        List<CardDto> cardDtos = cardMapper.toDtoList(cards);
-        return ResponseEntity.ok(cardDtos);
+        CardSearchDto searchDto = new CardSearchDto();
+        searchDto.setOwnerName(ownerName);
+        restrictToCurrentUser(searchDto);
+        return ResponseEntity.ok(summaryList(searchDto));
     }
 
     // Поиск карт по статусу и владельцу
@@ -288,15 +305,11 @@ public class CardController {
     public ResponseEntity<List<CardDto>> searchCardsByStatusAndOwner(
             @RequestParam(required = false) CardStatus status,
             @RequestParam(required = false) Long userId) {
-        boolean isAdmin = securityUtil.isAdmin();
-        Long effectiveUserId = isAdmin ? userId : securityUtil.getCurrentUserId();
-        List<Card> cards = cardService.searchCardsByStatusAndOwner(status, effectiveUserId);
-        if (!isAdmin) {
-            Long currentId = securityUtil.getCurrentUserId();
-            cards = cards.stream().filter(c -> c.getUser() != null && c.getUser().getId() != null && c.getUser().getId().equals(currentId)).toList();
-        }
-        List<CardDto> cardDtos = cardMapper.toDtoList(cards);
-        return ResponseEntity.ok(cardDtos);
+        CardSearchDto searchDto = new CardSearchDto();
+        searchDto.setStatus(status);
+        searchDto.setUserId(userId);
+        restrictToCurrentUser(searchDto);
+        return ResponseEntity.ok(summaryList(searchDto));
     }
 
     // Получение всех карт с пагинацией
@@ -305,10 +318,19 @@ public class CardController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(defaultValue = "id") String sortBy,
-            @RequestParam(defaultValue = "asc") String sortDirection) {
+            @RequestParam(defaultValue = "asc") String sortDirection,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "true") String withTotal) {
+        if (after != null) {
+            return ResponseEntity.ok(cursorPage(new CardSearchDto(), size, sortBy, sortDirection, after));
+        }
         Pageable pageable = PageableUtils.createPageable(page, size, sortBy, sortDirection);
-        Page<Card> cardPage = cardService.getAllCardsWithPagination(pageable);
-        List<CardDto> cardDtos = cardMapper.toDtoList(cardPage.getContent());
+        TotalCountMode totalMode = TotalCountMode.fromParam(withTotal);
+        if (totalMode != TotalCountMode.EXACT) {
+            return ResponseEntity.ok(slicePage(new CardSearchDto(), pageable, totalMode));
+        }
+        Page<CardSummary> cardPage = cardService.searchCardSummaryPage(new CardSearchDto(), pageable);
+        List<CardDto> cardDtos = cardMapper.toSummaryDtoList(cardPage.getContent());
         PageResponseDto<CardDto> response = PageResponseDto.of(
                 cardDtos,
                 cardPage.getNumber(),
@@ -328,10 +350,21 @@ public class CardController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(defaultValue = "id") String sortBy,
-            @RequestParam(defaultValue = "asc") String sortDirection) {
+            @RequestParam(defaultValue = "asc") String sortDirection,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "true") String withTotal) {
+        CardSearchDto searchDto = new CardSearchDto();
+        searchDto.setUserId(userId);
+        if (after != null) {
+            return ResponseEntity.ok(cursorPage(searchDto, size, sortBy, sortDirection, after));
+        }
         Pageable pageable = PageableUtils.createPageable(page, size, sortBy, sortDirection);
-        Page<Card> cardPage = cardService.getCardsByUserIdWithPagination(userId, pageable);
-        List<CardDto> cardDtos = cardMapper.toDtoList(cardPage.getContent());
+        TotalCountMode totalMode = TotalCountMode.fromParam(withTotal);
+        if (totalMode != TotalCountMode.EXACT) {
+            return ResponseEntity.ok(slicePage(searchDto, pageable, totalMode));
+        }
+        Page<CardSummary> cardPage = cardService.searchCardSummaryPage(searchDto, pageable);
+        List<CardDto> cardDtos = cardMapper.toSummaryDtoList(cardPage.getContent());
         PageResponseDto<CardDto> response = PageResponseDto.of(
                 cardDtos,
                 cardPage.getNumber(),
@@ -351,10 +384,21 @@ public class CardController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(defaultValue = "id") String sortBy,
-            @RequestParam(defaultValue = "asc") String sortDirection) {
+            @RequestParam(defaultValue = "asc") String sortDirection,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "true") String withTotal) {
+        CardSearchDto searchDto = new CardSearchDto();
+        searchDto.setStatus(status);
+        if (after != null) {
+            return ResponseEntity.ok(cursorPage(searchDto, size, sortBy, sortDirection, after));
+        }
         Pageable pageable = PageableUtils.createPageable(page, size, sortBy, sortDirection);
-        Page<Card> cardPage = cardService.getCardsByStatusWithPagination(status, pageable);
-        List<CardDto> cardDtos = cardMapper.toDtoList(cardPage.getContent());
+        TotalCountMode totalMode = TotalCountMode.fromParam(withTotal);
+        if (totalMode != TotalCountMode.EXACT) {
+            return ResponseEntity.ok(slicePage(searchDto, pageable, totalMode));
+        }
+        Page<CardSummary> cardPage = cardService.searchCardSummaryPage(searchDto, pageable);
+        List<CardDto> cardDtos = cardMapper.toSummaryDtoList(cardPage.getContent());
         PageResponseDto<CardDto> response = PageResponseDto.of(
                 cardDtos,
                 cardPage.getNumber(),
@@ -373,28 +417,35 @@ public class CardController {
             @RequestParam(required = false) CardStatus status,
             @RequestParam(required = false) Long userId,
             @RequestParam(required = false) String ownerName,
+            @RequestParam(defaultValue = "false") boolean ownerNamePrefix,
             @RequestParam(required = false) Boolean isExpired,
             @RequestParam(required = false) String mask,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(defaultValue = "id") String sortBy,
-            @RequestParam(defaultValue = "asc") String sortDirection) {
+            @RequestParam(defaultValue = "asc") String sortDirection,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "true") String withTotal) {
         boolean isAdmin = securityUtil.isAdmin();
         Long effectiveUserId = isAdmin ? userId : securityUtil.getCurrentUserId();
         CardSearchDto searchDto = new CardSearchDto();
         searchDto.setStatus(status);
         searchDto.setUserId(effectiveUserId);
         searchDto.setOwnerName(ownerName);
+        searchDto.setOwnerNamePrefix(ownerNamePrefix);
         searchDto.setIsExpired(isExpired);
         searchDto.setMask(mask);
+        searchDto.setOwnerOnly(!isAdmin);
+        if (after != null) {
+            return ResponseEntity.ok(cursorPage(searchDto, size, sortBy, sortDirection, after));
+        }
         Pageable pageable = PageableUtils.createPageable(page, size, sortBy, sortDirection);
-        Page<Card> cardPage = cardService.searchCardsWithPagination(searchDto, pageable);
-        List<Card> content = cardPage.getContent();
-        if (!isAdmin) {
-            Long currentId = securityUtil.getCurrentUserId();
-            content = content.stream().filter(c -> c.getUser() != null && c.getUser().getId() != null && c.getUser().getId().equals(currentId)).toList();
+        TotalCountMode totalMode = TotalCountMode.fromParam(withTotal);
+        if (totalMode != TotalCountMode.EXACT) {
+            return ResponseEntity.ok(slicePage(searchDto, pageable, totalMode));
         }
-        List<CardDto> cardDtos = cardMapper.toDtoList(content);
+        Page<CardSummary> cardPage = cardService.searchCardSummaryPage(searchDto, pageable);
+        List<CardDto> cardDtos = cardMapper.toSummaryDtoList(cardPage.getContent());
         PageResponseDto<CardDto> response = PageResponseDto.of(
                 cardDtos,
                 cardPage.getNumber(),
@@ -407,6 +458,43 @@ public class CardController {
         return ResponseEntity.ok(response);
     }
 
+    // Не администратор видит только свои карты: userId подменяется текущим, ограничение — предикатом в SQL
+    private void restrictToCurrentUser(CardSearchDto searchDto) {
+        if (!securityUtil.isAdmin()) {
+            searchDto.setUserId(securityUtil.getCurrentUserId());
+            searchDto.setOwnerOnly(true);
+        }
+    }
+
+    // Списки без пагинации: проекция CardSummary одним SELECT, без сущностей и ленивых связей
+    private List<CardDto> summaryList(CardSearchDto searchDto) {
+        return cardMapper.toSummaryDtoList(cardService.searchCardSummaries(searchDto, LIST_SORT));
+    }
+
+    // withTotal=false|approximate: Slice без COUNT; для approximate total берётся из оценки
+    private PageResponseDto<CardDto> slicePage(CardSearchDto searchDto, Pageable pageable, TotalCountMode totalMode) {
+        Slice<CardSummary> slice = cardService.searchCardSummarySlice(searchDto, pageable);
+        Long total = null;
+        if (totalMode == TotalCountMode.APPROXIMATE) {
+            Object filter = new CardSearchDto().equals(searchDto) ? null : searchDto;
+            total = approximateCountService.estimate("cards", filter, () -> cardService.countCards(searchDto));
+        }
+        return PageResponseDto.ofSlice(cardMapper.toSummaryDtoList(slice.getContent()), slice.getNumber(), slice.getSize(),
+                slice.isFirst(), slice.isLast(), total);
+    }
+
+    // Курсорный режим (?after=, пустое значение — первая страница): без OFFSET и COUNT(*),
+    // поэтому глубокие страницы стоят столько же, сколько первая
+    private PageResponseDto<CardDto> cursorPage(CardSearchDto searchDto, int size, String sortBy,
+                                                 String sortDirection, String after) {
+        int limit = PageableUtils.normalizeSize(size);
+        Sort sort = KeysetCursorUtils.createKeysetSort(sortBy, sortDirection, KEYSET_SORT_FIELDS);
+        Window<Card> window = cardService.searchCardsAfter(searchDto, sort,
+                KeysetCursorUtils.decode(after, Card.class, sort), limit);
+        return PageResponseDto.ofCursor(cardMapper.toDtoList(window.getContent()), limit,
+                after.isBlank(), KeysetCursorUtils.nextCursor(window));
+    }
+
     // Вложенный класс для ответа со статусом карты
     public static class CardStatusResponse {
         private final boolean active;
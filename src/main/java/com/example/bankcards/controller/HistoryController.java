@@ -1,23 +1,40 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.HistoryDto;
 import com.example.bankcards.dto.HistoryFilterDto;
+import com.example.bankcards.dto.PageResponseDto;
 import com.example.bankcards.entity.History;
+import com.example.bankcards.service.ApproximateCountService;
+import com.example.bankcards.service.ExportFormat;
+import com.example.bankcards.service.ExportWriter;
 import com.example.bankcards.service.HistoryService;
+import com.example.bankcards.service.TotalCountMode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.Authentication;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.security.access.prepost.PreAuthorize;
 import com.example.bankcards.security.PermissionService;
 import com.example.bankcards.security.SecurityUtil;
 import org.springframework.security.access.AccessDeniedException;
 import com.example.bankcards.exception.NotFoundException;
+import com.example.bankcards.util.KeysetCursorUtils;
+import com.example.bankcards.util.PageableUtils;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,57 +62,148 @@ public class HistoryController {
     private final HistoryService historyService;
     private final PermissionService permissionService; // оставляем для совместимости
     private final SecurityUtil securityUtil; // новый компонент
+    private final ApproximateCountService approximateCountService;
+    private final ObjectMapper objectMapper;
     private static final Logger log = LoggerFactory.getLogger(HistoryController.class);
+    private static final Set<String> KEYSET_SORT_FIELDS = Set.of("id", "eventDate");
+    private static final List<ExportWriter.Column<HistoryDto>> EXPORT_COLUMNS = List.of(
+            new ExportWriter.Column<>("id", HistoryDto::getId),
+            new ExportWriter.Column<>("eventType", HistoryDto::getEventType),
+            new ExportWriter.Column<>("eventDate", HistoryDto::getEventDate),
+            new ExportWriter.Column<>("description", HistoryDto::getDescription),
+            new ExportWriter.Column<>("userId", HistoryDto::getUserId),
+            new ExportWriter.Column<>("cardId", HistoryDto::getCardId),
+            new ExportWriter.Column<>("transferId", HistoryDto::getTransferId));
 
-    @Operation(summary = "Фильтрация истории", description = "Фильтры по пользователю, карте, переводу и интервалу времени")
+    @Operation(summary = "Фильтрация истории", description = "Фильтры по пользователю, карте, переводу и интервалу времени. "
+            + "С параметром after (пустое значение — первая страница) включается курсорный режим: "
+            + "сортировка по id или eventDate, ответ содержит nextCursor и не содержит общего количества. "
+            + "withTotal=false — без COUNT, withTotal=approximate — оценка общего количества. "
+            + "Архив читается, только если dateFrom раньше его границы; тогда сортировка — по id, eventDate, userId, "
+            + "cardId или transferId, иначе 400; курсорный режим архив не читает (400)")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Успешно",
                     content = @Content(mediaType = "application/json",
-                            schema = @Schema(implementation = History.class)))
+                            schema = @Schema(implementation = PageResponseDto.class)))
     })
     @GetMapping
-    public Page<History> filterHistory(
+    public PageResponseDto<HistoryDto> filterHistory(
             @Parameter(description = "ID пользователя", example = "1") @RequestParam(required = false) Long userId,
             @Parameter(description = "ID карты", example = "1001") @RequestParam(required = false) Long cardId,
             @Parameter(description = "ID перевода", example = "42") @RequestParam(required = false) Long transferId,
             @Parameter(description = "Тип события", example = "CARD_BLOCKED") @RequestParam(required = false) String eventType,
             @Parameter(description = "Дата с", example = "2025-09-01T00:00:00") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateFrom,
             @Parameter(description = "Дата по", example = "2025-09-30T23:59:59") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateTo,
+            @Parameter(description = "Курсор следующей страницы (nextCursor из предыдущего ответа)") @RequestParam(required = false) String after,
+            @Parameter(description = "Общее количество: true — точное, false — не считать, approximate — оценка", example = "true") @RequestParam(defaultValue = "true") String withTotal,
             @PageableDefault Pageable pageable
     ) {
         boolean isAdmin = securityUtil.isAdmin();
         Long current = securityUtil.getCurrentUserId();
+        if (!isAdmin && current == null) {
+            // без id фильтр по userId пуст — USER увидел бы историю всех пользователей
+            throw new AccessDeniedException("Доступ запрещён: пользователь не определён");
+        }
         Long effectiveUserId = isAdmin ? userId : current; // USER всегда ограничен своим userId
 
-        HistoryFilterDto filter = new HistoryFilterDto();
-        filter.setUserId(effectiveUserId);
-        filter.setCardId(cardId);
-        filter.setTransferId(transferId);
-        filter.setEventType(eventType);
-        filter.setDateFrom(dateFrom);
-        filter.setDateTo(dateTo);
+        HistoryFilterDto filter = buildFilter(effectiveUserId, cardId, transferId, eventType, dateFrom, dateTo);
+
+        if (after != null) {
+            Sort.Order order = pageable.getSort().stream().findFirst().orElse(Sort.Order.asc(KeysetCursorUtils.ID_FIELD));
+            Sort sort = KeysetCursorUtils.createKeysetSort(order.getProperty(), order.getDirection().name(), KEYSET_SORT_FIELDS);
+            int limit = PageableUtils.normalizeSize(pageable.getPageSize());
+            Window<HistoryDto> window = historyService.findByFilterAfter(filter, sort,
+                    KeysetCursorUtils.decode(after, History.class, sort), limit);
+            return PageResponseDto.ofCursor(window.getContent(), limit, after.isBlank(), KeysetCursorUtils.nextCursor(window));
+        }
 
-        return historyService.findByFilter(filter, pageable);
+        TotalCountMode totalMode = TotalCountMode.fromParam(withTotal);
+        if (totalMode != TotalCountMode.EXACT) {
+            Slice<HistoryDto> slice = historyService.findSliceByFilter(filter, pageable);
+            Long total = totalMode == TotalCountMode.APPROXIMATE
+                    ? approximateCountService.estimate("history", new HistoryFilterDto().equals(filter) ? null : filter,
+                            () -> historyService.countByFilter(filter))
+                    : null;
+            return PageResponseDto.ofSlice(slice.getContent(), slice.getNumber(), slice.getSize(),
+                    slice.isFirst(), slice.isLast(), total);
+        }
+
+        Page<HistoryDto> page = historyService.findByFilter(filter, pageable);
+        return PageResponseDto.of(page.getContent(), page.getNumber(), page.getSize(),
+                page.getTotalElements(), page.getTotalPages(), page.isFirst(), page.isLast());
+    }
+
+    @Operation(summary = "Выгрузка истории", description = "Все записи по тем же фильтрам одним потоком, без пагинации: "
+            + "format=ndjson (по умолчанию) — JSON-объект на строку, format=csv — CSV с заголовком. "
+            + "Строки читаются из БД курсором и пишутся в ответ по мере чтения. Архив не выгружается: "
+            + "dateFrom раньше границы архива — 400")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Поток записей",
+                    content = {@Content(mediaType = "application/x-ndjson"), @Content(mediaType = "text/csv")}),
+            @ApiResponse(ref = "BadRequest")
+    })
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportHistory(
+            @Parameter(description = "ID пользователя", example = "1") @RequestParam(required = false) Long userId,
+            @Parameter(description = "ID карты", example = "1001") @RequestParam(required = false) Long cardId,
+            @Parameter(description = "ID перевода", example = "42") @RequestParam(required = false) Long transferId,
+            @Parameter(description = "Тип события", example = "CARD_BLOCKED") @RequestParam(required = false) String eventType,
+            @Parameter(description = "Дата с", example = "2025-09-01T00:00:00") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateFrom,
+            @Parameter(description = "Дата по", example = "2025-09-30T23:59:59") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateTo,
+            @Parameter(description = "Формат: ndjson или csv", example = "ndjson") @RequestParam(required = false) String format
+    ) {
+        ExportFormat exportFormat = ExportFormat.fromParam(format);
+        boolean isAdmin = securityUtil.isAdmin();
+        Long current = securityUtil.getCurrentUserId();
+        if (!isAdmin && current == null) {
+            throw new AccessDeniedException("Доступ запрещён: пользователь не определён");
+        }
+        Long effectiveUserId = isAdmin ? userId : current; // USER всегда ограничен своим userId
+        HistoryFilterDto filter = buildFilter(effectiveUserId, cardId, transferId, eventType, dateFrom, dateTo);
+        historyService.checkExportable(filter); // до начала потока: ошибка ещё может стать ответом 400
+
+        StreamingResponseBody body = out -> {
+            ExportWriter<HistoryDto> writer = new ExportWriter<>(out, exportFormat, objectMapper, EXPORT_COLUMNS);
+            historyService.exportByFilter(filter, writer);
+            writer.finish();
+        };
+        return ResponseEntity.ok()
+                .contentType(exportFormat.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("history." + exportFormat.getExtension()).build().toString())
+                .body(body);
     }
 
     @Operation(summary = "Получить запись истории по id")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Найдена",
                     content = @Content(mediaType = "application/json",
-                            schema = @Schema(implementation = History.class))),
+                            schema = @Schema(implementation = HistoryDto.class))),
             @ApiResponse(ref = "NotFound")
     })
     @GetMapping("/{historyId}")
     @PreAuthorize("hasAnyRole('USER','ADMIN')")
-    public ResponseEntity<History> getHistory(@Parameter(description = "ID записи", example = "10") @PathVariable Long historyId, Authentication authentication) {
+    public ResponseEntity<HistoryDto> getHistory(@Parameter(description = "ID записи", example = "10") @PathVariable Long historyId, Authentication authentication) {
         boolean isAdmin = authentication.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
         String username = authentication.getName();
         if (!isAdmin && !permissionService.isHistoryOwner(historyId, username)) {
             log.debug("Forbidden access to history {} by user {}", historyId, username);
             throw new AccessDeniedException("Доступ запрещён к истории " + historyId);
         }
-        History history = historyService.getHistoryById(historyId)
+        HistoryDto history = historyService.getHistoryById(historyId)
                 .orElseThrow(() -> new NotFoundException("История с id " + historyId + " не найдена"));
         return ResponseEntity.ok(history);
     }
+
+    private static HistoryFilterDto buildFilter(Long userId, Long cardId, Long transferId, String eventType,
+                                                LocalDateTime dateFrom, LocalDateTime dateTo) {
+        HistoryFilterDto filter = new HistoryFilterDto();
+        filter.setUserId(userId);
+        filter.setCardId(cardId);
+        filter.setTransferId(transferId);
+        filter.setEventType(eventType);
+        filter.setDateFrom(dateFrom);
+        filter.setDateTo(dateTo);
+        return filter;
+    }
 }
@@ -1,12 +1,21 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResultDto;
 import com.example.bankcards.dto.TransferDto;
 import com.example.bankcards.entity.Transfer;
 import com.example.bankcards.mapper.TransferMapper;
+import com.example.bankcards.service.ExportFormat;
+import com.example.bankcards.service.ExportWriter;
 import com.example.bankcards.service.TransferService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
@@ -16,11 +25,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.stream.Collectors;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.service.TransferFilter;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.validation.annotation.Validated;
 import com.example.bankcards.exception.CardNotFoundException;
@@ -28,6 +38,7 @@ import com.example.bankcards.exception.CardNotFoundException;
 // OpenAPI
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
@@ -53,18 +64,28 @@ public class TransferController {
     private final SecurityUtil securityUtil;
     private final CardRepository cardRepository;
     private final TransferFilter transferFilter;
+    private final ObjectMapper objectMapper;
+    private static final List<ExportWriter.Column<TransferDto>> EXPORT_COLUMNS = List.of(
+            new ExportWriter.Column<>("id", TransferDto::getId),
+            new ExportWriter.Column<>("fromCardId", TransferDto::getFromCardId),
+            new ExportWriter.Column<>("toCardId", TransferDto::getToCardId),
+            new ExportWriter.Column<>("amount", TransferDto::getAmount),
+            new ExportWriter.Column<>("transferDate", TransferDto::getTransferDate),
+            new ExportWriter.Column<>("status", TransferDto::getStatus));
 
     @Autowired
-    public TransferController(TransferService transferService, PermissionService permissionService, SecurityUtil securityUtil, CardRepository cardRepository, TransferFilter transferFilter) {
+    public TransferController(TransferService transferService, PermissionService permissionService, SecurityUtil securityUtil, CardRepository cardRepository, TransferFilter transferFilter, ObjectMapper objectMapper) {
         this.transferService = transferService;
         this.permissionService = permissionService;
         this.securityUtil = securityUtil;
         this.cardRepository = cardRepository;
         this.transferFilter = transferFilter;
+        this.objectMapper = objectMapper;
     }
 
     @Operation(summary = "Создать перевод между картами",
-            description = "Создаёт перевод между своими картами. Пользователь не может переводить от имени другого.")
+            description = "Создаёт перевод между своими картами. Пользователь не может переводить от имени другого. " +
+                    "С заголовком Idempotency-Key повторный запрос не создаёт второй перевод.")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Перевод создан",
                     content = @Content(mediaType = "application/json",
@@ -80,31 +101,53 @@ public class TransferController {
             @Parameter(description = "ID исходной карты", example = "1001") @RequestParam @NotNull Long fromCardId,
             @Parameter(description = "ID целевой карты", example = "1002") @RequestParam @NotNull Long toCardId,
             @Parameter(description = "Сумма перевода", example = "1500.00") @RequestParam @NotNull BigDecimal amount,
-            @Parameter(description = "ID текущего пользователя", example = "1") @RequestParam @NotNull Long userId) {
+            @Parameter(description = "ID текущего пользователя", example = "1") @RequestParam @NotNull Long userId,
+            @Parameter(description = "Ключ идемпотентности (до 128 символов): повтор с тем же ключом вернёт результат первого перевода",
+                    example = "9f1c2b7e-5d4a-4f0e-8c1a-2b3c4d5e6f70")
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        if (idempotencyKey != null) {
+            return ResponseEntity.ok(transferService.createTransfer(fromCardId, toCardId, amount, userId, idempotencyKey));
+        }
         Transfer transfer = transferService.createTransfer(fromCardId, toCardId, amount, userId);
         return ResponseEntity.ok(TransferMapper.toDto(transfer));
     }
 
-    @Operation(summary = "Исходящие переводы пользователя", description = "Возвращает исходящие переводы указанного пользователя (сам пользователь или админ)")
+    @Operation(summary = "Пакет переводов",
+            description = "Выполняет до " + BatchTransferRequest.MAX_SIZE + " переводов в одной транзакции. " +
+                    "Отклонённый перевод не отменяет остальные: результат возвращается по каждому элементу в порядке запроса.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Результаты по каждому переводу",
+                    content = @Content(mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = BatchTransferResultDto.class)))),
+            @ApiResponse(ref = "BadRequest")
+    })
+    @PostMapping("/batch")
+    public ResponseEntity<List<BatchTransferResultDto>> createTransfers(@Valid @RequestBody BatchTransferRequest request) {
+        return ResponseEntity.ok(transferService.createTransfers(request.getUserId(), request.getTransfers()));
+    }
+
+    @Operation(summary = "Исходящие переводы пользователя", description = "Возвращает исходящие переводы указанного пользователя (сам пользователь или админ): "
+            + "не более size переводов, новые первыми, следующие — параметром page")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Список переводов",
                     content = @Content(mediaType = "application/json",
                             schema = @Schema(implementation = TransferDto.class)))
     })
     @GetMapping("/user/{userId}")
-    public List<TransferDto> getTransfersByUser(@Parameter(description = "ID пользователя", example = "1") @PathVariable Long userId) {
+    public List<TransferDto> getTransfersByUser(@Parameter(description = "ID пользователя", example = "1") @PathVariable Long userId,
+                                                @Parameter(description = "Номер страницы", example = "0") @RequestParam(defaultValue = "0") int page,
+                                                @Parameter(description = "Размер страницы (до 100)", example = "100") @RequestParam(defaultValue = "100") int size) {
         boolean isAdmin = securityUtil.isAdmin();
         Long current = securityUtil.getCurrentUserId();
         if (!isAdmin && (current == null || !current.equals(userId))) {
             throw new AccessDeniedException("Доступ запрещён: нельзя просматривать переводы другого пользователя");
         }
-        List<Transfer> all = transferService.getTransfersByUser(userId);
-        // политика: всегда только исходящие пользователя (даже для админа сейчас)
-        List<Transfer> outgoing = transferFilter.outgoingForUser(all, userId);
-        return outgoing.stream().map(TransferMapper::toDto).collect(Collectors.toList());
+        // политика: всегда только исходящие пользователя (даже для админа сейчас) — условие по исходной карте в SQL
+        return transferFilter.toDtos(transferService.getOutgoingTransfersByUser(userId, transferFilter.page(page, size)));
     }
 
-    @Operation(summary = "Исходящие переводы по карте", description = "Возвращает исходящие переводы по указанной карте")
+    @Operation(summary = "Исходящие переводы по карте", description = "Возвращает исходящие переводы по указанной карте: "
+            + "не более size переводов, новые первыми, следующие — параметром page")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Список переводов",
                     content = @Content(mediaType = "application/json",
@@ -112,7 +155,9 @@ public class TransferController {
             @ApiResponse(ref = "NotFound")
     })
     @GetMapping("/card/{cardId}")
-    public List<TransferDto> getTransfersByCard(@Parameter(description = "ID карты", example = "1001") @PathVariable Long cardId) {
+    public List<TransferDto> getTransfersByCard(@Parameter(description = "ID карты", example = "1001") @PathVariable Long cardId,
+                                                @Parameter(description = "Номер страницы", example = "0") @RequestParam(defaultValue = "0") int page,
+                                                @Parameter(description = "Размер страницы (до 100)", example = "100") @RequestParam(defaultValue = "100") int size) {
         boolean isAdmin = securityUtil.isAdmin();
         Long current = securityUtil.getCurrentUserId();
         Card card = cardRepository.findById(cardId).orElseThrow(() -> new CardNotFoundException("Card not found"));
@@ -121,28 +166,63 @@ public class TransferController {
                 throw new AccessDeniedException("Доступ запрещён: нельзя просматривать переводы чужой карты");
             }
         }
-        List<Transfer> all = transferService.getTransfersByCard(cardId);
-        List<Transfer> outgoing = transferFilter.outgoingForCard(all, cardId);
-        return outgoing.stream().map(TransferMapper::toDto).collect(Collectors.toList());
+        return transferFilter.toDtos(transferService.getOutgoingTransfersByCard(cardId, transferFilter.page(page, size)));
     }
 
-    @Operation(summary = "Переводы по статусу", description = "Возвращает переводы по статусу. Для админа отображаются только исходящие.")
+    @Operation(summary = "Переводы по статусу", description = "Возвращает исходящие переводы по статусу: пользователю — только свои, админу — всех пользователей. "
+            + "Не более size переводов, новые первыми, следующие — параметром page")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Список переводов",
                     content = @Content(mediaType = "application/json",
                             schema = @Schema(implementation = TransferDto.class)))
     })
     @GetMapping("/status/{status}")
-    public List<TransferDto> getTransfersByStatus(@Parameter(description = "Статус перевода", example = "SUCCESS") @PathVariable String status) {
+    public List<TransferDto> getTransfersByStatus(@Parameter(description = "Статус перевода", example = "SUCCESS") @PathVariable String status,
+                                                  @Parameter(description = "Номер страницы", example = "0") @RequestParam(defaultValue = "0") int page,
+                                                  @Parameter(description = "Размер страницы (до 100)", example = "100") @RequestParam(defaultValue = "100") int size) {
+        boolean isAdmin = securityUtil.isAdmin();
+        Long current = securityUtil.getCurrentUserId();
+        if (!isAdmin && current == null) {
+            return List.of();
+        }
+        // политика: даже для админа возвращаем только исходящие; USER видит только свои
+        return transferFilter.toDtos(transferService.getOutgoingTransfersByStatus(status, isAdmin ? null : current,
+                transferFilter.page(page, size)));
+    }
+
+    @Operation(summary = "Выгрузка исходящих переводов", description = "Все исходящие переводы одним потоком, без пагинации: "
+            + "пользователю — только свои, админу — указанного userId или всех. "
+            + "format=ndjson (по умолчанию) — JSON-объект на строку, format=csv — CSV с заголовком")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Поток переводов",
+                    content = {@Content(mediaType = "application/x-ndjson"), @Content(mediaType = "text/csv")}),
+            @ApiResponse(ref = "BadRequest")
+    })
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportTransfers(
+            @Parameter(description = "ID пользователя (только для админа)", example = "1") @RequestParam(required = false) Long userId,
+            @Parameter(description = "Статус перевода", example = "SUCCESS") @RequestParam(required = false) String status,
+            @Parameter(description = "Дата с", example = "2025-09-01T00:00:00") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateFrom,
+            @Parameter(description = "Дата по", example = "2025-09-30T23:59:59") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateTo,
+            @Parameter(description = "Формат: ndjson или csv", example = "ndjson") @RequestParam(required = false) String format) {
+        ExportFormat exportFormat = ExportFormat.fromParam(format);
         boolean isAdmin = securityUtil.isAdmin();
         Long current = securityUtil.getCurrentUserId();
-        List<Transfer> all = transferService.getTransfersByStatus(status);
-        List<Transfer> visible = transferFilter.visibleForUserOrAdmin(all, current, isAdmin);
-        // политика: даже для админа возвращаем только исходящие
-        if (isAdmin) {
-            visible = visible.stream().filter(t -> t.getSourceCard() != null).collect(Collectors.toList());
+        if (!isAdmin && current == null) {
+            throw new AccessDeniedException("Доступ запрещён: пользователь не определён");
         }
-        return visible.stream().map(TransferMapper::toDto).collect(Collectors.toList());
+        Long effectiveUserId = isAdmin ? userId : current;
+
+        StreamingResponseBody body = out -> {
+            ExportWriter<TransferDto> writer = new ExportWriter<>(out, exportFormat, objectMapper, EXPORT_COLUMNS);
+            transferService.exportOutgoingTransfers(effectiveUserId, status, dateFrom, dateTo, writer);
+            writer.finish();
+        };
+        return ResponseEntity.ok()
+                .contentType(exportFormat.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("transfers." + exportFormat.getExtension()).build().toString())
+                .body(body);
     }
 
     @Operation(summary = "Получить перевод по id")
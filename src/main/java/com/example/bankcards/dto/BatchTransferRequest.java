@@ -0,0 +1,51 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Пакет переводов, выполняемых в одной транзакции")
+public class BatchTransferRequest {
+    public static final int MAX_SIZE = 1000;
+
+    @NotNull(message = "ID пользователя обязателен")
+    @Schema(description = "ID текущего пользователя", example = "1")
+    private Long userId;
+
+    @NotEmpty(message = "Список переводов не может быть пустым")
+    @Size(max = MAX_SIZE, message = "В пакете не более " + MAX_SIZE + " переводов")
+    @Valid
+    private List<Item> transfers;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Schema(description = "Перевод в составе пакета")
+    public static class Item {
+        @NotNull(message = "ID исходной карты обязателен")
+        @Schema(description = "ID исходной карты", example = "1001")
+        private Long fromCardId;
+
+        @NotNull(message = "ID целевой карты обязателен")
+        @Schema(description = "ID целевой карты", example = "1002")
+        private Long toCardId;
+
+        @NotNull(message = "Сумма перевода обязательна")
+        @Schema(description = "Сумма перевода", example = "1500.00")
+        private BigDecimal amount;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.exception.ErrorCode;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Результат перевода из пакета")
+public class BatchTransferResultDto {
+    public static final String SUCCESS = "SUCCESS";
+    public static final String REJECTED = "REJECTED";
+
+    @Schema(description = "Позиция перевода в запросе (с нуля)", example = "0")
+    private int index;
+    @Schema(description = "SUCCESS или REJECTED", example = "SUCCESS")
+    private String status;
+    @Schema(description = "ID созданного перевода (для SUCCESS)", example = "42")
+    private Long transferId;
+    @Schema(description = "Код ошибки (для REJECTED)", example = "INSUFFICIENT_FUNDS")
+    private ErrorCode errorCode;
+    @Schema(description = "Причина отказа (для REJECTED)", example = "Недостаточно средств на карте")
+    private String message;
+
+    public static BatchTransferResultDto success(int index, Long transferId) {
+        return new BatchTransferResultDto(index, SUCCESS, transferId, null, null);
+    }
+
+    public static BatchTransferResultDto rejected(int index, ErrorCode errorCode, String message) {
+        return new BatchTransferResultDto(index, REJECTED, null, errorCode, message);
+    }
+}
@@ -1,11 +1,14 @@
 package com.example.bankcards.dto;
 
 import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.CardSummaryRepository.CardSummary;
 import com.example.bankcards.service.CardEncryptionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Component
 public class CardMapper {
@@ -17,8 +20,60 @@ public class CardMapper {
     }
 
     public CardDto toDto(Card card) {
-        String decrypted = encryptionService.decrypt(card.getEncryptedNumber());
-        String masked = encryptionService.mask(decrypted);
+        String masked = card.getMaskedNumber();
+        if (masked == null) {
+            // карта ещё не прошла backfill — вычисляем маску на лету
+            masked = encryptionService.mask(encryptionService.decrypt(card.getEncryptedNumber()));
+        }
+        return toDto(card, masked);
+    }
+
+    public List<CardDto> toDtoList(List<Card> cards) {
+        // карты без сохранённой маски расшифровываем одним пакетом
+        List<Card> unmasked = cards.stream()
+                .filter(card -> card.getMaskedNumber() == null)
+                .toList();
+        if (unmasked.isEmpty()) {
+            return cards.stream()
+                    .map(this::toDto)
+                    .toList();
+        }
+        List<String> decrypted = encryptionService.decryptAll(
+                unmasked.stream().map(Card::getEncryptedNumber).toList());
+        Map<Card, String> masks = new IdentityHashMap<>();
+        for (int i = 0; i < unmasked.size(); i++) {
+            masks.put(unmasked.get(i), encryptionService.mask(decrypted.get(i)));
+        }
+        return cards.stream()
+                .map(card -> toDto(card, masks.getOrDefault(card, card.getMaskedNumber())))
+                .toList();
+    }
+
+    public List<CardDto> toSummaryDtoList(List<CardSummary> cards) {
+        List<CardSummary> unmasked = cards.stream()
+                .filter(card -> card.maskedNumber() == null)
+                .toList();
+        if (unmasked.isEmpty()) {
+            return cards.stream()
+                    .map(card -> toDto(card, card.maskedNumber()))
+                    .toList();
+        }
+        List<String> decrypted = encryptionService.decryptAll(
+                unmasked.stream().map(CardSummary::encryptedNumber).toList());
+        Map<CardSummary, String> masks = new IdentityHashMap<>();
+        for (int i = 0; i < unmasked.size(); i++) {
+            masks.put(unmasked.get(i), encryptionService.mask(decrypted.get(i)));
+        }
+        return cards.stream()
+                .map(card -> toDto(card, masks.getOrDefault(card, card.maskedNumber())))
+                .toList();
+    }
+
+    private CardDto toDto(CardSummary card, String masked) {
+        return new CardDto(card.id(), masked, card.status(), card.expirationDate());
+    }
+
+    private CardDto toDto(Card card, String masked) {
         return new CardDto(
             card.getId(),
             masked,
@@ -26,10 +81,4 @@ public class CardMapper {
             card.getExpirationDate()
         );
     }
-
-    public List<CardDto> toDtoList(List<Card> cards) {
-        return cards.stream()
-                .map(this::toDto)
-                .toList();
-    }
 }
@@ -15,6 +15,10 @@ public class CardSearchDto {
     private CardStatus status;
     private Long userId;
     private String ownerName;
+    // true — совпадение по началу имени/username/email (B-tree), false — по подстроке (pg_trgm)
+    private boolean ownerNamePrefix;
+    // true — запрос не от администратора: выдача ограничивается картами userId (в SQL), без userId — пусто
+    private boolean ownerOnly;
     private String mask;
     private Boolean isExpired;
     private LocalDate createdAfter;
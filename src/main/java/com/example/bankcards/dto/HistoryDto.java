@@ -0,0 +1,36 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+@Schema(description = "Запись истории (аудита)")
+@Getter
+public class HistoryDto {
+    @Schema(description = "Идентификатор записи", example = "10")
+    private final Long id;
+    @Schema(description = "Тип события", example = "CARD_BLOCKED")
+    private final String eventType;
+    @Schema(description = "Дата и время события", format = "date-time", example = "2025-09-26T12:34:56")
+    private final LocalDateTime eventDate;
+    @Schema(description = "Описание события", example = "Карта заблокирована")
+    private final String description;
+    @Schema(description = "ID пользователя", example = "1")
+    private final Long userId;
+    @Schema(description = "ID карты", example = "1001")
+    private final Long cardId;
+    @Schema(description = "ID перевода", example = "42")
+    private final Long transferId;
+
+    public HistoryDto(Long id, String eventType, LocalDateTime eventDate, String description,
+                      Long userId, Long cardId, Long transferId) {
+        this.id = id;
+        this.eventType = eventType;
+        this.eventDate = eventDate;
+        this.description = description;
+        this.userId = userId;
+        this.cardId = cardId;
+        this.transferId = transferId;
+    }
+}
@@ -5,6 +5,8 @@ import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
 
 import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 @Schema(description = "Стандартный формат пагинированного ответа")
@@ -15,20 +17,30 @@ public class PageResponseDto<T> {
 
     @Schema(description = "Содержимое страницы")
     private List<T> content;
-    @Schema(description = "Номер страницы (0..N)", example = "0")
-    private int page;
+    @Schema(description = "Номер страницы (0..N); отсутствует в курсорном режиме", example = "0")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer page;
     @Schema(description = "Размер страницы", example = "20")
     private int size;
-    @Schema(description = "Всего элементов", example = "100")
-    private long totalElements;
-    @Schema(description = "Всего страниц", example = "5")
-    private int totalPages;
+    @Schema(description = "Всего элементов; отсутствует в курсорном режиме", example = "100")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long totalElements;
+    @Schema(description = "Всего страниц; отсутствует в курсорном режиме", example = "5")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer totalPages;
+    @Schema(description = "totalElements/totalPages — оценка (withTotal=approximate)", example = "true")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean totalApproximate;
     @Schema(description = "Это первая страница", example = "true")
     private boolean first;
     @Schema(description = "Это последняя страница", example = "false")
     private boolean last;
     @Schema(description = "Пустой ли ответ", example = "false")
     private boolean empty;
+    @Schema(description = "Токен для параметра after следующей страницы; null, если страница последняя",
+            example = "eyJpZCI6NDJ9")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
 
     public static <T> PageResponseDto<T> of(List<T> content, int page, int size,
                                            long totalElements, int totalPages,
@@ -44,4 +56,38 @@ public class PageResponseDto<T> {
         response.setEmpty(content.isEmpty());
         return response;
     }
+
+    /**
+     * Страница без точного COUNT (Slice): total либо отсутствует, либо передан как оценка.
+     */
+    public static <T> PageResponseDto<T> ofSlice(List<T> content, int page, int size,
+                                                boolean first, boolean last, Long approximateTotal) {
+        PageResponseDto<T> response = new PageResponseDto<>();
+        response.setContent(content);
+        response.setPage(page);
+        response.setSize(size);
+        response.setFirst(first);
+        response.setLast(last);
+        response.setEmpty(content.isEmpty());
+        if (approximateTotal != null) {
+            response.setTotalElements(approximateTotal);
+            response.setTotalPages(size == 0 ? 1 : (int) Math.ceil((double) approximateTotal / size));
+            response.setTotalApproximate(true);
+        }
+        return response;
+    }
+
+    /**
+     * Страница курсорного режима: без номера страницы и общего количества (COUNT не выполняется).
+     */
+    public static <T> PageResponseDto<T> ofCursor(List<T> content, int size, boolean first, String nextCursor) {
+        PageResponseDto<T> response = new PageResponseDto<>();
+        response.setContent(content);
+        response.setSize(size);
+        response.setFirst(first);
+        response.setLast(nextCursor == null);
+        response.setEmpty(content.isEmpty());
+        response.setNextCursor(nextCursor);
+        return response;
+    }
 }
@@ -19,6 +19,19 @@ public class TransferDto {
     @Schema(description = "Статус перевода", example = "SUCCESS")
     private String status;
 
+    public TransferDto() {
+    }
+
+    // Для проекций (SELECT new / CriteriaBuilder.construct)
+    public TransferDto(Long id, Long fromCardId, Long toCardId, BigDecimal amount, LocalDateTime transferDate, String status) {
+        this.id = id;
+        this.fromCardId = fromCardId;
+        this.toCardId = toCardId;
+        this.amount = amount;
+        this.transferDate = transferDate;
+        this.status = status;
+    }
+
     // getters and setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -13,12 +13,24 @@ import java.util.List;
 @Setter
 public class Card {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cards_seq")
+    @SequenceGenerator(name = "cards_seq", sequenceName = "cards_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "encrypted_number", nullable = false, unique = true, length = 255)
     private String encryptedNumber;
 
+    // HMAC-индексы номера для поиска без расшифровки (см. CardBlindIndexService)
+    @Column(name = "pan_hash", unique = true, length = 64)
+    private String panHash;
+
+    @Column(name = "last4_hash", length = 64)
+    private String last4Hash;
+
+    // Маска вычисляется один раз при выпуске карты, чтобы выдача DTO не требовала расшифровки
+    @Column(name = "masked_number", length = 19)
+    private String maskedNumber;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private CardStatus status;
@@ -29,6 +41,11 @@ public class Card {
     @Column(nullable = false)
     private BigDecimal balance = BigDecimal.ZERO;
 
+    // Оптимистическая блокировка (режим переводов OPTIMISTIC); примитив, чтобы isNew определялся по id
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
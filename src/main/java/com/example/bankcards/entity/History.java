@@ -11,7 +11,8 @@ import java.time.LocalDateTime;
 @Setter
 public class History {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "history_seq")
+    @SequenceGenerator(name = "history_seq", sequenceName = "history_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -0,0 +1,29 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import java.time.LocalDateTime;
+
+/**
+ * Аренда фоновой задачи (или шарда задачи) узлом кластера: пока locked_until в будущем,
+ * другие узлы задачу не запускают. Строка создаётся при первом захвате и дальше только обновляется.
+ */
+@Entity
+@Table(name = "job_leases")
+@Getter
+@Setter
+public class JobLease {
+    @Id
+    @Column(length = 128)
+    private String name;
+
+    @Column(nullable = false, length = 128)
+    private String owner;
+
+    @Column(name = "locked_at", nullable = false)
+    private LocalDateTime lockedAt;
+
+    @Column(name = "locked_until", nullable = false)
+    private LocalDateTime lockedUntil;
+}
@@ -0,0 +1,37 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import java.time.LocalDateTime;
+
+/**
+ * Ключ идемпотентности перевода (заголовок Idempotency-Key), уникален в пределах пользователя.
+ * request_hash фиксирует параметры первого запроса: тот же ключ с другими параметрами отклоняется.
+ */
+@Entity
+@Table(name = "transfer_idempotency_keys",
+       uniqueConstraints = @UniqueConstraint(name = "uq_transfer_idempotency_user_key", columnNames = {"user_id", "idempotency_key"}))
+@Getter
+@Setter
+public class TransferIdempotencyKey {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "idempotency_key", nullable = false, length = 128)
+    private String idempotencyKey;
+
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "transfer_id")
+    private Transfer transfer;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
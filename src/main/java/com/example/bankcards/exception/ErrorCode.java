@@ -21,6 +21,8 @@ public enum ErrorCode {
     CARD_EXPIRED,
     CARD_INACTIVE,
     SAME_CARD_TRANSFER,
+    TRANSFER_CONFLICT,
+    IDEMPOTENCY_KEY_REUSED,
 
     // Криптография/тех ошибки
     ENCRYPTION_FAILURE
@@ -92,12 +92,14 @@ public class ErrorHandler {
     }
 
     // 409 — Конфликты бизнес-логики (остаток)
-    @ExceptionHandler({InsufficientFundsException.class, CardBlockedException.class, SameCardTransferException.class, DataIntegrityViolationException.class})
+    @ExceptionHandler({InsufficientFundsException.class, CardBlockedException.class, SameCardTransferException.class, TransferConflictException.class, IdempotencyKeyReuseException.class, DataIntegrityViolationException.class})
     public ResponseEntity<ErrorResponse> handleBusinessConflict(Exception ex, HttpServletRequest req) {
         ErrorCode code = ErrorCode.INTERNAL_ERROR;
         if (ex instanceof InsufficientFundsException) code = ErrorCode.INSUFFICIENT_FUNDS;
         else if (ex instanceof CardBlockedException) code = ErrorCode.CARD_BLOCKED;
         else if (ex instanceof SameCardTransferException) code = ErrorCode.SAME_CARD_TRANSFER;
+        else if (ex instanceof TransferConflictException) code = ErrorCode.TRANSFER_CONFLICT;
+        else if (ex instanceof IdempotencyKeyReuseException) code = ErrorCode.IDEMPOTENCY_KEY_REUSED;
         else if (ex instanceof DataIntegrityViolationException) code = ErrorCode.DATA_INTEGRITY_VIOLATION;
         log.warn("Business conflict: {}", ex.getMessage());
         ErrorResponse body = ErrorResponse.of(409, "CONFLICT", code, ex.getMessage(), req.getRequestURI());
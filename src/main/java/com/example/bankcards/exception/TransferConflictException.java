@@ -0,0 +1,10 @@
+package com.example.bankcards.exception;
+
+public class TransferConflictException extends RuntimeException {
+    public TransferConflictException(String message) {
+        super(message);
+    }
+    public TransferConflictException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.bankcards.mapper;
+
+import com.example.bankcards.dto.HistoryDto;
+import com.example.bankcards.entity.History;
+
+public class HistoryMapper {
+    // getId() у ленивого прокси не инициализирует связь — дополнительных запросов нет
+    public static HistoryDto toDto(History history) {
+        return new HistoryDto(
+                history.getId(),
+                history.getEventType(),
+                history.getEventDate(),
+                history.getDescription(),
+                history.getUser() != null ? history.getUser().getId() : null,
+                history.getCard() != null ? history.getCard().getId() : null,
+                history.getTransfer() != null ? history.getTransfer().getId() : null
+        );
+    }
+}
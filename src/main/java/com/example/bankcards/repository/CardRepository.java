@@ -3,16 +3,22 @@ package com.example.bankcards.repository;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
 import com.example.bankcards.entity.User;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface CardRepository extends JpaRepository<Card, Long>, JpaSpecificationExecutor<Card> {
+public interface CardRepository extends JpaRepository<Card, Long>, JpaSpecificationExecutor<Card>, CardSummaryRepository {
 
     List<Card> findByUser(User user);
 
@@ -23,6 +29,100 @@ public interface CardRepository extends JpaRepository<Card, Long>, JpaSpecificat
 
     Optional<Card> findByEncryptedNumber(String encryptedNumber);
 
+    // SELECT ... FOR UPDATE: блокировка строки карты до конца транзакции перевода
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.id = :id")
+    Optional<Card> findByIdForUpdate(@Param("id") Long id);
+
+    // Пакетный перевод: все карты пакета блокируются одним запросом в порядке возрастания id;
+    // id владельца читается из cards.user_id той же строкой, без загрузки User
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT new com.example.bankcards.repository.CardRepository$LockedCard(c, c.user.id) " +
+           "FROM Card c WHERE c.id IN :ids ORDER BY c.id")
+    List<LockedCard> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    record LockedCard(Card card, Long ownerId) {}
+
+    @Query("SELECT c.user.id FROM Card c WHERE c.id = :id")
+    Optional<Long> findOwnerIdById(@Param("id") Long id);
+
+    // Проверка прав: владелец карты одним запросом по первичным ключам, без загрузки сущностей
+    @Query("SELECT u.id AS userId, u.username AS username FROM Card c JOIN c.user u WHERE c.id = :id")
+    Optional<OwnerView> findOwnerById(@Param("id") Long id);
+
+    // Атомарное списание: 0 строк — карта не найдена, чужая, неактивна, истекла или не хватает средств.
+    // Контекст очищается, чтобы ранее загруженные карты не остались со старым балансом
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Card c SET c.balance = c.balance - :amount, c.version = c.version + 1 " +
+           "WHERE c.id = :id AND c.user.id = :ownerId AND c.balance >= :amount " +
+           "AND c.status = :status AND c.expirationDate >= :today")
+    int debitIfUsable(@Param("id") Long id, @Param("ownerId") Long ownerId, @Param("amount") BigDecimal amount,
+                      @Param("status") CardStatus status, @Param("today") LocalDate today);
+
+    // Атомарное зачисление: 0 строк — карта не найдена, неактивна или истекла
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Card c SET c.balance = c.balance + :amount, c.version = c.version + 1 " +
+           "WHERE c.id = :id AND c.status = :status AND c.expirationDate >= :today")
+    int creditIfUsable(@Param("id") Long id, @Param("amount") BigDecimal amount,
+                       @Param("status") CardStatus status, @Param("today") LocalDate today);
+
+    // Поиск по blind index (HMAC номера / последних 4 цифр)
+    Optional<Card> findByPanHash(String panHash);
+
+    boolean existsByPanHash(String panHash);
+
+    List<Card> findByLast4Hash(String last4Hash);
+
+    Optional<Card> findFirstByLast4HashOrderByIdAsc(String last4Hash);
+
+    // Карты без производных от номера столбцов (для backfill)
+    @Query("SELECT c FROM Card c WHERE (c.panHash IS NULL OR c.maskedNumber IS NULL) AND c.id > :afterId ORDER BY c.id")
+    List<Card> findUnindexedAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Ротация ключа шифрования: номера, зашифрованные не активным ключом (keyset по id)
+    @Query("SELECT c.id AS id, c.encryptedNumber AS encryptedNumber FROM Card c " +
+           "WHERE c.id > :afterId AND c.encryptedNumber NOT LIKE :activePrefix ESCAPE '!' ORDER BY c.id")
+    List<EncryptedNumberView> findEncryptedNotWithPrefixAfter(@Param("afterId") Long afterId,
+                                                              @Param("activePrefix") String activePrefix,
+                                                              Pageable pageable);
+
+    @Query("SELECT COUNT(c) FROM Card c WHERE c.encryptedNumber NOT LIKE :activePrefix ESCAPE '!'")
+    long countEncryptedNotWithPrefix(@Param("activePrefix") String activePrefix);
+
+    // Шаблон LIKE для запросов выше: '_' и '%' в id ключа (k_1) — обычные символы, а не маски
+    static String likePrefix(String prefix) {
+        return prefix.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+    }
+
+    // Условная замена шифротекста: не затирает параллельные изменения других столбцов карты
+    @Modifying
+    @Query("UPDATE Card c SET c.encryptedNumber = :newValue, c.version = c.version + 1 WHERE c.id = :id AND c.encryptedNumber = :oldValue")
+    int replaceEncryptedNumber(@Param("id") Long id, @Param("oldValue") String oldValue, @Param("newValue") String newValue);
+
+    // Истечение карт: keyset-порция кандидатов в пределах шарда (id ≤ maxId) без загрузки сущностей
+    @Query("SELECT c.id AS id, c.user.id AS userId, c.expirationDate AS expirationDate FROM Card c " +
+           "WHERE c.id > :afterId AND c.id <= :maxId AND c.status = :status AND c.expirationDate < :date ORDER BY c.id")
+    List<ExpiringCardView> findExpiringAfter(@Param("afterId") Long afterId, @Param("maxId") Long maxId,
+                                             @Param("status") CardStatus status, @Param("date") LocalDate date,
+                                             Pageable pageable);
+
+    @Query("SELECT MIN(c.id) AS minId, MAX(c.id) AS maxId FROM Card c WHERE c.status = :status AND c.expirationDate < :date")
+    IdRangeView findExpiringIdRange(@Param("status") CardStatus status, @Param("date") LocalDate date);
+
+    // Условие повторяется, чтобы не пометить карту, которую успели заблокировать после выборки
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Card c SET c.status = :newStatus, c.version = c.version + 1 " +
+           "WHERE c.id IN :ids AND c.status = :status AND c.expirationDate < :date")
+    int updateStatusIfExpired(@Param("ids") Collection<Long> ids, @Param("status") CardStatus status,
+                              @Param("newStatus") CardStatus newStatus, @Param("date") LocalDate date);
+
+    // Блокирует ещё подлежащие истечению карты порции: UPDATE ниже изменит ровно их,
+    // параллельный проход другого узла дождётся коммита и этих карт уже не увидит
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c.id FROM Card c WHERE c.id IN :ids AND c.status = :status AND c.expirationDate < :date ORDER BY c.id")
+    List<Long> lockIdsToExpire(@Param("ids") Collection<Long> ids, @Param("status") CardStatus status,
+                               @Param("date") LocalDate date);
+
     // Дополнительные методы для оптимизации
     @Query("SELECT c FROM Card c WHERE c.user.id = :userId")
     List<Card> findByUserId(@Param("userId") Long userId);
@@ -38,4 +138,25 @@ public interface CardRepository extends JpaRepository<Card, Long>, JpaSpecificat
 
     @Query("SELECT c FROM Card c WHERE c.user.id = :userId AND c.status IN :statuses")
     List<Card> findByUserIdAndStatusIn(@Param("userId") Long userId, @Param("statuses") List<CardStatus> statuses);
+
+    interface EncryptedNumberView {
+        Long getId();
+        String getEncryptedNumber();
+    }
+
+    interface OwnerView {
+        Long getUserId();
+        String getUsername();
+    }
+
+    interface IdRangeView {
+        Long getMinId();
+        Long getMaxId();
+    }
+
+    interface ExpiringCardView {
+        Long getId();
+        Long getUserId();
+        LocalDate getExpirationDate();
+    }
 }
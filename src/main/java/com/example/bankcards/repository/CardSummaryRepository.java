@@ -0,0 +1,30 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Списки карт проекцией: SELECT только столбцов cards, владелец — значение FK user_id.
+ * Сущности и ленивые связи (user, переводы) не загружаются, поэтому число запросов не зависит от размера выдачи.
+ */
+public interface CardSummaryRepository {
+
+    List<CardSummary> findSummaries(Specification<Card> spec, Sort sort);
+
+    // size + 1 строк без COUNT
+    Slice<CardSummary> findSummarySlice(Specification<Card> spec, Pageable pageable);
+
+    Page<CardSummary> findSummaryPage(Specification<Card> spec, Pageable pageable);
+
+    // encryptedNumber нужен только картам без сохранённой маски (до backfill)
+    record CardSummary(Long id, String maskedNumber, String encryptedNumber, CardStatus status,
+                       LocalDate expirationDate, Long ownerId) {}
+}
@@ -0,0 +1,55 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+class CardSummaryRepositoryImpl implements CardSummaryRepository {
+
+    private final EntityManager entityManager;
+
+    CardSummaryRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<CardSummary> findSummaries(Specification<Card> spec, Sort sort) {
+        return summaryQuery(spec, sort).getResultList();
+    }
+
+    @Override
+    public Slice<CardSummary> findSummarySlice(Specification<Card> spec, Pageable pageable) {
+        return ProjectionQueries.slice(summaryQuery(spec, pageable.getSort()), pageable);
+    }
+
+    @Override
+    public Page<CardSummary> findSummaryPage(Specification<Card> spec, Pageable pageable) {
+        return ProjectionQueries.page(summaryQuery(spec, pageable.getSort()), pageable, entityManager, Card.class, spec);
+    }
+
+    private TypedQuery<CardSummary> summaryQuery(Specification<Card> spec, Sort sort) {
+        return ProjectionQueries.select(entityManager, Card.class, CardSummary.class,
+                CardSummaryRepositoryImpl::columns, spec, sort);
+    }
+
+    // user.id читается из FK-столбца cards.user_id, JOIN к users не добавляется
+    private static Selection<?>[] columns(Root<Card> root) {
+        return new Selection<?>[]{
+                root.get("id"),
+                root.get("maskedNumber"),
+                root.get("encryptedNumber"),
+                root.get("status"),
+                root.get("expirationDate"),
+                root.get("user").get("id")
+        };
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.HistoryDto;
+import com.example.bankcards.entity.History;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * История проекцией HistoryDto: user_id/card_id/transfer_id читаются из FK-столбцов history,
+ * прокси User/Card/Transfer не создаются и не сериализуются.
+ */
+public interface HistoryDtoRepository {
+
+    Page<HistoryDto> findDtoPage(Specification<History> spec, Pageable pageable);
+
+    // size + 1 строк без COUNT
+    Slice<HistoryDto> findDtoSlice(Specification<History> spec, Pageable pageable);
+
+    Optional<HistoryDto> findDtoById(Long id);
+
+    // Прямой курсор с fetchSize строк на порцию; поток нужно закрыть, читать — внутри транзакции
+    Stream<HistoryDto> streamDtos(Specification<History> spec, Sort sort, int fetchSize);
+}
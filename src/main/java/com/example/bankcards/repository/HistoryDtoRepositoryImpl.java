@@ -0,0 +1,64 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.HistoryDto;
+import com.example.bankcards.entity.History;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Optional;
+import java.util.stream.Stream;
+
+class HistoryDtoRepositoryImpl implements HistoryDtoRepository {
+
+    private final EntityManager entityManager;
+
+    HistoryDtoRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Page<HistoryDto> findDtoPage(Specification<History> spec, Pageable pageable) {
+        return ProjectionQueries.page(dtoQuery(spec, pageable.getSort()), pageable, entityManager, History.class, spec);
+    }
+
+    @Override
+    public Slice<HistoryDto> findDtoSlice(Specification<History> spec, Pageable pageable) {
+        return ProjectionQueries.slice(dtoQuery(spec, pageable.getSort()), pageable);
+    }
+
+    @Override
+    public Optional<HistoryDto> findDtoById(Long id) {
+        Specification<History> byId = (root, query, cb) -> cb.equal(root.get("id"), id);
+        return dtoQuery(byId, Sort.unsorted()).getResultStream().findFirst();
+    }
+
+    @Override
+    public Stream<HistoryDto> streamDtos(Specification<History> spec, Sort sort, int fetchSize) {
+        return ProjectionQueries.stream(dtoQuery(spec, sort), fetchSize);
+    }
+
+    private TypedQuery<HistoryDto> dtoQuery(Specification<History> spec, Sort sort) {
+        return ProjectionQueries.select(entityManager, History.class, HistoryDto.class,
+                HistoryDtoRepositoryImpl::columns, spec, sort);
+    }
+
+    // Обращение к id связи — значение FK-столбца: JOIN не добавляется, строки с NULL-ссылками не теряются
+    private static Selection<?>[] columns(Root<History> root) {
+        return new Selection<?>[]{
+                root.get("id"),
+                root.get("eventType"),
+                root.get("eventDate"),
+                root.get("description"),
+                root.get("user").get("id"),
+                root.get("card").get("id"),
+                root.get("transfer").get("id")
+        };
+    }
+}
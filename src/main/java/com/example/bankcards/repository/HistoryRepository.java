@@ -6,13 +6,16 @@ import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.Transfer;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
-public interface HistoryRepository extends JpaRepository<History, Long>, JpaSpecificationExecutor<History> {
+public interface HistoryRepository extends JpaRepository<History, Long>, JpaSpecificationExecutor<History>, HistoryDtoRepository {
 
     List<History> findByUser(User user);
 
@@ -24,9 +27,26 @@ public interface HistoryRepository extends JpaRepository<History, Long>, JpaSpec
 
     List<History> findByEventDateBetween(LocalDateTime startDate, LocalDateTime endDate);
 
+    // Проверка прав: пользователь, к которому относится событие
+    @Query("SELECT u.id AS userId, u.username AS username FROM History h JOIN h.user u WHERE h.id = :id")
+    Optional<CardRepository.OwnerView> findOwnerById(@Param("id") Long id);
+
     @Query("SELECT h FROM History h WHERE h.user.id = :userId ORDER BY h.eventDate DESC")
     List<History> findByUserIdOrderByEventDateDesc(@Param("userId") Long userId);
 
     @Query("SELECT h FROM History h WHERE h.card.id = :cardId ORDER BY h.eventDate DESC")
     List<History> findByCardIdOrderByEventDateDesc(@Param("cardId") Long cardId);
+
+    // Какие из заархивированных id ещё не удалены из БД
+    @Query("SELECT h.id FROM History h WHERE h.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    // Порция удаления строк заархивированного сегмента; условие по event_date отсекает лишние секции
+    @Modifying
+    @Query(value = """
+            DELETE FROM history WHERE event_date < :before AND id IN (
+                SELECT id FROM history WHERE id BETWEEN :minId AND :maxId AND event_date < :before LIMIT :limit)
+            """, nativeQuery = true)
+    int deleteArchivedChunk(@Param("minId") long minId, @Param("maxId") long maxId,
+                            @Param("before") LocalDateTime before, @Param("limit") int limit);
 }
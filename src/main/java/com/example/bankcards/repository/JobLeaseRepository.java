@@ -0,0 +1,35 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.JobLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+public interface JobLeaseRepository extends JpaRepository<JobLease, String> {
+
+    // Захват свободной (истёкшей) аренды: 0 строк — аренду держит другой узел или строки ещё нет
+    @Modifying
+    @Query("UPDATE JobLease l SET l.owner = :owner, l.lockedAt = :now, l.lockedUntil = :until " +
+           "WHERE l.name = :name AND l.lockedUntil <= :now")
+    int acquireIfExpired(@Param("name") String name, @Param("owner") String owner,
+                         @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    // Первый захват: вставка без merge, чтобы не перезаписать строку, созданную параллельно другим узлом
+    @Modifying
+    @Query(value = "INSERT INTO job_leases (name, owner, locked_at, locked_until) VALUES (:name, :owner, :now, :until)",
+           nativeQuery = true)
+    int insert(@Param("name") String name, @Param("owner") String owner,
+               @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Query("UPDATE JobLease l SET l.lockedUntil = :until WHERE l.name = :name AND l.owner = :owner")
+    int extend(@Param("name") String name, @Param("owner") String owner, @Param("until") LocalDateTime until);
+
+    // Аренды, не захватывавшиеся с before: шарды прежней shard-size, шарды за пределами текущего диапазона id
+    @Modifying
+    @Query("DELETE FROM JobLease l WHERE l.lockedUntil < :before")
+    int deleteExpiredBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,87 @@
+package com.example.bankcards.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Общие части проекционных запросов по спецификациям: SELECT конструктора DTO вместо сущности,
+ * Slice (size + 1 строк без COUNT), Page (COUNT только когда total не вычисляется по самой странице)
+ * и поток для выгрузок.
+ */
+final class ProjectionQueries {
+
+    private ProjectionQueries() {
+    }
+
+    static <E, T> TypedQuery<T> select(EntityManager entityManager, Class<E> entityType, Class<T> resultType,
+                                       Function<Root<E>, Selection<?>[]> columns, Specification<E> spec, Sort sort) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(resultType);
+        Root<E> root = query.from(entityType);
+        query.select(cb.construct(resultType, columns.apply(root)));
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        if (sort.isSorted()) {
+            query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        }
+        return entityManager.createQuery(query);
+    }
+
+    static <T> Slice<T> slice(TypedQuery<T> query, Pageable pageable) {
+        int size = pageable.getPageSize();
+        List<T> rows = query
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(size + 1)
+                .getResultList();
+        boolean hasNext = rows.size() > size;
+        return new SliceImpl<>(hasNext ? rows.subList(0, size) : rows, pageable, hasNext);
+    }
+
+    static <E, T> Page<T> page(TypedQuery<T> query, Pageable pageable,
+                               EntityManager entityManager, Class<E> entityType, Specification<E> spec) {
+        List<T> rows = query
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+        return PageableExecutionUtils.getPage(rows, pageable, () -> count(entityManager, entityType, spec));
+    }
+
+    // Forward-only курсор: драйвер получает строки порциями fetchSize, результат целиком в памяти не собирается
+    static <T> Stream<T> stream(TypedQuery<T> query, int fetchSize) {
+        return query
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .getResultStream();
+    }
+
+    private static <E> long count(EntityManager entityManager, Class<E> entityType, Specification<E> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<E> root = query.from(entityType);
+        query.select(cb.count(root));
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        return entityManager.createQuery(query).getSingleResult();
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.TransferDto;
+import com.example.bankcards.entity.Transfer;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.stream.Stream;
+
+/**
+ * Переводы проекцией TransferDto: id карт читаются из FK-столбцов transfers, сущности не загружаются.
+ */
+public interface TransferDtoRepository {
+
+    // Прямой курсор с fetchSize строк на порцию; поток нужно закрыть, читать — внутри транзакции
+    Stream<TransferDto> streamDtos(Specification<Transfer> spec, Sort sort, int fetchSize);
+}
@@ -0,0 +1,37 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.TransferDto;
+import com.example.bankcards.entity.Transfer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.stream.Stream;
+
+class TransferDtoRepositoryImpl implements TransferDtoRepository {
+
+    private final EntityManager entityManager;
+
+    TransferDtoRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Stream<TransferDto> streamDtos(Specification<Transfer> spec, Sort sort, int fetchSize) {
+        return ProjectionQueries.stream(ProjectionQueries.select(entityManager, Transfer.class, TransferDto.class,
+                TransferDtoRepositoryImpl::columns, spec, sort), fetchSize);
+    }
+
+    private static Selection<?>[] columns(Root<Transfer> root) {
+        return new Selection<?>[]{
+                root.get("id"),
+                root.get("sourceCard").get("id"),
+                root.get("destinationCard").get("id"),
+                root.get("amount"),
+                root.get("transferDate"),
+                root.get("status")
+        };
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.TransferIdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface TransferIdempotencyKeyRepository extends JpaRepository<TransferIdempotencyKey, Long> {
+
+    // Перевод подгружается сразу; карты не читаются — для ответа нужны только их id
+    @Query("SELECT k FROM TransferIdempotencyKey k JOIN FETCH k.transfer WHERE k.userId = :userId AND k.idempotencyKey = :key")
+    Optional<TransferIdempotencyKey> findCompleted(@Param("userId") Long userId, @Param("key") String idempotencyKey);
+
+    @Modifying
+    @Query("DELETE FROM TransferIdempotencyKey k WHERE k.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") LocalDateTime before);
+}
@@ -2,14 +2,18 @@ package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.Transfer;
 import com.example.bankcards.entity.Card;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
-public interface TransferRepository extends JpaRepository<Transfer, Long> {
+public interface TransferRepository extends JpaRepository<Transfer, Long>, JpaSpecificationExecutor<Transfer>, TransferDtoRepository {
 
     List<Transfer> findBySourceCard(Card sourceCard);
 
@@ -22,6 +26,25 @@ public interface TransferRepository extends JpaRepository<Transfer, Long> {
     @Query("SELECT t FROM Transfer t WHERE t.sourceCard.id = :cardId OR t.destinationCard.id = :cardId")
     List<Transfer> findByCardId(@Param("cardId") Long cardId);
 
+    // Проверка прав: владелец исходной карты перевода
+    @Query("SELECT u.id AS userId, u.username AS username FROM Transfer t JOIN t.sourceCard c JOIN c.user u WHERE t.id = :id")
+    Optional<CardRepository.OwnerView> findOwnerById(@Param("id") Long id);
+
     @Query("SELECT t FROM Transfer t WHERE (t.sourceCard.user.id = :userId OR t.destinationCard.user.id = :userId)")
     List<Transfer> findByUserId(@Param("userId") Long userId);
+
+    // Исходящие переводы (направление задаёт исходная карта): idx_cards_user_id_status → idx_transfers_from_card_id_date
+    @Query("SELECT t FROM Transfer t WHERE t.sourceCard.user.id = :userId")
+    Slice<Transfer> findOutgoingByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("SELECT t FROM Transfer t WHERE t.sourceCard.id = :cardId")
+    Slice<Transfer> findOutgoingByCardId(@Param("cardId") Long cardId, Pageable pageable);
+
+    @Query("SELECT t FROM Transfer t WHERE t.status = :status AND t.sourceCard.user.id = :userId")
+    Slice<Transfer> findOutgoingByStatusAndUserId(@Param("status") String status, @Param("userId") Long userId,
+                                                  Pageable pageable);
+
+    // Все исходящие с данным статусом (для админа): idx_transfers_status_date
+    @Query("SELECT t FROM Transfer t WHERE t.status = :status AND t.sourceCard IS NOT NULL")
+    Slice<Transfer> findOutgoingByStatus(@Param("status") String status, Pageable pageable);
 }
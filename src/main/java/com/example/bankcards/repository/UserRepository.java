@@ -15,4 +15,5 @@ public interface UserRepository extends JpaRepository<User, Long> {
     List<User> findByActiveTrue();
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
+    boolean existsByIdAndUsername(Long id, String username);
 }
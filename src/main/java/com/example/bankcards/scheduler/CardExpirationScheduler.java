@@ -1,50 +1,143 @@
 package com.example.bankcards.scheduler;
 
-import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
 import com.example.bankcards.entity.History;
 import com.example.bankcards.entity.HistoryEventType;
 import com.example.bankcards.repository.CardRepository;
-import com.example.bankcards.repository.HistoryRepository;
+import com.example.bankcards.repository.CardRepository.ExpiringCardView;
+import com.example.bankcards.repository.CardRepository.IdRangeView;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.AuditTrail;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
+/**
+ * Пометка истёкших карт порциями: keyset по id, на порцию — одна транзакция из SELECT ... FOR UPDATE
+ * и одного UPDATE по списку id; записи аудита передаются в {@link AuditTrail}. Блокировки держатся только
+ * на время порции, сущности карт в память не загружаются. В кластере проход делится на шарды по id
+ * ({@link ShardedJobRunner}), каждый шард обрабатывает один узел. Метрики: card.expiration.cards
+ * (помечено карт), card.expiration.chunk (латентность порции), card.expiration.run (длительность прохода на узле).
+ */
 @Component
 public class CardExpirationScheduler {
+    private static final Logger log = LoggerFactory.getLogger(CardExpirationScheduler.class);
 
     private final CardRepository cardRepository;
-    private final HistoryRepository historyRepository;
+    private final AuditTrail auditTrail;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardedJobRunner jobRunner;
+    private final int chunkSize;
+    private final long shardSize;
+    private final Duration lockAtMostFor;
+    private final Duration lockAtLeastFor;
+    private final Counter expiredCounter;
+    private final Timer chunkTimer;
+    private final Timer runTimer;
 
-    public CardExpirationScheduler(CardRepository cardRepository, HistoryRepository historyRepository) {
+    public CardExpirationScheduler(CardRepository cardRepository,
+                                   AuditTrail auditTrail,
+                                   UserRepository userRepository,
+                                   TransactionTemplate transactionTemplate,
+                                   ShardedJobRunner jobRunner,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${card.expiration.chunk-size:500}") int chunkSize,
+                                   @Value("${card.expiration.shard-size:100000}") long shardSize,
+                                   @Value("${card.expiration.lock-at-most-for:PT30M}") Duration lockAtMostFor,
+                                   @Value("${card.expiration.lock-at-least-for:PT5M}") Duration lockAtLeastFor) {
         this.cardRepository = cardRepository;
-        this.historyRepository = historyRepository;
+        this.auditTrail = auditTrail;
+        this.userRepository = userRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.jobRunner = jobRunner;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.shardSize = Math.max(1, shardSize);
+        this.lockAtMostFor = lockAtMostFor;
+        this.lockAtLeastFor = lockAtLeastFor;
+        this.expiredCounter = Counter.builder("card.expiration.cards")
+                .description("Карты, помеченные как EXPIRED")
+                .register(meterRegistry);
+        this.chunkTimer = Timer.builder("card.expiration.chunk")
+                .description("Длительность обработки одной порции")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("card.expiration.run")
+                .description("Длительность прохода истечения карт")
+                .register(meterRegistry);
     }
 
-    // Ежедневно в 03:00
+    // Ежедневно в 03:00 на всех узлах; шарды распределяются через аренды
     @Scheduled(cron = "0 0 3 * * *")
-    @Transactional
     public void expireCards() {
         LocalDate today = LocalDate.now();
-        List<Card> toExpire = cardRepository.findExpiredCardsByStatus(today, CardStatus.ACTIVE);
-        for (Card card : toExpire) {
-            card.setStatus(CardStatus.EXPIRED);
-            cardRepository.save(card);
+        IdRangeView range = cardRepository.findExpiringIdRange(CardStatus.ACTIVE, today);
+        if (range == null || range.getMinId() == null) {
+            return;
+        }
+        long total = runTimer.record(() -> jobRunner.runSharded("card-expiration", range.getMinId(), range.getMaxId(),
+                shardSize, lockAtMostFor, lockAtLeastFor, (fromId, toId) -> expireRange(fromId, toId, today)));
+        if (total > 0) {
+            log.info("Истечение карт: помечено как EXPIRED {}", total);
+        }
+    }
+
+    /** Обрабатывает истёкшие карты с id в [fromId, toId]; возвращает число помеченных. */
+    public long expireRange(long fromId, long toId, LocalDate today) {
+        long expired = 0;
+        Long lastId = fromId - 1;
+        while (true) {
+            List<ExpiringCardView> chunk = cardRepository.findExpiringAfter(
+                    lastId, toId, CardStatus.ACTIVE, today, PageRequest.of(0, chunkSize));
+            if (chunk.isEmpty()) {
+                return expired;
+            }
+            lastId = chunk.get(chunk.size() - 1).getId();
+            int done = chunkTimer.record(() -> transactionTemplate.execute(status -> expireChunk(chunk, today)));
+            expiredCounter.increment(done);
+            expired += done;
+        }
+    }
+
+    private int expireChunk(List<ExpiringCardView> chunk, LocalDate today) {
+        // аудит — только по картам, которые помечает эта транзакция, а не по всем EXPIRED порции
+        Set<Long> ids = new HashSet<>(cardRepository.lockIdsToExpire(
+                chunk.stream().map(ExpiringCardView::getId).toList(), CardStatus.ACTIVE, today));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        int updated = cardRepository.updateStatusIfExpired(ids, CardStatus.ACTIVE, CardStatus.EXPIRED, today);
+        List<History> audit = new ArrayList<>(updated);
+        for (ExpiringCardView card : chunk) {
+            if (!ids.contains(card.getId())) {
+                continue;
+            }
             History h = new History();
             h.setEventType(HistoryEventType.CARD_EXPIRED);
             h.setEventDate(LocalDateTime.now());
             h.setDescription("Карта автоматически помечена как EXPIRED (дата истечения " + card.getExpirationDate() + ")");
-            h.setCard(card);
-            h.setUser(card.getUser());
-            historyRepository.save(h);
+            h.setCard(cardRepository.getReferenceById(card.getId()));
+            h.setUser(card.getUserId() != null ? userRepository.getReferenceById(card.getUserId()) : null);
+            audit.add(h);
         }
+        auditTrail.recordAll(audit);
+        return updated;
     }
 
-    // Для интеграционных тестов
-    public void triggerForTests() { expireCards(); }
+    // Для интеграционных тестов: весь диапазон id на этом узле, без аренд
+    public void triggerForTests() { expireRange(0, Long.MAX_VALUE, LocalDate.now()); }
 }
-
@@ -0,0 +1,238 @@
+package com.example.bankcards.scheduler;
+
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardRepository.EncryptedNumberView;
+import com.example.bankcards.service.CardEncryptionService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фоновая перешифровка номеров карт активным ключом (см. {@link CardEncryptionService}).
+ * Координатор идёт по cards keyset-порциями по id и раздаёт их не более чем {@code concurrency}
+ * воркерам; каждая порция — короткая транзакция из условных UPDATE по одной строке,
+ * поэтому длинных блокировок нет, а параллельные изменения карты не затираются.
+ * Скорость ограничивается {@code max-rows-per-second}. Прогресс — метрики card.key_rotation.*.
+ * В кластере проход выполняет один узел — тот, что захватил аренду card-key-rotation.
+ */
+@Component
+public class CardKeyRotationJob {
+    private static final Logger log = LoggerFactory.getLogger(CardKeyRotationJob.class);
+
+    private final CardRepository cardRepository;
+    private final CardEncryptionService cardEncryptionService;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardedJobRunner jobRunner;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int concurrency;
+    private final int maxRowsPerSecond;
+    private final Duration lockAtMostFor;
+    private final Duration lockAtLeastFor;
+
+    private final ExecutorService coordinator;
+    private final ExecutorService workers;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong remaining = new AtomicLong();
+    private final AtomicLong rotated = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile double rowsPerSecond;
+
+    public CardKeyRotationJob(CardRepository cardRepository,
+                              CardEncryptionService cardEncryptionService,
+                              TransactionTemplate transactionTemplate,
+                              ShardedJobRunner jobRunner,
+                              MeterRegistry meterRegistry,
+                              @Value("${card.encryption.rotation.enabled:true}") boolean enabled,
+                              @Value("${card.encryption.rotation.batch-size:200}") int batchSize,
+                              @Value("${card.encryption.rotation.concurrency:2}") int concurrency,
+                              @Value("${card.encryption.rotation.max-rows-per-second:500}") int maxRowsPerSecond,
+                              @Value("${card.encryption.rotation.lock-at-most-for:PT1H}") Duration lockAtMostFor,
+                              @Value("${card.encryption.rotation.lock-at-least-for:PT1M}") Duration lockAtLeastFor) {
+        this.cardRepository = cardRepository;
+        this.cardEncryptionService = cardEncryptionService;
+        this.transactionTemplate = transactionTemplate;
+        this.jobRunner = jobRunner;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.concurrency = Math.max(1, concurrency);
+        this.maxRowsPerSecond = maxRowsPerSecond;
+        this.lockAtMostFor = lockAtMostFor;
+        this.lockAtLeastFor = lockAtLeastFor;
+        this.coordinator = Executors.newSingleThreadExecutor(daemon("card-key-rotation"));
+        this.workers = Executors.newFixedThreadPool(this.concurrency, daemon("card-key-rotation-worker"));
+
+        Gauge.builder("card.key_rotation.remaining", remaining, AtomicLong::get)
+                .description("Карты, ещё не перешифрованные активным ключом")
+                .register(meterRegistry);
+        Gauge.builder("card.key_rotation.rows_per_second", this, job -> job.rowsPerSecond)
+                .description("Скорость текущего (последнего) прохода перешифровки")
+                .register(meterRegistry);
+        Gauge.builder("card.key_rotation.running", running, flag -> flag.get() ? 1 : 0)
+                .register(meterRegistry);
+        FunctionCounter.builder("card.key_rotation.rotated", rotated, AtomicLong::get)
+                .register(meterRegistry);
+        FunctionCounter.builder("card.key_rotation.failed", failed, AtomicLong::get)
+                .register(meterRegistry);
+    }
+
+    // Периодически: после смены active-key-id подхватит старые номера без перезапуска
+    @Scheduled(initialDelayString = "${card.encryption.rotation.initial-delay-ms:60000}",
+               fixedDelayString = "${card.encryption.rotation.interval-ms:600000}")
+    public void schedule() {
+        if (enabled) {
+            start();
+        }
+    }
+
+    /** Запускает проход в фоне; false, если проход уже идёт на этом узле. Другой узел с арендой проход пропустит. */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        coordinator.submit(() -> {
+            try {
+                jobRunner.runExclusively("card-key-rotation", lockAtMostFor, lockAtLeastFor, this::rotate);
+            } catch (RuntimeException e) {
+                log.error("Перешифровка номеров карт прервана", e);
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * Синхронный проход по всем картам, зашифрованным не активным ключом.
+     * @return количество перешифрованных карт
+     */
+    public long rotate() {
+        String activePrefix = cardEncryptionService.activeKeyPrefix();
+        String pattern = CardRepository.likePrefix(activePrefix);
+        remaining.set(cardRepository.countEncryptedNotWithPrefix(pattern));
+        if (remaining.get() == 0) {
+            return 0;
+        }
+        log.info("Перешифровка номеров карт ключом {}: к обработке {}", activePrefix, remaining.get());
+
+        long rotatedBefore = rotated.get();
+        long startNanos = System.nanoTime();
+        long dispatched = 0;
+        long lastId = 0L;
+        Semaphore permits = new Semaphore(concurrency);
+        try {
+            while (true) {
+                List<EncryptedNumberView> chunk = cardRepository.findEncryptedNotWithPrefixAfter(
+                        lastId, pattern, PageRequest.of(0, batchSize));
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                lastId = chunk.get(chunk.size() - 1).getId();
+                throttle(startNanos, dispatched);
+                dispatched += chunk.size();
+
+                permits.acquire();
+                workers.submit(() -> {
+                    try {
+                        rotateChunk(chunk);
+                    } catch (RuntimeException e) {
+                        failed.addAndGet(chunk.size());
+                        // порция откатилась целиком: её строки не ждут обработки в этом проходе
+                        remaining.addAndGet(-chunk.size());
+                        log.warn("Перешифровка: порция с id {} не обработана: {}", chunk.get(0).getId(), e.getMessage());
+                    } finally {
+                        updateRate(startNanos, rotatedBefore);
+                        permits.release();
+                    }
+                });
+            }
+            // дожидаемся завершения всех порций
+            permits.acquire(concurrency);
+            permits.release(concurrency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Перешифровка номеров карт остановлена");
+        }
+
+        long done = rotated.get() - rotatedBefore;
+        updateRate(startNanos, rotatedBefore);
+        log.info("Перешифровка номеров карт: перешифровано {}, ошибок всего {}, {} строк/с",
+                done, failed.get(), String.format("%.1f", rowsPerSecond));
+        return done;
+    }
+
+    private void rotateChunk(List<EncryptedNumberView> chunk) {
+        // счётчики обновляем после коммита, чтобы откат порции не завышал прогресс
+        int[] counts = new int[2];
+        transactionTemplate.executeWithoutResult(status -> {
+            for (EncryptedNumberView row : chunk) {
+                String newValue;
+                try {
+                    newValue = cardEncryptionService.encrypt(cardEncryptionService.decrypt(row.getEncryptedNumber()));
+                } catch (RuntimeException e) {
+                    counts[1]++;
+                    log.warn("Перешифровка: карта {} пропущена: {}", row.getId(), e.getMessage());
+                    continue;
+                }
+                // 0 строк — номер уже изменён параллельно (перешифрован или карта удалена)
+                counts[0] += cardRepository.replaceEncryptedNumber(row.getId(), row.getEncryptedNumber(), newValue);
+            }
+        });
+        rotated.addAndGet(counts[0]);
+        failed.addAndGet(counts[1]);
+        remaining.addAndGet(-chunk.size());
+    }
+
+    // Не выдаём строки быстрее max-rows-per-second, чтобы не отнимать пропускную способность БД у запросов
+    private void throttle(long startNanos, long dispatched) throws InterruptedException {
+        if (maxRowsPerSecond <= 0 || dispatched == 0) {
+            return;
+        }
+        long targetNanos = startNanos + dispatched * TimeUnit.SECONDS.toNanos(1) / maxRowsPerSecond;
+        long waitNanos = targetNanos - System.nanoTime();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    private void updateRate(long startNanos, long rotatedBefore) {
+        double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        rowsPerSecond = seconds > 0 ? (rotated.get() - rotatedBefore) / seconds : 0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.bankcards.scheduler;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.service.CardBlindIndexService;
+import com.example.bankcards.service.CardEncryptionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Заполняет производные от номера столбцы (blind index pan_hash/last4_hash и masked_number)
+ * для карт, созданных до их появления: одна расшифровка на карту.
+ * Идёт по id порциями, каждая порция — отдельная транзакция; карты с нерасшифровываемым
+ * номером пропускаются и остаются незаполненными.
+ */
+@Component
+public class CardNumberColumnsBackfill {
+    private static final Logger log = LoggerFactory.getLogger(CardNumberColumnsBackfill.class);
+
+    private final CardRepository cardRepository;
+    private final CardEncryptionService cardEncryptionService;
+    private final CardBlindIndexService cardBlindIndexService;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+
+    public CardNumberColumnsBackfill(CardRepository cardRepository,
+                                  CardEncryptionService cardEncryptionService,
+                                  CardBlindIndexService cardBlindIndexService,
+                                  TransactionTemplate transactionTemplate,
+                                  @Value("${card.number-backfill.enabled:true}") boolean enabled,
+                                  @Value("${card.number-backfill.batch-size:500}") int batchSize) {
+        this.cardRepository = cardRepository;
+        this.cardEncryptionService = cardEncryptionService;
+        this.cardBlindIndexService = cardBlindIndexService;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (!enabled) return;
+        try {
+            backfill();
+        } catch (RuntimeException e) {
+            // не мешаем старту приложения: поиск по незаполненным картам просто не найдёт их
+            log.error("Card number backfill прерван", e);
+        }
+    }
+
+    /** @return количество заполненных карт */
+    public int backfill() {
+        long lastId = 0L;
+        int indexed = 0;
+        while (true) {
+            final long afterId = lastId;
+            BatchResult result = transactionTemplate.execute(status -> indexBatch(afterId));
+            if (result == null || result.lastId() == null) {
+                break;
+            }
+            indexed += result.indexed();
+            lastId = result.lastId();
+        }
+        if (indexed > 0) {
+            log.info("Card number backfill: заполнено карт {}", indexed);
+        }
+        return indexed;
+    }
+
+    private BatchResult indexBatch(long afterId) {
+        List<Card> batch = cardRepository.findUnindexedAfter(afterId, PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) {
+            return new BatchResult(null, 0);
+        }
+        int indexed = 0;
+        for (Card card : batch) {
+            try {
+                String plainNumber = cardEncryptionService.decrypt(card.getEncryptedNumber());
+                cardBlindIndexService.index(card, plainNumber);
+                card.setMaskedNumber(cardEncryptionService.mask(plainNumber));
+                indexed++;
+            } catch (RuntimeException e) {
+                log.warn("Card number backfill: карта {} пропущена: {}", card.getId(), e.getMessage());
+            }
+        }
+        cardRepository.saveAll(batch);
+        return new BatchResult(batch.get(batch.size() - 1).getId(), indexed);
+    }
+
+    private record BatchResult(Long lastId, int indexed) {}
+}
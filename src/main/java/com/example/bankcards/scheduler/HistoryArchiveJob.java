@@ -0,0 +1,125 @@
+package com.example.bankcards.scheduler;
+
+import com.example.bankcards.dto.HistoryDto;
+import com.example.bankcards.repository.HistoryRepository;
+import com.example.bankcards.service.HistoryArchive;
+import com.example.bankcards.specification.HistorySpecification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.stream.Stream;
+
+/**
+ * Переносит историю старше history.archive.older-than-months (по целым месяцам) из БД в холодный архив:
+ * строки читаются курсором в порядке id, пишутся сегментами по segment-rows строк и после публикации
+ * сегмента удаляются порциями delete-chunk-size, каждая в своей транзакции.
+ * Удаление, прерванное остановкой, доделывается в начале следующего запуска.
+ */
+@Component
+public class HistoryArchiveJob {
+    private static final Logger log = LoggerFactory.getLogger(HistoryArchiveJob.class);
+
+    private static final Sort KEYSET_ORDER = Sort.by("id");
+
+    private final HistoryRepository historyRepository;
+    private final HistoryArchive historyArchive;
+    private final ShardedJobRunner jobRunner;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int olderThanMonths;
+    private final int segmentRows;
+    private final int deleteChunkSize;
+    private final int fetchSize;
+
+    public record Result(int segments, long rows) {
+    }
+
+    public HistoryArchiveJob(HistoryRepository historyRepository,
+                             HistoryArchive historyArchive,
+                             ShardedJobRunner jobRunner,
+                             TransactionTemplate transactionTemplate,
+                             @Value("${history.archive.enabled:false}") boolean enabled,
+                             @Value("${history.archive.older-than-months:12}") int olderThanMonths,
+                             @Value("${history.archive.segment-rows:100000}") int segmentRows,
+                             @Value("${history.archive.delete-chunk-size:1000}") int deleteChunkSize,
+                             @Value("${export.fetch-size:500}") int fetchSize) {
+        this.historyRepository = historyRepository;
+        this.historyArchive = historyArchive;
+        this.jobRunner = jobRunner;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.olderThanMonths = olderThanMonths;
+        this.segmentRows = segmentRows;
+        this.deleteChunkSize = deleteChunkSize;
+        this.fetchSize = fetchSize;
+    }
+
+    // Ежедневно в 02:45, после обслуживания секций; в кластере — на одном узле
+    @Scheduled(cron = "0 45 2 * * *")
+    public void schedule() {
+        if (enabled) {
+            jobRunner.runExclusively("history-archive", Duration.ofHours(2), Duration.ofMinutes(5),
+                    () -> archive(LocalDate.now()));
+        }
+    }
+
+    public Result archive(LocalDate today) {
+        LocalDateTime before = YearMonth.from(today).minusMonths(olderThanMonths).atDay(1).atStartOfDay();
+        historyArchive.discardIncomplete();
+        for (HistoryArchive.Segment segment : historyArchive.segments()) {
+            if (!segment.purged()) {
+                purge(segment);
+            }
+        }
+
+        int segments = 0;
+        long rows = 0;
+        long lastId = 0;
+        while (true) {
+            HistoryArchive.Segment segment;
+            try (HistoryArchive.SegmentWriter writer = historyArchive.newSegment(before)) {
+                long afterId = lastId;
+                transactionTemplate.execute(status -> {
+                    try (Stream<HistoryDto> stream = historyRepository.streamDtos(
+                            HistorySpecification.archivableAfter(before, afterId), KEYSET_ORDER, fetchSize)) {
+                        stream.limit(segmentRows).forEach(writer::write);
+                    }
+                    return null;
+                });
+                if (writer.rows() == 0) {
+                    break;
+                }
+                segment = writer.publish();
+            }
+            purge(segment);
+            segments++;
+            rows += segment.rows();
+            lastId = segment.maxId();
+            if (segment.rows() < segmentRows) {
+                break;
+            }
+        }
+        if (segments > 0) {
+            log.info("В архив истории перенесено строк: {} (сегментов: {}, раньше {})", rows, segments, before);
+        }
+        return new Result(segments, rows);
+    }
+
+    private void purge(HistoryArchive.Segment segment) {
+        int deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> historyRepository.deleteArchivedChunk(
+                    segment.minId(), segment.maxId(), segment.archivedBefore(), deleteChunkSize));
+        } while (deleted == deleteChunkSize);
+        historyArchive.markPurged(segment);
+    }
+}
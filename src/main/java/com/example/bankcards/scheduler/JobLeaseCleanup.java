@@ -0,0 +1,44 @@
+package com.example.bankcards.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Удаляет из job_leases аренды, истёкшие дольше scheduler.lease.retention назад: без этого строки шардов
+ * прежней разбивки (card.expiration.shard-size) и шардов вне текущего диапазона id копятся бесконечно.
+ */
+@Component
+public class JobLeaseCleanup {
+    private static final Logger log = LoggerFactory.getLogger(JobLeaseCleanup.class);
+
+    private final JobLeaseService leaseService;
+    private final ShardedJobRunner jobRunner;
+    private final Duration retention;
+
+    public JobLeaseCleanup(JobLeaseService leaseService,
+                           ShardedJobRunner jobRunner,
+                           @Value("${scheduler.lease.retention:P7D}") Duration retention) {
+        this.leaseService = leaseService;
+        this.jobRunner = jobRunner;
+        this.retention = retention;
+    }
+
+    // Ежедневно в 04:00, в кластере — на одном узле
+    @Scheduled(cron = "0 0 4 * * *")
+    public void schedule() {
+        jobRunner.runExclusively("job-lease-cleanup", Duration.ofMinutes(10), Duration.ofMinutes(5), this::purge);
+    }
+
+    public int purge() {
+        int deleted = leaseService.purgeExpired(retention);
+        if (deleted > 0) {
+            log.info("Удалено устаревших аренд задач: {}", deleted);
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.bankcards.scheduler;
+
+import com.example.bankcards.repository.JobLeaseRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Аренды фоновых задач в таблице job_leases (работает на той же PostgreSQL/H2, что и приложение).
+ * Захват — условный UPDATE истёкшей строки или INSERT новой, каждый в отдельной транзакции,
+ * поэтому аренда видна другим узлам сразу, независимо от транзакции вызывающего кода.
+ * Время берётся с часов узла: расхождение часов должно быть заметно меньше lockAtMostFor.
+ */
+@Component
+public class JobLeaseService {
+    private final JobLeaseRepository leaseRepository;
+    private final TransactionTemplate requiresNew;
+    private final String nodeId;
+
+    @Autowired
+    public JobLeaseService(JobLeaseRepository leaseRepository,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${scheduler.node-id:}") String nodeId) {
+        this.leaseRepository = leaseRepository;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.nodeId = nodeId == null || nodeId.isBlank() ? defaultNodeId() : nodeId;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Захватывает аренду не дольше чем на lockAtMostFor (страховка на случай падения узла).
+     * @return аренда, если она свободна или истекла; пусто — её держит другой узел
+     */
+    public Optional<Lease> tryAcquire(String name, Duration lockAtMostFor) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime until = now.plus(lockAtMostFor);
+        Integer updated = requiresNew.execute(status -> leaseRepository.acquireIfExpired(name, nodeId, now, until));
+        if (updated != null && updated == 1) {
+            return Optional.of(new Lease(name, now));
+        }
+        if (Boolean.TRUE.equals(requiresNew.execute(status -> leaseRepository.existsById(name)))) {
+            return Optional.empty();
+        }
+        try {
+            requiresNew.executeWithoutResult(status -> leaseRepository.insert(name, nodeId, now, until));
+            return Optional.of(new Lease(name, now));
+        } catch (DataIntegrityViolationException e) {
+            // строку одновременно вставил другой узел
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Освобождает аренду, но не раньше acquiredAt + lockAtLeastFor: узел с запаздывающими часами
+     * или поздним запуском по cron не повторит только что выполненную работу.
+     */
+    public void release(Lease lease, Duration lockAtLeastFor) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime keepUntil = lease.acquiredAt().plus(lockAtLeastFor);
+        LocalDateTime until = keepUntil.isAfter(now) ? keepUntil : now;
+        requiresNew.executeWithoutResult(status -> leaseRepository.extend(lease.name(), nodeId, until));
+    }
+
+    /**
+     * Удаляет аренды, истёкшие раньше чем olderThan назад. Строки шардов создаются по имени job#shardSize:shard
+     * и после смены shard-size или сдвига диапазона id больше не захватываются. Удаление безопасно и для
+     * действующих задач: захват истёкшей аренды меняет lockedUntil, а отсутствующая строка вставляется заново.
+     */
+    public int purgeExpired(Duration olderThan) {
+        LocalDateTime before = LocalDateTime.now().minus(olderThan);
+        Integer deleted = requiresNew.execute(status -> leaseRepository.deleteExpiredBefore(before));
+        return deleted == null ? 0 : deleted;
+    }
+
+    public record Lease(String name, LocalDateTime acquiredAt) {}
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "node";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.bankcards.scheduler;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Обслуживание месячных секций history и transfers (changelog 22): заранее создаёт секции на
+ * partition.premake-months месяцев вперёд и снимает секции старше срока хранения целиком —
+ * DETACH/DROP вместо DELETE по строкам, без раздувания таблицы и нагрузки на autovacuum.
+ * На других СУБД и на несекционированных таблицах ничего не делает.
+ */
+@Component
+public class PartitionMaintenanceJob {
+    private static final Logger log = LoggerFactory.getLogger(PartitionMaintenanceJob.class);
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private final EntityManager entityManager;
+    private final ShardedJobRunner jobRunner;
+    private final TransactionTemplate transactionTemplate;
+    private final int premakeMonths;
+    private final PartitionRetentionAction retentionAction;
+    private final List<PartitionedTable> tables;
+
+    // Секционированная таблица: столбец-ключ секционирования и срок хранения в месяцах (0 — хранить всё)
+    record PartitionedTable(String name, String dateColumn, int retentionMonths) {
+    }
+
+    public record Result(int created, int removed) {
+    }
+
+    public PartitionMaintenanceJob(EntityManager entityManager,
+                                   ShardedJobRunner jobRunner,
+                                   TransactionTemplate transactionTemplate,
+                                   @Value("${partition.premake-months:3}") int premakeMonths,
+                                   @Value("${partition.retention.action:DETACH}") PartitionRetentionAction retentionAction,
+                                   @Value("${partition.retention.history-months:0}") int historyRetentionMonths,
+                                   @Value("${partition.retention.transfers-months:0}") int transfersRetentionMonths) {
+        this.entityManager = entityManager;
+        this.jobRunner = jobRunner;
+        this.transactionTemplate = transactionTemplate;
+        this.premakeMonths = premakeMonths;
+        this.retentionAction = retentionAction;
+        this.tables = List.of(
+                new PartitionedTable("history", "event_date", historyRetentionMonths),
+                new PartitionedTable("transfers", "transfer_date", transfersRetentionMonths));
+    }
+
+    // Ежедневно в 02:15, в кластере — на одном узле
+    @Scheduled(cron = "0 15 2 * * *")
+    public void schedule() {
+        jobRunner.runExclusively("partition-maintenance", Duration.ofMinutes(30), Duration.ofMinutes(5),
+                () -> maintain(LocalDate.now()));
+    }
+
+    public Result maintain(LocalDate today) {
+        if (!isPostgres()) {
+            return new Result(0, 0);
+        }
+        int created = 0;
+        int removed = 0;
+        for (PartitionedTable table : tables) {
+            // каждая таблица — своя транзакция: DDL держит блокировку родителя до коммита
+            Result result = transactionTemplate.execute(status -> maintain(table, YearMonth.from(today)));
+            created += result.created();
+            removed += result.removed();
+        }
+        if (created > 0 || removed > 0) {
+            log.info("Обслуживание секций: создано {}, снято ({}) {}", created, retentionAction, removed);
+        }
+        return new Result(created, removed);
+    }
+
+    private Result maintain(PartitionedTable table, YearMonth current) {
+        if (!isPartitioned(table.name())) {
+            return new Result(0, 0);
+        }
+        int created = 0;
+        for (int i = 0; i <= premakeMonths; i++) {
+            if (createPartition(table, current.plusMonths(i))) {
+                created++;
+            }
+        }
+        int removed = 0;
+        if (table.retentionMonths() > 0) {
+            YearMonth oldestKept = current.minusMonths(table.retentionMonths());
+            Pattern partitionName = Pattern.compile("^" + table.name() + "_p(\\d{4})_(\\d{2})$");
+            for (String partition : partitions(table.name())) {
+                Matcher m = partitionName.matcher(partition);
+                if (m.matches()
+                        && YearMonth.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2))).isBefore(oldestKept)) {
+                    removePartition(table.name(), partition);
+                    removed++;
+                }
+            }
+        }
+        return new Result(created, removed);
+    }
+
+    /*
+     * Секция собирается отдельной таблицей и присоединяется через ATTACH PARTITION: CREATE ... PARTITION OF
+     * отказывает, если в секции _default уже есть строки этого месяца, поэтому они сначала переносятся.
+     * Индексы, PK и внешние ключи родителя ATTACH создаёт на секции сам.
+     */
+    private boolean createPartition(PartitionedTable table, YearMonth month) {
+        String partition = table.name() + "_p" + month.format(SUFFIX);
+        if (exists(partition)) {
+            return false;
+        }
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        execute("CREATE TABLE " + partition + " (LIKE " + table.name() + " INCLUDING DEFAULTS)");
+        int moved = entityManager.createNativeQuery(
+                        "WITH moved AS (DELETE FROM " + table.name() + "_default"
+                                + " WHERE " + table.dateColumn() + " >= :from AND " + table.dateColumn() + " < :to"
+                                + " RETURNING *) INSERT INTO " + partition + " SELECT * FROM moved")
+                .setParameter("from", from.atStartOfDay())
+                .setParameter("to", to.atStartOfDay())
+                .executeUpdate();
+        execute("ALTER TABLE " + table.name() + " ATTACH PARTITION " + partition
+                + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+        if (moved > 0) {
+            log.info("Секция {}: перенесено строк из {}_default: {}", partition, table.name(), moved);
+        }
+        return true;
+    }
+
+    private void removePartition(String table, String partition) {
+        if (retentionAction == PartitionRetentionAction.DROP) {
+            execute("DROP TABLE " + partition);
+        } else {
+            // отсоединённая секция остаётся таблицей с тем же именем и в выборки родителя больше не попадает
+            execute("ALTER TABLE " + table + " DETACH PARTITION " + partition);
+        }
+        log.info("Секция {} старше срока хранения: {}", partition, retentionAction);
+    }
+
+    private boolean isPartitioned(String table) {
+        Number count = (Number) entityManager.createNativeQuery(
+                        "SELECT COUNT(*) FROM pg_partitioned_table WHERE partrelid = to_regclass(:table)")
+                .setParameter("table", table)
+                .getSingleResult();
+        return count.longValue() > 0;
+    }
+
+    private boolean exists(String relation) {
+        return entityManager.createNativeQuery("SELECT to_regclass(:relation) IS NOT NULL")
+                .setParameter("relation", relation)
+                .getSingleResult() == Boolean.TRUE;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> partitions(String table) {
+        return entityManager.createNativeQuery("""
+                        SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                        WHERE i.inhparent = to_regclass(:table) ORDER BY c.relname
+                        """)
+                .setParameter("table", table)
+                .getResultList();
+    }
+
+    // Имена секций строятся из констант и дат, пользовательский ввод в DDL не попадает
+    private void execute(String ddl) {
+        entityManager.createNativeQuery(ddl).executeUpdate();
+    }
+
+    private boolean isPostgres() {
+        return entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices()
+                .getDialect() instanceof PostgreSQLDialect;
+    }
+}
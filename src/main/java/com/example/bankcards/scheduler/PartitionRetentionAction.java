@@ -0,0 +1,11 @@
+package com.example.bankcards.scheduler;
+
+/**
+ * Что делать с месячными секциями history/transfers старше срока хранения.
+ */
+public enum PartitionRetentionAction {
+    /** Секция отсоединяется и остаётся отдельной таблицей (для выгрузки в архив и ручного удаления). */
+    DETACH,
+    /** Секция удаляется вместе с данными. */
+    DROP
+}
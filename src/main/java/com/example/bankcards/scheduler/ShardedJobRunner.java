@@ -0,0 +1,92 @@
+package com.example.bankcards.scheduler;
+
+import com.example.bankcards.scheduler.JobLeaseService.Lease;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Запуск фоновых задач в кластере поверх {@link JobLeaseService}.
+ * Задача целиком выполняется одним узлом ({@link #runExclusively}) или делится на диапазоны id
+ * фиксированной ширины ({@link #runSharded}): границы шардов не зависят от данных, которые видит
+ * конкретный узел, поэтому узлы не пропускают и не делят строки между собой. Каждый шард берёт тот узел,
+ * что первым захватил его аренду; узлы начинают обход с разных шардов, чтобы реже сталкиваться.
+ * При scheduler.lease.enabled=false аренды не используются (один узел).
+ */
+@Component
+public class ShardedJobRunner {
+    private static final Logger log = LoggerFactory.getLogger(ShardedJobRunner.class);
+
+    private final JobLeaseService leaseService;
+    private final boolean enabled;
+
+    public ShardedJobRunner(JobLeaseService leaseService,
+                            @Value("${scheduler.lease.enabled:true}") boolean enabled) {
+        this.leaseService = leaseService;
+        this.enabled = enabled;
+    }
+
+    /** Обработка диапазона id [fromId, toId] включительно; возвращает число обработанных строк. */
+    @FunctionalInterface
+    public interface RangeTask {
+        long process(long fromId, long toId);
+    }
+
+    /** @return false, если задачу сейчас выполняет (или недавно выполнил) другой узел */
+    public boolean runExclusively(String job, Duration lockAtMostFor, Duration lockAtLeastFor, Runnable task) {
+        if (!enabled) {
+            task.run();
+            return true;
+        }
+        Optional<Lease> lease = leaseService.tryAcquire(job, lockAtMostFor);
+        if (lease.isEmpty()) {
+            log.debug("Задача {} выполняется другим узлом", job);
+            return false;
+        }
+        try {
+            task.run();
+        } finally {
+            leaseService.release(lease.get(), lockAtLeastFor);
+        }
+        return true;
+    }
+
+    /**
+     * Обходит шарды [k * shardSize, (k + 1) * shardSize - 1], покрывающие [minId, maxId].
+     * @return число строк, обработанных этим узлом
+     */
+    public long runSharded(String job, long minId, long maxId, long shardSize,
+                           Duration lockAtMostFor, Duration lockAtLeastFor, RangeTask task) {
+        if (maxId < minId) {
+            return 0;
+        }
+        long firstShard = Math.max(0, minId) / shardSize;
+        long shardCount = maxId / shardSize - firstShard + 1;
+        long offset = Math.floorMod(leaseService.getNodeId().hashCode(), shardCount);
+        long processed = 0;
+        for (long i = 0; i < shardCount; i++) {
+            long shard = firstShard + (offset + i) % shardCount;
+            long fromId = shard * shardSize;
+            long toId = fromId + shardSize - 1;
+            if (!enabled) {
+                processed += task.process(fromId, toId);
+                continue;
+            }
+            // размер шарда в имени: при смене настройки старые аренды не мешают новой разбивке
+            Optional<Lease> lease = leaseService.tryAcquire(job + "#" + shardSize + ":" + shard, lockAtMostFor);
+            if (lease.isEmpty()) {
+                continue;
+            }
+            try {
+                processed += task.process(fromId, toId);
+            } finally {
+                leaseService.release(lease.get(), lockAtLeastFor);
+            }
+        }
+        return processed;
+    }
+}
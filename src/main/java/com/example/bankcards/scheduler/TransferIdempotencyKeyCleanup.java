@@ -0,0 +1,54 @@
+package com.example.bankcards.scheduler;
+
+import com.example.bankcards.repository.TransferIdempotencyKeyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Удаляет ключи идемпотентности переводов старше transfer.idempotency.retention-hours:
+ * клиенты повторяют запрос в течение минут, хранить ключи дольше суток незачем.
+ */
+@Component
+public class TransferIdempotencyKeyCleanup {
+    private static final Logger log = LoggerFactory.getLogger(TransferIdempotencyKeyCleanup.class);
+
+    private final TransferIdempotencyKeyRepository idempotencyKeyRepository;
+    private final ShardedJobRunner jobRunner;
+    private final TransactionTemplate transactionTemplate;
+    private final long retentionHours;
+
+    public TransferIdempotencyKeyCleanup(TransferIdempotencyKeyRepository idempotencyKeyRepository,
+                                         ShardedJobRunner jobRunner,
+                                         TransactionTemplate transactionTemplate,
+                                         @Value("${transfer.idempotency.retention-hours:24}") long retentionHours) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.jobRunner = jobRunner;
+        this.transactionTemplate = transactionTemplate;
+        this.retentionHours = retentionHours;
+    }
+
+    // Ежедневно в 03:30, в кластере — на одном узле
+    @Scheduled(cron = "0 30 3 * * *")
+    public void schedule() {
+        jobRunner.runExclusively("transfer-idempotency-cleanup", Duration.ofMinutes(10), Duration.ofMinutes(5),
+                // вызов изнутри бина не проходит через прокси @Transactional
+                () -> transactionTemplate.execute(status -> purgeExpired()));
+    }
+
+    @Transactional
+    public int purgeExpired() {
+        int deleted = idempotencyKeyRepository.deleteCreatedBefore(LocalDateTime.now().minusHours(retentionHours));
+        if (deleted > 0) {
+            log.info("Удалено устаревших ключей идемпотентности переводов: {}", deleted);
+        }
+        return deleted;
+    }
+}
@@ -2,6 +2,8 @@ package com.example.bankcards.security;
 
 import com.example.bankcards.entity.Role;
 import com.example.bankcards.entity.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.stereotype.Service;
@@ -13,35 +15,51 @@ import java.security.Key;
 @Service
 public class JwtService {
 
+    private static final int VERIFIED_TOKEN_CACHE_SIZE = 10_000;
+
     // Читаем из переменных окружения с дефолтами для локальной разработки и тестов
     private final String jwtSecret = System.getenv().getOrDefault("JWT_SECRET", "yourSecretKeyyourSecretKeyyourSecretKey");
     private final long jwtExpirationMs = Long.parseLong(System.getenv().getOrDefault("JWT_EXPIRATION_MS", "86400000"));
 
+    // Ключ и парсер неизменяемы и потокобезопасны — строим один раз на всё приложение
+    private final Key signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+    private final JwtParser parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+    private final VerifiedTokenCache verifiedTokens = new VerifiedTokenCache(VERIFIED_TOKEN_CACHE_SIZE);
+
     public String generateToken(String username, Role role) { // legacy вариант без userId (оставлен для совместимости тестов/старых вызовов)
-        Key key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
         return Jwts.builder()
                 .setSubject(username)
                 .claim("role", role.name())
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + jwtExpirationMs))
-                .signWith(key)
+                .signWith(signingKey)
                 .compact();
     }
 
     // Новый предпочтительный метод: добавляем userId как отдельный claim
     public String generateToken(User user) {
-        Key key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
         return Jwts.builder()
                 .setSubject(user.getUsername())
                 .claim("role", user.getRole().name())
                 .claim("userId", user.getId())
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + jwtExpirationMs))
-                .signWith(key)
+                .signWith(signingKey)
                 .compact();
     }
 
-    public String getSecret() { // для фильтра (можно позже вынести в отдельный бин)
-        return jwtSecret;
+    /**
+     * Проверяет подпись и срок действия токена и возвращает claims (только для чтения).
+     * Повторные запросы с тем же токеном до его истечения обслуживаются из кэша без HMAC и разбора JSON.
+     * @throws io.jsonwebtoken.JwtException если токен невалиден или истёк
+     */
+    public Claims parseClaims(String token) {
+        Claims cached = verifiedTokens.get(token);
+        if (cached != null) {
+            return cached;
+        }
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        verifiedTokens.put(token, claims);
+        return claims;
     }
 }
@@ -1,69 +1,86 @@
 package com.example.bankcards.security;
 
-import com.example.bankcards.entity.Card;
-import com.example.bankcards.service.CardService;
-import com.example.bankcards.service.TransferService;
-import com.example.bankcards.service.HistoryService;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardRepository.OwnerView;
+import com.example.bankcards.repository.HistoryRepository;
+import com.example.bankcards.repository.TransferRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.BoundedTtlCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Проверки владения ресурсами. Владелец читается проекцией одним запросом по первичным ключам,
+ * и на короткое время кэшируется только его id: повторные проверки по id в пределах TTL не обращаются к БД.
+ * Проверки по имени сверяют имя с users при каждом вызове, поэтому переименование действует сразу.
+ */
 @Service("permissionService")
 public class PermissionService {
-    private final CardService cardService;
-    private final TransferService transferService;
-    private final HistoryService historyService;
+    private static final String CARD = "card";
+    private static final String TRANSFER = "transfer";
+    private static final String HISTORY = "history";
+
+    private final CardRepository cardRepository;
+    private final TransferRepository transferRepository;
+    private final HistoryRepository historyRepository;
     private final UserRepository userRepository;
+    // id владельца по ключу «тип ресурса:id»; имя не кэшируется. TTL ограничивает время, в течение
+    // которого виден прежний владелец после удаления ресурса. Отсутствующие ресурсы не кэшируются.
+    private final BoundedTtlCache<String, Long> ownershipCache;
 
     @Autowired
-    public PermissionService(CardService cardService, TransferService transferService, HistoryService historyService, UserRepository userRepository) {
-        this.cardService = cardService;
-        this.transferService = transferService;
-        this.historyService = historyService;
+    public PermissionService(CardRepository cardRepository, TransferRepository transferRepository,
+                             HistoryRepository historyRepository, UserRepository userRepository,
+                             @Value("${security.ownership-cache.ttl:PT30S}") Duration cacheTtl,
+                             @Value("${security.ownership-cache.max-size:10000}") int cacheMaxSize) {
+        this.cardRepository = cardRepository;
+        this.transferRepository = transferRepository;
+        this.historyRepository = historyRepository;
         this.userRepository = userRepository;
+        this.ownershipCache = new BoundedTtlCache<>(cacheMaxSize, cacheTtl);
     }
 
     public boolean isCardOwner(Long cardId, Long userId) {
-        return cardService.getCardById(cardId)
-                .map(card -> card.getUser() != null && card.getUser().getId().equals(userId))
+        return ownerId(CARD, cardId, cardRepository::findOwnerById)
+                .map(ownerId -> ownerId.equals(userId))
                 .orElse(false);
     }
 
     public boolean isTransferOwner(Long transferId, Long userId) {
-        return transferService.getTransferById(transferId)
-                .map(transfer -> transfer.getSourceCard() != null &&
-                        transfer.getSourceCard().getUser() != null &&
-                        transfer.getSourceCard().getUser().getId().equals(userId))
+        return ownerId(TRANSFER, transferId, transferRepository::findOwnerById)
+                .map(ownerId -> ownerId.equals(userId))
                 .orElse(false);
     }
 
     public boolean isHistoryOwner(Long historyId, String username) {
-        return historyService.getHistoryById(historyId)
-                .map(history -> history.getUser() != null &&
-                        history.getUser().getUsername() != null &&
-                        history.getUser().getUsername().equals(username))
+        if (username == null) return false;
+        return ownerId(HISTORY, historyId, historyRepository::findOwnerById)
+                .map(ownerId -> isUserMatches(ownerId, username))
                 .orElse(false);
     }
 
     public boolean isCardOwnerUsername(Long cardId, String username) {
         if (username == null) return false;
-        return cardService.getCardById(cardId)
-                .map(card -> card.getUser() != null && username.equals(card.getUser().getUsername()))
+        return ownerId(CARD, cardId, cardRepository::findOwnerById)
+                .map(ownerId -> isUserMatches(ownerId, username))
                 .orElse(false);
     }
 
     public boolean isTransferOwnerByUsername(Long transferId, String username) {
         if (username == null) return false;
-        return transferService.getTransferById(transferId)
-                .map(t -> t.getSourceCard() != null && t.getSourceCard().getUser() != null && username.equals(t.getSourceCard().getUser().getUsername()))
+        return ownerId(TRANSFER, transferId, transferRepository::findOwnerById)
+                .map(ownerId -> isUserMatches(ownerId, username))
                 .orElse(false);
     }
 
     public boolean isUserMatches(Long userId, String username) {
         if (username == null) return false;
-        return userRepository.findById(userId)
-                .map(u -> username.equals(u.getUsername()))
-                .orElse(false);
+        return userRepository.existsByIdAndUsername(userId, username);
     }
 
     public boolean canViewCard(Long cardId, Long userId, boolean isAdmin) {
@@ -75,4 +92,18 @@ public class PermissionService {
         if (isAdmin) return true;
         return isCardOwner(cardId, userId);
     }
+
+    private Optional<Long> ownerId(String resource, Long id, Function<Long, Optional<OwnerView>> lookup) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        String key = resource + ":" + id;
+        Long cached = ownershipCache.get(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<Long> ownerId = lookup.apply(id).map(OwnerView::getUserId);
+        ownerId.ifPresent(value -> ownershipCache.put(key, value));
+        return ownerId;
+    }
 }
@@ -15,6 +15,7 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.CorsFilter;
 
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletResponse;
 
 @EnableMethodSecurity
@@ -50,6 +51,9 @@ public class SecurityConfig {
                 )
                 .anonymous(anon -> anon.disable())
                 .authorizeHttpRequests(auth -> auth
+                        // ASYNC-диспетчеризация завершает уже авторизованный запрос (потоковые выгрузки /export):
+                        // токен в ней повторно не разбирается
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         // Swagger/OpenAPI — разрешаем без авторизации
                         .requestMatchers(
                                 "/v3/api-docs/**",
@@ -59,6 +63,8 @@ public class SecurityConfig {
                         ).permitAll()
                         // Публичные эндпоинты аутентификации
                         .requestMatchers("/auth/**").permitAll()
+                        // Метрики и состояние (actuator) — только для администратора
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         // Остальное — только для аутентифицированных ролей
                         .anyRequest().hasAnyRole("USER", "ADMIN")
                 )
@@ -0,0 +1,54 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.util.BoundedTtlCache;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * Ограниченный кэш уже проверенных JWT: SHA-256 токена → claims; запись живёт до exp токена.
+ * Claims изменяемы, поэтому кэш хранит их копию и на каждый get отдаёт новую.
+ */
+class VerifiedTokenCache {
+    private final BoundedTtlCache<String, Map<String, Object>> entries;
+    private final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    });
+
+    VerifiedTokenCache(int maxSize) {
+        // время жизни задаёт exp каждого токена
+        this.entries = new BoundedTtlCache<>(maxSize, Duration.ZERO);
+    }
+
+    Claims get(String token) {
+        Map<String, Object> claims = entries.get(hash(token));
+        return claims == null ? null : Jwts.claims(claims);
+    }
+
+    void put(String token, Claims claims) {
+        Date expiration = claims.getExpiration();
+        if (expiration == null) {
+            return; // бессрочные токены не кэшируем
+        }
+        entries.put(hash(token), Map.copyOf(claims), expiration.getTime());
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private String hash(String token) {
+        return HexFormat.of().formatHex(sha256.get().digest(token.getBytes(StandardCharsets.UTF_8)));
+    }
+}
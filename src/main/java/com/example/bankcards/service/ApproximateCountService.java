@@ -0,0 +1,90 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.util.BoundedTtlCache;
+import jakarta.persistence.EntityManager;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Приблизительное общее количество для режима withTotal=approximate.
+ * Без фильтров на PostgreSQL берётся оценка планировщика pg_class.reltuples (обновляется ANALYZE/autovacuum;
+ * для секционированных таблиц — сумма по секциям),
+ * в остальных случаях — точный COUNT, закэшированный на pagination.count-cache.ttl по ключу фильтра.
+ */
+@Service
+public class ApproximateCountService {
+
+    // Секционированная таблица (relkind 'p') своей оценки не имеет: суммируются оценки секций;
+    // ещё не анализированные (пустые будущие) секции дают -1 и не учитываются
+    private static final String RELTUPLES_SQL = """
+            SELECT CAST(CASE WHEN t.relkind <> 'p' THEN t.reltuples
+                        ELSE (SELECT CASE WHEN bool_or(p.reltuples >= 0) THEN SUM(GREATEST(p.reltuples, 0)) ELSE -1 END
+                              FROM pg_inherits i JOIN pg_class p ON p.oid = i.inhrelid
+                              WHERE i.inhparent = t.oid) END AS bigint)
+            FROM pg_class t WHERE t.oid = to_regclass(:table)
+            """;
+
+    private final EntityManager entityManager;
+    private final BoundedTtlCache<String, Long> cache;
+    private volatile Boolean postgres;
+
+    public ApproximateCountService(EntityManager entityManager,
+                                   @Value("${pagination.count-cache.ttl:PT60S}") Duration cacheTtl,
+                                   @Value("${pagination.count-cache.max-size:1000}") int cacheMaxSize) {
+        this.entityManager = entityManager;
+        this.cache = new BoundedTtlCache<>(cacheMaxSize, cacheTtl);
+    }
+
+    /**
+     * @param table      таблица, по которой считается количество
+     * @param filter     фильтр запроса (ключ кэша); null — запрос по всей таблице
+     * @param exactCount точный COUNT по тому же фильтру
+     */
+    @Transactional(readOnly = true)
+    public long estimate(String table, Object filter, LongSupplier exactCount) {
+        if (filter == null && isPostgres()) {
+            long reltuples = reltuples(table);
+            // -1: таблицу ещё не анализировали, оценки нет
+            if (reltuples >= 0) {
+                return reltuples;
+            }
+        }
+        String key = table + ":" + filter;
+        Long cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        long count = exactCount.getAsLong();
+        cache.put(key, count);
+        return count;
+    }
+
+    private long reltuples(String table) {
+        Object value = entityManager
+                .createNativeQuery(RELTUPLES_SQL)
+                .setParameter("table", table)
+                .getResultList()
+                .stream()
+                .findFirst()
+                .orElse(null);
+        return value == null ? -1 : ((Number) value).longValue();
+    }
+
+    private boolean isPostgres() {
+        Boolean result = postgres;
+        if (result == null) {
+            result = entityManager.getEntityManagerFactory()
+                    .unwrap(SessionFactoryImplementor.class)
+                    .getJdbcServices()
+                    .getDialect() instanceof PostgreSQLDialect;
+            postgres = result;
+        }
+        return result;
+    }
+}
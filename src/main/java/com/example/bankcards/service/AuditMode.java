@@ -0,0 +1,14 @@
+package com.example.bankcards.service;
+
+/**
+ * Режим записи истории (аудита) операций.
+ */
+public enum AuditMode {
+    /** Запись в транзакции операции: атомарна с изменением, но входит в её латентность. */
+    SYNC,
+    /**
+     * Запись после коммита фоновым потоком батчами: операция не ждёт аудита;
+     * при аварийной остановке узла теряется ещё не записанное содержимое очереди.
+     */
+    ASYNC
+}
@@ -0,0 +1,280 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.History;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.HistoryRepository;
+import com.example.bankcards.repository.TransferRepository;
+import com.example.bankcards.repository.UserRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Запись истории операций. В режиме SYNC строки сохраняются в текущей транзакции.
+ * В режиме ASYNC события после коммита ставятся в ограниченную очередь, фоновый поток
+ * пишет их JDBC-батчами — по batch-size событий или раз в flush-interval, что наступит раньше;
+ * откат транзакции отбрасывает её события. Если очередь заполнена дольше enqueue-timeout,
+ * вызывающий поток пишет свои события сам: нагрузка замедляет операции, но аудит не теряется.
+ * Неудачный батч повторяется retry-attempts раз с удвоением паузы retry-backoff, затем события
+ * пишутся по одному: одна ошибочная строка не уносит весь батч, а каждое потерянное событие
+ * попадает в лог уровня ERROR целиком и в audit.failed.
+ * Метрики: audit.queue.size, audit.written, audit.failed, audit.overflow.
+ */
+@Component
+public class AuditTrail {
+    private static final Logger log = LoggerFactory.getLogger(AuditTrail.class);
+
+    private final HistoryRepository historyRepository;
+    private final UserRepository userRepository;
+    private final CardRepository cardRepository;
+    private final TransferRepository transferRepository;
+    private final TransactionTemplate writeTransaction;
+    private final AuditMode mode;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long enqueueTimeoutNanos;
+    private final int retryAttempts;
+    private final long retryBackoffNanos;
+
+    private final BlockingQueue<AuditEvent> queue;
+    private final Thread writer;
+    private volatile boolean running = true;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong overflow = new AtomicLong();
+
+    public AuditTrail(HistoryRepository historyRepository,
+                      UserRepository userRepository,
+                      CardRepository cardRepository,
+                      TransferRepository transferRepository,
+                      PlatformTransactionManager transactionManager,
+                      MeterRegistry meterRegistry,
+                      @Value("${audit.mode:ASYNC}") AuditMode mode,
+                      @Value("${audit.queue-capacity:10000}") int queueCapacity,
+                      @Value("${audit.batch-size:500}") int batchSize,
+                      @Value("${audit.flush-interval:PT0.2S}") Duration flushInterval,
+                      @Value("${audit.enqueue-timeout:PT0.05S}") Duration enqueueTimeout,
+                      @Value("${audit.retry-attempts:3}") int retryAttempts,
+                      @Value("${audit.retry-backoff:PT0.1S}") Duration retryBackoff) {
+        this.historyRepository = historyRepository;
+        this.userRepository = userRepository;
+        this.cardRepository = cardRepository;
+        this.transferRepository = transferRepository;
+        // запись идёт вне транзакции операции: из фонового потока или из afterCommit
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.mode = mode;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.enqueueTimeoutNanos = enqueueTimeout.toNanos();
+        this.retryAttempts = Math.max(1, retryAttempts);
+        this.retryBackoffNanos = retryBackoff.toNanos();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+
+        Gauge.builder("audit.queue.size", queue, BlockingQueue::size)
+                .description("События аудита, ожидающие записи")
+                .register(meterRegistry);
+        FunctionCounter.builder("audit.written", written, AtomicLong::get)
+                .register(meterRegistry);
+        FunctionCounter.builder("audit.failed", failed, AtomicLong::get)
+                .description("События аудита, не записанные из-за ошибки")
+                .register(meterRegistry);
+        FunctionCounter.builder("audit.overflow", overflow, AtomicLong::get)
+                .description("События, записанные вызывающим потоком из-за заполненной очереди")
+                .register(meterRegistry);
+
+        if (mode == AuditMode.ASYNC) {
+            writer = new Thread(this::drain, "audit-writer");
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            writer = null;
+        }
+    }
+
+    public void record(History history) {
+        recordAll(List.of(history));
+    }
+
+    public void recordAll(List<History> histories) {
+        if (histories.isEmpty()) {
+            return;
+        }
+        if (mode == AuditMode.SYNC) {
+            historyRepository.saveAll(histories);
+            return;
+        }
+        // id связей читаются сейчас: после коммита сущности отсоединены
+        List<AuditEvent> events = histories.stream().map(AuditEvent::of).toList();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(events);
+                }
+            });
+        } else {
+            enqueue(events);
+        }
+    }
+
+    private void enqueue(List<AuditEvent> events) {
+        int queued = 0;
+        try {
+            while (queued < events.size() && queue.offer(events.get(queued), enqueueTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                queued++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (queued < events.size()) {
+            List<AuditEvent> rejected = events.subList(queued, events.size());
+            overflow.addAndGet(rejected.size());
+            write(rejected);
+        }
+    }
+
+    private void drain() {
+        List<AuditEvent> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                AuditEvent first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long waitNanos = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || waitNanos <= 0) {
+                        break;
+                    }
+                    AuditEvent next = queue.poll(waitNanos, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                write(batch);
+                running = false;
+            } catch (RuntimeException e) {
+                log.error("Аудит: сбой фонового потока записи", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<AuditEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        boolean interrupted = false;
+        long backoffNanos = retryBackoffNanos;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                save(events);
+                written.addAndGet(events.size());
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= retryAttempts) {
+                    log.warn("Аудит: батч из {} событий не записан за {} попыток, запись по одному: {}",
+                            events.size(), attempt, e.getMessage());
+                    break;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.sleep(backoffNanos);
+                } catch (InterruptedException ie) {
+                    // остановка: без пауз сразу пишем по одному, флаг прерывания вернём в конце
+                    interrupted = true;
+                    break;
+                }
+                backoffNanos *= 2;
+            }
+        }
+        for (AuditEvent event : events) {
+            try {
+                save(List.of(event));
+                written.incrementAndGet();
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                log.error("Аудит: событие потеряно {}: {}", event, e.getMessage(), e);
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void save(List<AuditEvent> events) {
+        writeTransaction.executeWithoutResult(status -> historyRepository.saveAll(toEntities(events)));
+    }
+
+    private List<History> toEntities(List<AuditEvent> events) {
+        List<History> histories = new ArrayList<>(events.size());
+        for (AuditEvent event : events) {
+            History history = new History();
+            history.setEventType(event.eventType());
+            history.setEventDate(event.eventDate());
+            history.setDescription(event.description());
+            history.setUser(event.userId() != null ? userRepository.getReferenceById(event.userId()) : null);
+            history.setCard(event.cardId() != null ? cardRepository.getReferenceById(event.cardId()) : null);
+            history.setTransfer(event.transferId() != null ? transferRepository.getReferenceById(event.transferId()) : null);
+            histories.add(history);
+        }
+        return histories;
+    }
+
+    /** Дописывает очередь при остановке приложения (до закрытия пула соединений). */
+    @PreDestroy
+    public void shutdown() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        // прерывание будит поток в ожидании очереди; уже набранный батч он запишет перед выходом
+        writer.interrupt();
+        try {
+            writer.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<AuditEvent> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (int from = 0; from < rest.size(); from += batchSize) {
+            write(rest.subList(from, Math.min(rest.size(), from + batchSize)));
+        }
+    }
+
+    private record AuditEvent(String eventType, LocalDateTime eventDate, String description,
+                              Long userId, Long cardId, Long transferId) {
+        static AuditEvent of(History history) {
+            return new AuditEvent(history.getEventType(), history.getEventDate(), history.getDescription(),
+                    history.getUser() != null ? history.getUser().getId() : null,
+                    history.getCard() != null ? history.getCard().getId() : null,
+                    history.getTransfer() != null ? history.getTransfer().getId() : null);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.exception.EncryptionFailureException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HexFormat;
+
+/**
+ * Детерминированные "слепые индексы" (keyed HMAC-SHA256) для номеров карт.
+ * Позволяют искать карту по полному номеру или последним 4 цифрам равенством
+ * по индексированному столбцу, не расшифровывая записи.
+ * Ключ отдельный от ключа шифрования: ротация ключа AES не меняет индексы.
+ */
+@Service
+public class CardBlindIndexService {
+    private static final String ALGORITHM = "HmacSHA256";
+    // Префиксы разделяют домены, чтобы индекс last4 нельзя было сопоставить с индексом номера
+    private static final String PAN_DOMAIN = "pan:";
+    private static final String LAST4_DOMAIN = "last4:";
+
+    private final ThreadLocal<Mac> mac;
+
+    public CardBlindIndexService(@Value("${card.blind-index.key}") String secretKey) {
+        SecretKeySpec keySpec = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance(ALGORITHM);
+                instance.init(keySpec);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new EncryptionFailureException("Ошибка инициализации HMAC для индекса карты", e);
+            }
+        });
+    }
+
+    public String panIndex(String cardNumber) {
+        return hmac(PAN_DOMAIN + cardNumber);
+    }
+
+    public String last4Index(String last4) {
+        return hmac(LAST4_DOMAIN + last4);
+    }
+
+    /** Заполняет индексные столбцы карты по открытому номеру. */
+    public void index(Card card, String cardNumber) {
+        card.setPanHash(panIndex(cardNumber));
+        card.setLast4Hash(last4Index(cardNumber.substring(cardNumber.length() - 4)));
+    }
+
+    private String hmac(String value) {
+        byte[] digest = mac.get().doFinal(value.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest);
+    }
+}
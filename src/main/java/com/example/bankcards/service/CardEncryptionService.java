@@ -1,48 +1,194 @@
 package com.example.bankcards.service;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import com.example.bankcards.exception.EncryptionFailureException;
 
+/**
+ * Шифрование номеров карт.
+ * Формат: {@code <keyId>:<base64(iv || ciphertext || tag)>}, AES-GCM; keyId указывает ключ
+ * из связки card.encryption.keys (k1 по умолчанию — card.encryption.key), новые номера
+ * шифруются активным ключом (active-key-id).
+ * Значения без префикса — старый формат (AES/ECB ключом card.encryption.key), они
+ * по-прежнему расшифровываются и переводятся на активный ключ {@link com.example.bankcards.scheduler.CardKeyRotationJob}.
+ * Cipher не потокобезопасен, поэтому экземпляры хранятся по одному на поток, а GCM — по одному на поток и ключ:
+ * GCM требует init на каждый IV, и при том же ключе провайдер переиспользует уже развёрнутое расписание AES,
+ * а не разворачивает его заново при чередовании ключей (расшифровка старым, шифрование активным).
+ */
 @Service
 public class CardEncryptionService {
-    private final String secretKey;
+    public static final String DEFAULT_KEY_ID = "k1";
 
-    public CardEncryptionService(@Value("${card.encryption.key}") String secretKey) {
-        this.secretKey = secretKey;
+    private static final String ALGORITHM = "AES";
+    private static final String GCM_TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final char KEY_ID_SEPARATOR = ':';
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+
+    private final Map<String, SecretKeySpec> keys;
+    private final String activeKeyId;
+    private final SecretKeySpec activeKey;
+    private final SecureRandom random = new SecureRandom();
+    private final ThreadLocal<Map<String, Cipher>> gcmCiphers = ThreadLocal.withInitial(HashMap::new);
+    private final ThreadLocal<Cipher> legacyDecryptCipher;
+
+    /** Один ключ: он же активный ({@value #DEFAULT_KEY_ID}) и ключ старого формата. */
+    public CardEncryptionService(String secretKey) {
+        this(secretKey, DEFAULT_KEY_ID, "");
+    }
+
+    /**
+     * @param legacyKey   ключ старого формата без префикса; он же ключ {@value #DEFAULT_KEY_ID}, если тот не задан в keys
+     * @param activeKeyId идентификатор ключа для новых шифрований
+     * @param keyRing     дополнительные ключи в виде {@code id=secret,id2=secret2}
+     */
+    @Autowired
+    public CardEncryptionService(@Value("${card.encryption.key}") String legacyKey,
+                                 @Value("${card.encryption.active-key-id:" + DEFAULT_KEY_ID + "}") String activeKeyId,
+                                 @Value("${card.encryption.keys:}") String keyRing) {
+        if (activeKeyId.isBlank() || activeKeyId.indexOf(KEY_ID_SEPARATOR) >= 0) {
+            throw new IllegalArgumentException("Некорректный card.encryption.active-key-id: " + activeKeyId);
+        }
+        SecretKeySpec legacy = new SecretKeySpec(legacyKey.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.keys = parseKeyRing(keyRing);
+        this.keys.putIfAbsent(DEFAULT_KEY_ID, legacy);
+        if (!keys.containsKey(activeKeyId)) {
+            throw new IllegalArgumentException("Активный ключ " + activeKeyId + " не задан в card.encryption.keys");
+        }
+        this.activeKeyId = activeKeyId;
+        this.activeKey = keys.get(activeKeyId);
+        this.legacyDecryptCipher = ThreadLocal.withInitial(() -> {
+            Cipher cipher = newCipher(ALGORITHM);
+            try {
+                cipher.init(Cipher.DECRYPT_MODE, legacy);
+            } catch (GeneralSecurityException e) {
+                throw new EncryptionFailureException("Ошибка инициализации шифра номера карты", e);
+            }
+            return cipher;
+        });
     }
 
     public String encrypt(String cardNumber) {
         try {
-            SecretKeySpec keySpec = new SecretKeySpec(secretKey.getBytes(), "AES");
-            Cipher cipher = Cipher.getInstance("AES");
-            cipher.init(Cipher.ENCRYPT_MODE, keySpec);
-            byte[] encrypted = cipher.doFinal(cardNumber.getBytes());
-            return Base64.getEncoder().encodeToString(encrypted);
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            Cipher cipher = gcmCipher(activeKeyId);
+            cipher.init(Cipher.ENCRYPT_MODE, activeKey, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+            byte[] encrypted = cipher.doFinal(cardNumber.getBytes(StandardCharsets.UTF_8));
+            byte[] payload = ByteBuffer.allocate(IV_LENGTH + encrypted.length).put(iv).put(encrypted).array();
+            return activeKeyId + KEY_ID_SEPARATOR + Base64.getEncoder().encodeToString(payload);
         } catch (Exception e) {
+            gcmCiphers.remove();
             throw new EncryptionFailureException("Ошибка шифрования номера карты", e);
         }
     }
 
     public String decrypt(String encryptedCardNumber) {
         try {
-            SecretKeySpec keySpec = new SecretKeySpec(secretKey.getBytes(), "AES");
-            Cipher cipher = Cipher.getInstance("AES");
-            cipher.init(Cipher.DECRYPT_MODE, keySpec);
-            byte[] decoded = Base64.getDecoder().decode(encryptedCardNumber);
-            byte[] decrypted = cipher.doFinal(decoded);
-            return new String(decrypted);
+            return decryptValue(encryptedCardNumber);
+        } catch (Exception e) {
+            resetCiphers();
+            throw new EncryptionFailureException("Ошибка дешифрования номера карты", e);
+        }
+    }
+
+    /** Расшифровывает список номеров; порядок результата совпадает с порядком входа. */
+    public List<String> decryptAll(List<String> encryptedCardNumbers) {
+        List<String> result = new ArrayList<>(encryptedCardNumbers.size());
+        try {
+            for (String encrypted : encryptedCardNumbers) {
+                result.add(decryptValue(encrypted));
+            }
+            return result;
         } catch (Exception e) {
+            resetCiphers();
             throw new EncryptionFailureException("Ошибка дешифрования номера карты", e);
         }
     }
 
+    /** Зашифровано ли значение активным ключом (иначе его нужно перешифровать). */
+    public boolean isCurrent(String encryptedCardNumber) {
+        return encryptedCardNumber != null && encryptedCardNumber.startsWith(activeKeyPrefix());
+    }
+
+    /** Префикс значений, зашифрованных активным ключом. */
+    public String activeKeyPrefix() {
+        return activeKeyId + KEY_ID_SEPARATOR;
+    }
+
     public String mask(String cardNumber) {
         if (cardNumber == null || cardNumber.length() != 16) return null;
         return "**** **** **** " + cardNumber.substring(12);
     }
+
+    private String decryptValue(String encryptedCardNumber) throws GeneralSecurityException {
+        int separator = encryptedCardNumber.indexOf(KEY_ID_SEPARATOR);
+        if (separator < 0) {
+            byte[] decoded = Base64.getDecoder().decode(encryptedCardNumber);
+            return new String(legacyDecryptCipher.get().doFinal(decoded), StandardCharsets.UTF_8);
+        }
+        String keyId = encryptedCardNumber.substring(0, separator);
+        SecretKeySpec key = keys.get(keyId);
+        if (key == null) {
+            throw new EncryptionFailureException("Неизвестный ключ шифрования карты: " + keyId);
+        }
+        byte[] payload = Base64.getDecoder().decode(encryptedCardNumber.substring(separator + 1));
+        if (payload.length <= IV_LENGTH) {
+            throw new EncryptionFailureException("Некорректный формат зашифрованного номера карты");
+        }
+        Cipher cipher = gcmCipher(keyId);
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, payload, 0, IV_LENGTH));
+        byte[] decrypted = cipher.doFinal(payload, IV_LENGTH, payload.length - IV_LENGTH);
+        return new String(decrypted, StandardCharsets.UTF_8);
+    }
+
+    private Cipher gcmCipher(String keyId) {
+        return gcmCiphers.get().computeIfAbsent(keyId, id -> newCipher(GCM_TRANSFORMATION));
+    }
+
+    private void resetCiphers() {
+        gcmCiphers.remove();
+        legacyDecryptCipher.remove();
+    }
+
+    private static Map<String, SecretKeySpec> parseKeyRing(String keyRing) {
+        Map<String, SecretKeySpec> result = new HashMap<>();
+        if (keyRing == null || keyRing.isBlank()) {
+            return result;
+        }
+        for (String entry : keyRing.split(",")) {
+            int eq = entry.indexOf('=');
+            if (eq <= 0 || eq == entry.length() - 1) {
+                throw new IllegalArgumentException("Некорректная запись в card.encryption.keys: ожидается id=secret");
+            }
+            String id = entry.substring(0, eq).trim();
+            if (id.indexOf(KEY_ID_SEPARATOR) >= 0) {
+                throw new IllegalArgumentException("Идентификатор ключа не может содержать ':' — " + id);
+            }
+            result.put(id, new SecretKeySpec(entry.substring(eq + 1).trim().getBytes(StandardCharsets.UTF_8), ALGORITHM));
+        }
+        return result;
+    }
+
+    private static Cipher newCipher(String transformation) {
+        try {
+            return Cipher.getInstance(transformation);
+        } catch (GeneralSecurityException e) {
+            throw new EncryptionFailureException("Ошибка инициализации шифра номера карты", e);
+        }
+    }
 }
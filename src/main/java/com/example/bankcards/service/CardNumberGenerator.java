@@ -10,12 +10,12 @@ public class CardNumberGenerator {
     private static final int CARD_NUMBER_LENGTH = 16;
     private final SecureRandom random = new SecureRandom();
     private final CardRepository cardRepository;
-    private final CardEncryptionService cardEncryptionService;
+    private final CardBlindIndexService cardBlindIndexService;
 
     @Autowired
-    public CardNumberGenerator(CardRepository cardRepository, CardEncryptionService cardEncryptionService) {
+    public CardNumberGenerator(CardRepository cardRepository, CardBlindIndexService cardBlindIndexService) {
         this.cardRepository = cardRepository;
-        this.cardEncryptionService = cardEncryptionService;
+        this.cardBlindIndexService = cardBlindIndexService;
     }
 
     public static boolean isValidLuhn(String cardNumber) {
@@ -35,11 +35,10 @@ public class CardNumberGenerator {
 
     public String generateUniqueCardNumber() {
         String cardNumber;
-        String encrypted;
         do {
             cardNumber = generateCardNumber();
-            encrypted = cardEncryptionService.encrypt(cardNumber);
-        } while (!isValidLuhn(cardNumber) || cardRepository.findByEncryptedNumber(encrypted).isPresent());
+            // Проверка уникальности — точечный запрос по индексу pan_hash, без шифрования
+        } while (!isValidLuhn(cardNumber) || cardRepository.existsByPanHash(cardBlindIndexService.panIndex(cardNumber)));
         return cardNumber;
     }
 
@@ -4,8 +4,13 @@ import com.example.bankcards.dto.CardSearchDto;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardSummaryRepository.CardSummary;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 
 import java.util.List;
 import java.util.Optional;
@@ -32,6 +37,16 @@ public interface CardService {
     Page<Card> getCardsByUserIdWithPagination(Long userId, Pageable pageable);
     Page<Card> getCardsByStatusWithPagination(CardStatus status, Pageable pageable);
     Page<Card> searchCardsWithPagination(CardSearchDto searchDto, Pageable pageable);
+    // Страница без COUNT (size + 1 строк) и отдельный подсчёт по тому же фильтру
+    Slice<Card> searchCardsSlice(CardSearchDto searchDto, Pageable pageable);
+    long countCards(CardSearchDto searchDto);
+    // Курсорная пагинация: без OFFSET и COUNT, позиция задаётся ключами последней записи
+    Window<Card> searchCardsAfter(CardSearchDto searchDto, Sort sort, ScrollPosition position, int limit);
+
+    // Списки для выдачи клиенту: проекция без сущностей, один SELECT на список/страницу
+    List<CardSummary> searchCardSummaries(CardSearchDto searchDto, Sort sort);
+    Slice<CardSummary> searchCardSummarySlice(CardSearchDto searchDto, Pageable pageable);
+    Page<CardSummary> searchCardSummaryPage(CardSearchDto searchDto, Pageable pageable);
 
     // Операции управления картой
     Card blockCard(Long cardId);
@@ -0,0 +1,42 @@
+package com.example.bankcards.service;
+
+import org.springframework.http.MediaType;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Формат потоковой выгрузки (параметр format).
+ */
+public enum ExportFormat {
+    /** JSON-объект на строку: application/x-ndjson. */
+    NDJSON(new MediaType("application", "x-ndjson", StandardCharsets.UTF_8), "ndjson"),
+    /** CSV с заголовком, разделитель — запятая. */
+    CSV(new MediaType("text", "csv", StandardCharsets.UTF_8), "csv");
+
+    private final MediaType mediaType;
+    private final String extension;
+
+    ExportFormat(MediaType mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    // ExportWriter пишет в UTF-8 — кодировка объявляется в Content-Type
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public static ExportFormat fromParam(String format) {
+        if (format == null || format.isBlank() || "ndjson".equalsIgnoreCase(format)) {
+            return NDJSON;
+        }
+        if ("csv".equalsIgnoreCase(format)) {
+            return CSV;
+        }
+        throw new IllegalArgumentException("Параметр format должен быть ndjson или csv");
+    }
+}
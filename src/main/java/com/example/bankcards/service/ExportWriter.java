@@ -0,0 +1,95 @@
+package com.example.bankcards.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Построчная запись выгрузки прямо в поток ответа: NDJSON или CSV с заголовком.
+ * Строки не накапливаются — в памяти только буфер записи, который сбрасывается по заполнении.
+ */
+public class ExportWriter<T> implements Consumer<T> {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Writer writer;
+    private final ExportFormat format;
+    private final ObjectMapper objectMapper;
+    private final List<Column<T>> columns;
+
+    public ExportWriter(OutputStream out, ExportFormat format, ObjectMapper objectMapper, List<Column<T>> columns) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.format = format;
+        this.objectMapper = objectMapper;
+        this.columns = columns;
+        if (format == ExportFormat.CSV) {
+            writeLine(columns.stream().map(Column::name).toList());
+        }
+    }
+
+    @Override
+    public void accept(T row) {
+        if (format == ExportFormat.NDJSON) {
+            try {
+                write(objectMapper.writeValueAsString(row));
+                write("\n");
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Не удалось сериализовать строку выгрузки", e);
+            }
+            return;
+        }
+        writeLine(columns.stream().map(column -> column.value().apply(row)).toList());
+    }
+
+    /** Дописывает остаток буфера; поток ответа закрывает контейнер. */
+    public void finish() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeLine(List<?> values) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            line.append(csvValue(values.get(i)));
+        }
+        write(line.append('\n').toString());
+    }
+
+    private void write(String value) {
+        try {
+            writer.write(value);
+        } catch (IOException e) {
+            // клиент оборвал соединение — чтение курсора прекращается вместе с исключением
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String csvValue(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+
+    /** Столбец CSV: заголовок и значение строки. */
+    public record Column<T>(String name, Function<T, ?> value) {}
+}
@@ -0,0 +1,441 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.HistoryDto;
+import com.example.bankcards.dto.HistoryFilterDto;
+import com.example.bankcards.repository.HistoryRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Холодный архив истории в каталоге history.archive.dir: сегменты history-{minId}-{maxId}.ndjson.gz (строка HistoryDto
+ * на строку файла) и рядом индекс сегмента .index.json — число строк, диапазоны id и event_date,
+ * граница архивирования и признак того, что строки уже удалены из БД.
+ * Сегмент виден читателям только после записи индекса; при поиске читаются лишь сегменты,
+ * чей диапазон дат пересекается с фильтром.
+ * Каталог должен быть общим для всех узлов (сетевой том, смонтированный по одному пути): сегменты пишет
+ * один узел, а строки после переноса есть только в них. Поэтому при history.archive.enabled каталог
+ * не создаётся автоматически — отсутствие смонтированного тома не должно превращаться в локальную папку —
+ * и при старте проверяется, что он существует и доступен на запись.
+ */
+@Component
+public class HistoryArchive {
+    private static final Logger log = LoggerFactory.getLogger(HistoryArchive.class);
+
+    private static final String SEGMENT_SUFFIX = ".ndjson.gz";
+    private static final String INDEX_SUFFIX = ".index.json";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // id строк ещё не удалённого сегмента сверяются с БД порциями
+    private static final int ID_CHECK_BATCH = 1000;
+
+    // Только поля, порядок которых в Java совпадает с ORDER BY в БД: строки сравниваются по правилам
+    // сортировки (collation) БД, и слияние с архивом по eventType/description путало бы порядок страниц
+    private static final Map<String, Function<HistoryDto, Comparable<?>>> SORT_KEYS = Map.of(
+            "id", HistoryDto::getId,
+            "eventDate", HistoryDto::getEventDate,
+            "userId", HistoryDto::getUserId,
+            "cardId", HistoryDto::getCardId,
+            "transferId", HistoryDto::getTransferId);
+
+    private final HistoryRepository historyRepository;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+
+    // Список сегментов перечитывается, только когда меняется набор индексов. Ключ — имя, размер и mtime
+    // каждого индекса, а не mtime каталога: на сетевом томе тот меняется с точностью до секунды,
+    // и индекс, опубликованный другим узлом в ту же секунду, остался бы невидимым
+    private volatile Snapshot snapshot;
+
+    private record Snapshot(Set<String> indexStamps, List<Segment> segments) {
+    }
+
+    /**
+     * Индекс сегмента. archivedBefore — граница event_date, по которой отбирались строки;
+     * purged — строки сегмента удалены из БД.
+     */
+    public record Segment(String file, long rows, long minId, long maxId,
+                          LocalDateTime minDate, LocalDateTime maxDate,
+                          LocalDateTime archivedBefore, boolean purged) {
+
+        boolean overlaps(LocalDateTime from, LocalDateTime to) {
+            return (from == null || !maxDate.isBefore(from)) && (to == null || !minDate.isAfter(to));
+        }
+    }
+
+    // Строка файла сегмента: те же поля, что у HistoryDto
+    private record Row(Long id, String eventType, LocalDateTime eventDate, String description,
+                       Long userId, Long cardId, Long transferId) {
+
+        HistoryDto toDto() {
+            return new HistoryDto(id, eventType, eventDate, description, userId, cardId, transferId);
+        }
+    }
+
+    /** Первые limit совпадений в заданном порядке и общее их число. */
+    public record Matches(List<HistoryDto> rows, long total) {
+    }
+
+    public HistoryArchive(HistoryRepository historyRepository,
+                          ObjectMapper objectMapper,
+                          @Value("${history.archive.dir:archive/history}") Path directory,
+                          @Value("${history.archive.enabled:false}") boolean enabled) {
+        this.historyRepository = historyRepository;
+        this.objectMapper = objectMapper;
+        this.directory = directory;
+        if (enabled) {
+            checkWritable();
+        }
+    }
+
+    private void checkWritable() {
+        if (!Files.isDirectory(directory)) {
+            throw new IllegalStateException("Каталог архива истории " + directory.toAbsolutePath()
+                    + " не найден: при history.archive.enabled он должен быть заранее смонтирован общим для всех узлов");
+        }
+        try {
+            Files.delete(Files.createTempFile(directory, "probe-", TMP_SUFFIX));
+        } catch (IOException e) {
+            throw new IllegalStateException("Каталог архива истории " + directory.toAbsolutePath()
+                    + " недоступен на запись", e);
+        }
+    }
+
+    /** Опубликованные сегменты по возрастанию id. */
+    public List<Segment> segments() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try {
+            List<Path> indexes;
+            try (Stream<Path> files = Files.list(directory)) {
+                indexes = files.filter(f -> f.getFileName().toString().endsWith(INDEX_SUFFIX)).toList();
+            }
+            Set<String> stamps = new HashSet<>();
+            for (Path index : indexes) {
+                BasicFileAttributes attributes = Files.readAttributes(index, BasicFileAttributes.class);
+                stamps.add(index.getFileName() + "|" + attributes.size() + "|" + attributes.lastModifiedTime().toMillis());
+            }
+            Snapshot current = snapshot;
+            if (current != null && current.indexStamps().equals(stamps)) {
+                return current.segments();
+            }
+            List<Segment> segments = new ArrayList<>();
+            for (Path index : indexes) {
+                segments.add(objectMapper.readValue(index.toFile(), Segment.class));
+            }
+            segments.sort(Comparator.comparingLong(Segment::minId));
+            List<Segment> result = List.copyOf(segments);
+            snapshot = new Snapshot(Set.copyOf(stamps), result);
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать индекс архива истории " + directory, e);
+        }
+    }
+
+    /** Граница архива: строки с event_date раньше неё могут находиться в сегментах; null — архив пуст. */
+    public LocalDateTime archivedBefore() {
+        return segments().stream()
+                .map(Segment::archivedBefore)
+                .max(Comparator.naturalOrder())
+                .orElse(null);
+    }
+
+    /**
+     * Читать ли архив для фильтра: только если dateFrom задан явно и раньше границы архива.
+     * Фильтр без dateFrom читает одну БД — полный просмотр архива выполняется лишь по прямому запросу периода.
+     */
+    public boolean covers(HistoryFilterDto filter) {
+        LocalDateTime before = archivedBefore();
+        return before != null && filter.getDateFrom() != null && filter.getDateFrom().isBefore(before);
+    }
+
+    /**
+     * Архивные строки по фильтру: сегменты читаются потоково, в памяти — куча из limit лучших строк
+     * и не больше ID_CHECK_BATCH строк на сверку. Строки сегмента, удаление которого из БД ещё
+     * не завершено, пропускаются, если они есть в БД: иначе запись попала бы в ответ дважды.
+     */
+    public Matches find(HistoryFilterDto filter, Comparator<HistoryDto> order, int limit) {
+        PriorityQueue<HistoryDto> top = new PriorityQueue<>(order.reversed());
+        long[] total = {0};
+        Consumer<HistoryDto> collector = row -> {
+            total[0]++;
+            if (top.size() < limit) {
+                top.offer(row);
+            } else if (limit > 0 && order.compare(row, top.peek()) < 0) {
+                top.poll();
+                top.offer(row);
+            }
+        };
+        for (Segment segment : segments()) {
+            if (!segment.overlaps(filter.getDateFrom(), filter.getDateTo())) {
+                continue;
+            }
+            try (Stream<HistoryDto> rows = read(segment)) {
+                Stream<HistoryDto> matches = rows.filter(row -> matches(filter, row));
+                if (segment.purged()) {
+                    matches.forEach(collector);
+                } else {
+                    List<HistoryDto> pending = new ArrayList<>(ID_CHECK_BATCH);
+                    matches.forEach(row -> {
+                        pending.add(row);
+                        if (pending.size() == ID_CHECK_BATCH) {
+                            offerAbsentFromDatabase(pending, collector);
+                        }
+                    });
+                    offerAbsentFromDatabase(pending, collector);
+                }
+            }
+        }
+        List<HistoryDto> rows = new ArrayList<>(top);
+        rows.sort(order);
+        return new Matches(rows, total[0]);
+    }
+
+    /**
+     * Порядок строк, совпадающий с ORDER BY по sort: пустые значения последними при ASC и первыми при DESC,
+     * как в PostgreSQL; при равенстве — по id. Сортировка по другим полям (в том числе текстовым)
+     * с архивом не сливается — IllegalArgumentException.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Comparator<HistoryDto> order(Sort sort) {
+        Comparator<HistoryDto> result = (a, b) -> 0;
+        for (Sort.Order o : sort) {
+            Function<HistoryDto, Comparable<?>> key = SORT_KEYS.get(o.getProperty());
+            if (key == null) {
+                throw new IllegalArgumentException("Сортировка по полю " + o.getProperty()
+                        + " недоступна за архивный период: используйте " + String.join(", ", new TreeSet<>(SORT_KEYS.keySet())));
+            }
+            Comparator<Comparable> values = Comparator.nullsLast(Comparator.naturalOrder());
+            Comparator<HistoryDto> byKey = Comparator.comparing(row -> (Comparable) key.apply(row), values);
+            result = result.thenComparing(o.isAscending() ? byKey : byKey.reversed());
+        }
+        return result.thenComparing(HistoryDto::getId);
+    }
+
+    /** Новый сегмент строк с event_date раньше archivedBefore; строки подаются по возрастанию id. */
+    public SegmentWriter newSegment(LocalDateTime archivedBefore) {
+        try {
+            Path tmp = Files.createTempFile(directory, "history-", SEGMENT_SUFFIX + TMP_SUFFIX);
+            return new SegmentWriter(tmp, archivedBefore);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать сегмент архива истории в " + directory, e);
+        }
+    }
+
+    /** Строки сегмента удалены из БД: дальше он читается без сверки с БД. */
+    public Segment markPurged(Segment segment) {
+        Segment purged = new Segment(segment.file(), segment.rows(), segment.minId(), segment.maxId(),
+                segment.minDate(), segment.maxDate(), segment.archivedBefore(), true);
+        writeIndex(purged);
+        return purged;
+    }
+
+    /**
+     * Удаляет следы прерванной записи: временные файлы и сегменты без индекса. Строки таких сегментов
+     * из БД ещё не удалялись (удаление начинается после публикации индекса) и будут заархивированы заново.
+     */
+    public void discardIncomplete() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                boolean orphan = name.endsWith(SEGMENT_SUFFIX)
+                        && !Files.exists(directory.resolve(indexName(name)));
+                if (name.endsWith(TMP_SUFFIX) || orphan) {
+                    Files.deleteIfExists(file);
+                    log.warn("Удалён незавершённый файл архива истории: {}", file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось очистить каталог архива истории " + directory, e);
+        }
+    }
+
+    private Stream<HistoryDto> read(Segment segment) {
+        Path file = directory.resolve(segment.file());
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE), StandardCharsets.UTF_8));
+            return reader.lines()
+                    .map(this::parse)
+                    .onClose(() -> {
+                        try {
+                            reader.close();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать сегмент архива истории " + file, e);
+        }
+    }
+
+    private HistoryDto parse(String line) {
+        try {
+            return objectMapper.readValue(line, Row.class).toDto();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Повреждена строка архива истории", e);
+        }
+    }
+
+    // Те же условия, что у HistoryService.buildSpecification; границы дат включительные
+    private static boolean matches(HistoryFilterDto filter, HistoryDto row) {
+        return (filter.getUserId() == null || filter.getUserId().equals(row.getUserId()))
+                && (filter.getCardId() == null || filter.getCardId().equals(row.getCardId()))
+                && (filter.getTransferId() == null || filter.getTransferId().equals(row.getTransferId()))
+                && (!StringUtils.hasText(filter.getEventType()) || filter.getEventType().equals(row.getEventType()))
+                && (filter.getDateFrom() == null || !row.getEventDate().isBefore(filter.getDateFrom()))
+                && (filter.getDateTo() == null || !row.getEventDate().isAfter(filter.getDateTo()));
+    }
+
+    private void offerAbsentFromDatabase(List<HistoryDto> rows, Consumer<HistoryDto> collector) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Set<Long> inDatabase = new HashSet<>(historyRepository.findExistingIds(
+                rows.stream().map(HistoryDto::getId).toList()));
+        for (HistoryDto row : rows) {
+            if (!inDatabase.contains(row.getId())) {
+                collector.accept(row);
+            }
+        }
+        rows.clear();
+    }
+
+    private void writeIndex(Segment segment) {
+        Path index = directory.resolve(indexName(segment.file()));
+        Path tmp = directory.resolve(index.getFileName() + TMP_SUFFIX);
+        try {
+            Files.write(tmp, objectMapper.writeValueAsBytes(segment));
+            Files.move(tmp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            snapshot = null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать индекс сегмента " + index, e);
+        }
+    }
+
+    private static String indexName(String segmentFile) {
+        return segmentFile.substring(0, segmentFile.length() - SEGMENT_SUFFIX.length()) + INDEX_SUFFIX;
+    }
+
+    /**
+     * Запись одного сегмента во временный файл. publish() сбрасывает файл на диск, переименовывает его
+     * и записывает индекс — только после этого строки можно удалять из БД.
+     */
+    public final class SegmentWriter implements AutoCloseable {
+        private final Path tmp;
+        private final LocalDateTime archivedBefore;
+        private final FileChannel channel;
+        private final GZIPOutputStream gzip;
+        private final BufferedWriter writer;
+        private long rows;
+        private long minId;
+        private long maxId;
+        private LocalDateTime minDate;
+        private LocalDateTime maxDate;
+        private boolean done;
+
+        private SegmentWriter(Path tmp, LocalDateTime archivedBefore) throws IOException {
+            this.tmp = tmp;
+            this.archivedBefore = archivedBefore;
+            this.channel = FileChannel.open(tmp, StandardOpenOption.WRITE);
+            this.gzip = new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+            this.writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+
+        public void write(HistoryDto row) {
+            try {
+                writer.write(objectMapper.writeValueAsString(row));
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось записать строку в сегмент " + tmp, e);
+            }
+            if (rows == 0) {
+                minId = row.getId();
+            }
+            maxId = row.getId();
+            if (minDate == null || row.getEventDate().isBefore(minDate)) {
+                minDate = row.getEventDate();
+            }
+            if (maxDate == null || row.getEventDate().isAfter(maxDate)) {
+                maxDate = row.getEventDate();
+            }
+            rows++;
+        }
+
+        public long rows() {
+            return rows;
+        }
+
+        public Segment publish() {
+            if (rows == 0) {
+                throw new IllegalStateException("Пустой сегмент архива не публикуется");
+            }
+            String file = "history-" + minId + "-" + maxId + SEGMENT_SUFFIX;
+            try {
+                writer.flush();
+                gzip.finish();
+                channel.force(true);
+                writer.close();
+                Files.move(tmp, directory.resolve(file), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось сохранить сегмент " + file, e);
+            }
+            done = true;
+            Segment segment = new Segment(file, rows, minId, maxId, minDate, maxDate, archivedBefore, false);
+            writeIndex(segment);
+            return segment;
+        }
+
+        /** Без publish() временный файл удаляется. */
+        @Override
+        public void close() {
+            if (done) {
+                return;
+            }
+            done = true;
+            try {
+                writer.close();
+                Files.deleteIfExists(tmp);
+            } catch (IOException e) {
+                log.warn("Не удалось удалить временный сегмент {}", tmp, e);
+            }
+        }
+    }
+}
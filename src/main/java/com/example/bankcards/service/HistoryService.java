@@ -1,24 +1,166 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.HistoryDto;
 import com.example.bankcards.dto.HistoryFilterDto;
 import com.example.bankcards.entity.History;
+import com.example.bankcards.mapper.HistoryMapper;
 import com.example.bankcards.repository.HistoryRepository;
 import com.example.bankcards.specification.HistorySpecification;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class HistoryService {
+    private static final Logger log = LoggerFactory.getLogger(HistoryService.class);
+    private static final Sort EXPORT_ORDER = Sort.by("id");
+
     private final HistoryRepository historyRepository;
+    private final HistoryArchive historyArchive;
+
+    @Value("${export.fetch-size:500}")
+    private int exportFetchSize = 500;
+
+    @Value("${history.archive.max-window:10000}")
+    private int archiveMaxWindow = 10000;
+
+    /**
+     * Страница истории одним SELECT в HistoryDto (+ COUNT): сущности и их ленивые связи не загружаются.
+     * Если dateFrom раньше границы архива, в страницу и total добавляются строки архива.
+     */
+    public Page<HistoryDto> findByFilter(HistoryFilterDto filter, Pageable pageable) {
+        if (!historyArchive.covers(filter)) {
+            return historyRepository.findDtoPage(buildSpecification(filter), pageable);
+        }
+        Comparator<HistoryDto> order = HistoryArchive.order(pageable.getSort());
+        int window = archiveWindow(pageable, 0);
+        Page<HistoryDto> recent = historyRepository.findDtoPage(buildSpecification(filter),
+                PageRequest.of(0, window, withIdTiebreak(pageable.getSort())));
+        HistoryArchive.Matches archived = historyArchive.find(filter, order, window);
+        return new PageImpl<>(merge(recent.getContent(), archived.rows(), order, pageable, pageable.getPageSize()),
+                pageable, recent.getTotalElements() + archived.total());
+    }
+
+    /**
+     * Страница без COUNT: выбирается size + 1 строк, чтобы определить наличие следующей.
+     * Архив читается по тому же правилу, что и в findByFilter.
+     */
+    public Slice<HistoryDto> findSliceByFilter(HistoryFilterDto filter, Pageable pageable) {
+        if (!historyArchive.covers(filter)) {
+            return historyRepository.findDtoSlice(buildSpecification(filter), pageable);
+        }
+        Comparator<HistoryDto> order = HistoryArchive.order(pageable.getSort());
+        int window = archiveWindow(pageable, 1);
+        Slice<HistoryDto> recent = historyRepository.findDtoSlice(buildSpecification(filter),
+                PageRequest.of(0, window, withIdTiebreak(pageable.getSort())));
+        HistoryArchive.Matches archived = historyArchive.find(filter, order, window);
+        List<HistoryDto> content = merge(recent.getContent(), archived.rows(), order, pageable, pageable.getPageSize() + 1);
+        boolean hasNext = content.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? content.subList(0, pageable.getPageSize()) : content, pageable, hasNext);
+    }
+
+    /** Число записей по фильтру; с архивом — по тому же правилу, что total в findByFilter. */
+    public long countByFilter(HistoryFilterDto filter) {
+        long count = historyRepository.count(buildSpecification(filter));
+        if (historyArchive.covers(filter)) {
+            count += historyArchive.find(filter, HistoryArchive.order(Sort.unsorted()), 0).total();
+        }
+        return count;
+    }
+
+    /*
+     * Обе стороны читают окно от начала (offset + size + extra строк), поэтому глубина страниц
+     * с архивом ограничена history.archive.max-window; дальше — уточнение периода фильтра.
+     */
+    private int archiveWindow(Pageable pageable, int extra) {
+        long window = pageable.getOffset() + pageable.getPageSize() + extra;
+        if (window > archiveMaxWindow) {
+            throw new IllegalArgumentException("Страница за архивный период глубже " + archiveMaxWindow
+                    + " записей: сузьте период dateFrom/dateTo");
+        }
+        return (int) window;
+    }
+
+    // БД отбирает окно в том же порядке, что и HistoryArchive.order: при равных ключах — по id
+    private static Sort withIdTiebreak(Sort sort) {
+        return sort.getOrderFor("id") != null ? sort : sort.and(Sort.by("id"));
+    }
+
+    private static List<HistoryDto> merge(List<HistoryDto> recent, List<HistoryDto> archived,
+                                          Comparator<HistoryDto> order, Pageable pageable, int limit) {
+        return Stream.concat(recent.stream(), archived.stream())
+                .sorted(order)
+                .skip(pageable.getOffset())
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Курсорный вариант фильтрации: следующая порция после позиции, без OFFSET и COUNT.
+     * Архив курсором не читается: период раньше границы архива отклоняется.
+     */
+    public Window<HistoryDto> findByFilterAfter(HistoryFilterDto filter, Sort sort, ScrollPosition position, int limit) {
+        rejectArchivedPeriod(filter, "Курсорная выдача");
+        Window<History> window = historyRepository.findBy(buildSpecification(filter),
+                query -> query.sortBy(sort).limit(limit).scroll(position));
+        // позиции окна (ключи курсора) сохраняются при преобразовании в DTO
+        return window.map(HistoryMapper::toDto);
+    }
+
+    /**
+     * Проверка фильтра выгрузки до начала ответа: выгружается только БД, поэтому период раньше
+     * границы архива отклоняется, а выгрузка без dateFrom при непустом архиве отмечается в логе.
+     */
+    public void checkExportable(HistoryFilterDto filter) {
+        rejectArchivedPeriod(filter, "Выгрузка");
+        LocalDateTime archivedBefore = filter.getDateFrom() == null ? historyArchive.archivedBefore() : null;
+        if (archivedBefore != null) {
+            log.warn("Выгрузка истории без dateFrom: записи раньше {} находятся в архиве и не выгружаются", archivedBefore);
+        }
+    }
+
+    private void rejectArchivedPeriod(HistoryFilterDto filter, String operation) {
+        if (historyArchive.covers(filter)) {
+            throw new IllegalArgumentException(operation + " истории не читает архив: dateFrom должен быть не раньше "
+                    + historyArchive.archivedBefore());
+        }
+    }
+
+    /**
+     * Выгрузка всех записей по фильтру: строки читаются курсором порциями export.fetch-size
+     * и сразу передаются в sink, поэтому память не зависит от числа строк. Архив не выгружается,
+     * см. checkExportable.
+     */
+    @Transactional(readOnly = true)
+    public void exportByFilter(HistoryFilterDto filter, Consumer<HistoryDto> sink) {
+        try (Stream<HistoryDto> rows = historyRepository.streamDtos(buildSpecification(filter), EXPORT_ORDER, exportFetchSize)) {
+            rows.forEach(sink);
+        }
+    }
 
-    public Page<History> findByFilter(HistoryFilterDto filter, Pageable pageable) {
+    private Specification<History> buildSpecification(HistoryFilterDto filter) {
         Specification<History> spec = (root, query, cb) -> cb.conjunction();
         if (filter.getUserId() != null) {
             spec = spec.and(HistorySpecification.hasUserId(filter.getUserId()));
@@ -35,10 +177,10 @@ public class HistoryService {
         if (filter.getDateFrom() != null || filter.getDateTo() != null) {
             spec = spec.and(HistorySpecification.eventDateBetween(filter.getDateFrom(), filter.getDateTo()));
         }
-        return historyRepository.findAll(spec, pageable);
+        return spec;
     }
 
-    public Optional<History> getHistoryById(Long id) {
-        return historyRepository.findById(id);
+    public Optional<HistoryDto> getHistoryById(Long id) {
+        return historyRepository.findDtoById(id);
     }
 }
@@ -0,0 +1,26 @@
+package com.example.bankcards.service;
+
+/**
+ * Как пагинированный ответ получает общее количество записей (параметр withTotal).
+ */
+public enum TotalCountMode {
+    /** Точный COUNT(*) по тому же фильтру — второй запрос на каждую страницу. */
+    EXACT,
+    /** Slice: выбирается size + 1 строк, COUNT не выполняется, totalElements в ответе нет. */
+    NONE,
+    /** Slice + оценка: pg_class.reltuples для запроса без фильтров, иначе кэшируемый на время COUNT. */
+    APPROXIMATE;
+
+    public static TotalCountMode fromParam(String withTotal) {
+        if (withTotal == null || withTotal.isBlank() || "true".equalsIgnoreCase(withTotal)) {
+            return EXACT;
+        }
+        if ("false".equalsIgnoreCase(withTotal)) {
+            return NONE;
+        }
+        if ("approximate".equalsIgnoreCase(withTotal)) {
+            return APPROXIMATE;
+        }
+        throw new IllegalArgumentException("Параметр withTotal должен быть true, false или approximate");
+    }
+}
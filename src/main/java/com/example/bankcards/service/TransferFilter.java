@@ -1,38 +1,35 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.TransferDto;
 import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.mapper.TransferMapper;
+import com.example.bankcards.util.PageableUtils;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
- * Утилитарный компонент для унифицированной фильтрации исходящих переводов.
+ * Формирование выдачи списков переводов. Какие переводы видны (только исходящие, только свои для USER)
+ * решают запросы TransferRepository; здесь — порядок, размер порции и преобразование в DTO.
  */
 @Component
 public class TransferFilter {
 
-    /** Возвращает только исходящие переводы указанного пользователя. */
-    public List<Transfer> outgoingForUser(List<Transfer> transfers, Long userId) {
-        if (userId == null) return List.of();
-        return transfers.stream()
-                .filter(t -> t.getSourceCard() != null && t.getSourceCard().getUser() != null
-                        && userId.equals(t.getSourceCard().getUser().getId()))
-                .collect(Collectors.toList());
-    }
+    // Новые переводы первыми; id — для стабильного порядка при одинаковой дате
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "transferDate", "id");
 
-    /** Возвращает исходящие переводы по конкретной карте (sourceCard = cardId). */
-    public List<Transfer> outgoingForCard(List<Transfer> transfers, Long cardId) {
-        if (cardId == null) return List.of();
-        return transfers.stream()
-                .filter(t -> t.getSourceCard() != null && cardId.equals(t.getSourceCard().getId()))
-                .collect(Collectors.toList());
+    /** Порция списка: номер страницы и размер (не больше PageableUtils.MAX_PAGE_SIZE). */
+    public Pageable page(int page, int size) {
+        return PageRequest.of(Math.max(0, page), PageableUtils.normalizeSize(size), NEWEST_FIRST);
     }
 
-    /** Универсальная фильтрация: если админ – возвращаем все входящие и исходящие, иначе только исходящие пользователя. */
-    public List<Transfer> visibleForUserOrAdmin(List<Transfer> transfers, Long currentUserId, boolean isAdmin) {
-        if (isAdmin) return transfers; // политика: админ сейчас видит только исходящие выше по контроллеру, но оставляем возможность расширить
-        return outgoingForUser(transfers, currentUserId);
+    public List<TransferDto> toDtos(Slice<Transfer> transfers) {
+        return transfers.getContent().stream()
+                .map(TransferMapper::toDto)
+                .toList();
     }
 }
-
@@ -0,0 +1,13 @@
+package com.example.bankcards.service;
+
+/**
+ * Способ защиты балансов карт от потерянных обновлений при конкурентных переводах.
+ */
+public enum TransferLockingMode {
+    /** Условные UPDATE баланса без загрузки карт; карты читаются только для диагностики отказа. */
+    ATOMIC,
+    /** SELECT ... FOR UPDATE обеих карт в порядке возрастания id (без взаимных блокировок A→B / B→A). */
+    PESSIMISTIC,
+    /** Без блокировок: конфликт обнаруживается по @Version карты, перевод повторяется ограниченное число раз. */
+    OPTIMISTIC
+}
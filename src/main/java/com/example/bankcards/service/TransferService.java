@@ -1,14 +1,40 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResultDto;
+import com.example.bankcards.dto.TransferDto;
 import com.example.bankcards.entity.Transfer;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface TransferService {
     Transfer createTransfer(Long fromCardId, Long toCardId, BigDecimal amount, Long userId);
-    List<Transfer> getTransfersByUser(Long userId);
-    List<Transfer> getTransfersByCard(Long cardId);
-    List<Transfer> getTransfersByStatus(String status);
+    /**
+     * Перевод с ключом идемпотентности: повтор с тем же ключом (в пределах userId) возвращает
+     * результат первого успешного выполнения без повторного списания.
+     */
+    TransferDto createTransfer(Long fromCardId, Long toCardId, BigDecimal amount, Long userId, String idempotencyKey);
+    /**
+     * Пакет переводов в одной транзакции: карты блокируются по возрастанию id, отклонённые
+     * переводы не мешают остальным; результат — по одному элементу на каждый перевод запроса.
+     */
+    List<BatchTransferResultDto> createTransfers(Long userId, List<BatchTransferRequest.Item> items);
+    // Только исходящие переводы (по исходной карте), порциями без COUNT
+    Slice<Transfer> getOutgoingTransfersByUser(Long userId, Pageable pageable);
+    Slice<Transfer> getOutgoingTransfersByCard(Long cardId, Pageable pageable);
+    /** userId == null — исходящие переводы всех пользователей (для администратора). */
+    Slice<Transfer> getOutgoingTransfersByStatus(String status, Long userId, Pageable pageable);
     Optional<Transfer> getTransferById(Long id);
+    /**
+     * Потоковая выгрузка исходящих переводов (userId == null — всех пользователей) с фильтром по статусу и периоду:
+     * строки читаются курсором и передаются в sink по одной.
+     */
+    void exportOutgoingTransfers(Long userId, String status, LocalDateTime dateFrom, LocalDateTime dateTo,
+                                 Consumer<TransferDto> sink);
 }
@@ -8,7 +8,9 @@ import com.example.bankcards.entity.History;
 import com.example.bankcards.entity.HistoryEventType;
 import com.example.bankcards.exception.*;
 import com.example.bankcards.repository.CardRepository;
-import com.example.bankcards.repository.HistoryRepository;
+import com.example.bankcards.repository.CardSummaryRepository.CardSummary;
+import com.example.bankcards.service.AuditTrail;
+import com.example.bankcards.service.CardBlindIndexService;
 import com.example.bankcards.service.CardEncryptionService;
 import com.example.bankcards.service.CardNumberGenerator;
 import com.example.bankcards.service.CardService;
@@ -17,6 +19,10 @@ import com.example.bankcards.security.SecurityUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
@@ -26,24 +32,28 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class CardServiceImpl implements CardService {
+    private static final int CARD_NUMBER_LENGTH = 16;
+    private static final int LAST4_LENGTH = 4;
+
     private final CardRepository cardRepository;
     private final CardNumberGenerator cardNumberGenerator;
     private final CardEncryptionService cardEncryptionService;
     private final SecurityUtil securityUtil; // новый
-    private final HistoryRepository historyRepository; // аудит
+    private final AuditTrail auditTrail; // аудит
+    private final CardBlindIndexService cardBlindIndexService;
 
     @Autowired
-    public CardServiceImpl(CardRepository cardRepository, CardNumberGenerator cardNumberGenerator, CardEncryptionService cardEncryptionService, SecurityUtil securityUtil, HistoryRepository historyRepository) {
+    public CardServiceImpl(CardRepository cardRepository, CardNumberGenerator cardNumberGenerator, CardEncryptionService cardEncryptionService, SecurityUtil securityUtil, AuditTrail auditTrail, CardBlindIndexService cardBlindIndexService) {
         this.cardRepository = cardRepository;
         this.cardNumberGenerator = cardNumberGenerator;
         this.cardEncryptionService = cardEncryptionService;
         this.securityUtil = securityUtil;
-        this.historyRepository = historyRepository;
+        this.auditTrail = auditTrail;
+        this.cardBlindIndexService = cardBlindIndexService;
     }
 
     @Override
@@ -59,6 +69,8 @@ public class CardServiceImpl implements CardService {
         card.setUser(user);
         String plainNumber = cardNumberGenerator.generateUniqueCardNumber();
         card.setEncryptedNumber(cardEncryptionService.encrypt(plainNumber));
+        cardBlindIndexService.index(card, plainNumber);
+        card.setMaskedNumber(cardEncryptionService.mask(plainNumber));
         card.setStatus(CardStatus.ACTIVE);
         card.setExpirationDate(LocalDate.now().plusYears(3));
         return cardRepository.save(card);
@@ -98,14 +110,15 @@ public class CardServiceImpl implements CardService {
     @Override
     @Transactional(readOnly = true)
     public Optional<Card> getCardByMaskedNumber(String maskedNumber) {
-        // Поиск по замаскированному номеру - проходим по всем картам и сравниваем маски
-        return cardRepository.findAll().stream()
-                .filter(card -> {
-                    String decrypted = cardEncryptionService.decrypt(card.getEncryptedNumber());
-                    String masked = cardEncryptionService.mask(decrypted);
-                    return maskedNumber.equals(masked);
-                })
-                .findFirst();
+        // Маска раскрывает только последние 4 цифры — ищем по blind index, без расшифровки
+        String digits = digitsOf(maskedNumber);
+        if (digits.length() == CARD_NUMBER_LENGTH) {
+            return cardRepository.findByPanHash(cardBlindIndexService.panIndex(digits));
+        }
+        if (digits.length() != LAST4_LENGTH) {
+            return Optional.empty();
+        }
+        return cardRepository.findFirstByLast4HashOrderByIdAsc(cardBlindIndexService.last4Index(digits));
     }
 
     // Операции управления картой
@@ -232,35 +245,8 @@ public class CardServiceImpl implements CardService {
     @Override
     @Transactional(readOnly = true)
     public List<Card> searchCards(CardSearchDto searchDto) {
-        Specification<Card> spec = null;
-
-        if (searchDto.getStatus() != null) {
-            spec = CardSpecification.hasStatus(searchDto.getStatus());
-        }
-
-        if (searchDto.getUserId() != null) {
-            Specification<Card> ownerSpec = CardSpecification.hasOwner(searchDto.getUserId());
-            spec = spec == null ? ownerSpec : spec.and(ownerSpec);
-        }
-
-        if (searchDto.getOwnerName() != null && !searchDto.getOwnerName().trim().isEmpty()) {
-            Specification<Card> nameSpec = CardSpecification.hasOwnerName(searchDto.getOwnerName());
-            spec = spec == null ? nameSpec : spec.and(nameSpec);
-        }
-
-        List<Card> cards;
-        if (spec != null) {
-            cards = cardRepository.findAll(spec);
-        } else {
-            cards = cardRepository.findAll();
-        }
-
-        // Дополнительная фильтрация по маске номера (поскольку номера зашифрованы)
-        if (searchDto.getMask() != null && !searchDto.getMask().trim().isEmpty()) {
-            cards = filterByMask(cards, searchDto.getMask());
-        }
-
-        return cards;
+        // Владелец и номер — SQL-предикаты (user_id, pan_hash/last4_hash), без расшифровки строк
+        return cardRepository.findAll(buildSearchSpecification(searchDto));
     }
 
     @Override
@@ -270,8 +256,17 @@ public class CardServiceImpl implements CardService {
             return List.of();
         }
 
-        List<Card> allCards = cardRepository.findAll();
-        return filterByMask(allCards, mask);
+        // Индекс поддерживает только равенство: полный номер или последние 4 цифры
+        String digits = digitsOf(mask);
+        if (digits.length() == CARD_NUMBER_LENGTH) {
+            return cardRepository.findByPanHash(cardBlindIndexService.panIndex(digits))
+                    .map(List::of)
+                    .orElse(List.of());
+        }
+        if (digits.length() != LAST4_LENGTH) {
+            return List.of();
+        }
+        return cardRepository.findByLast4Hash(cardBlindIndexService.last4Index(digits));
     }
 
     @Override
@@ -330,18 +325,61 @@ public class CardServiceImpl implements CardService {
     @Override
     @Transactional(readOnly = true)
     public Page<Card> searchCardsWithPagination(CardSearchDto searchDto, Pageable pageable) {
+        return cardRepository.findAll(buildSearchSpecification(searchDto), pageable);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<Card> searchCardsSlice(CardSearchDto searchDto, Pageable pageable) {
+        return cardRepository.findBy(buildSearchSpecification(searchDto), query -> query.slice(pageable));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long countCards(CardSearchDto searchDto) {
+        return cardRepository.count(buildSearchSpecification(searchDto));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Window<Card> searchCardsAfter(CardSearchDto searchDto, Sort sort, ScrollPosition position, int limit) {
+        return cardRepository.findBy(buildSearchSpecification(searchDto),
+                query -> query.sortBy(sort).limit(limit).scroll(position));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<CardSummary> searchCardSummaries(CardSearchDto searchDto, Sort sort) {
+        return cardRepository.findSummaries(buildSearchSpecification(searchDto), sort);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<CardSummary> searchCardSummarySlice(CardSearchDto searchDto, Pageable pageable) {
+        return cardRepository.findSummarySlice(buildSearchSpecification(searchDto), pageable);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<CardSummary> searchCardSummaryPage(CardSearchDto searchDto, Pageable pageable) {
+        return cardRepository.findSummaryPage(buildSearchSpecification(searchDto), pageable);
+    }
+
+    private Specification<Card> buildSearchSpecification(CardSearchDto searchDto) {
         Specification<Card> spec = (root, query, cb) -> cb.conjunction();
 
         if (searchDto.getStatus() != null) {
             spec = spec.and(CardSpecification.hasStatus(searchDto.getStatus()));
         }
 
-        if (searchDto.getUserId() != null) {
+        if (searchDto.isOwnerOnly()) {
+            spec = spec.and(CardSpecification.ownedBy(searchDto.getUserId()));
+        } else if (searchDto.getUserId() != null) {
             spec = spec.and(CardSpecification.hasUserId(searchDto.getUserId()));
         }
 
         if (searchDto.getOwnerName() != null && !searchDto.getOwnerName().isEmpty()) {
-            spec = spec.and(CardSpecification.hasOwnerName(searchDto.getOwnerName()));
+            spec = spec.and(CardSpecification.ownerNameMatches(searchDto.getOwnerName(), searchDto.isOwnerNamePrefix()));
         }
 
         if (searchDto.getIsExpired() != null) {
@@ -352,32 +390,30 @@ public class CardServiceImpl implements CardService {
             }
         }
 
-        return cardRepository.findAll(spec, pageable);
+        if (searchDto.getMask() != null && !searchDto.getMask().trim().isEmpty()) {
+            spec = spec.and(maskSpecification(searchDto.getMask()));
+        }
+
+        return spec;
     }
 
-    // Вспомогательный метод для фильтрации по маске
-    private List<Card> filterByMask(List<Card> cards, String mask) {
-        String searchMask = mask.trim();
-
-        return cards.stream()
-                .filter(card -> {
-                    try {
-                        String decrypted = cardEncryptionService.decrypt(card.getEncryptedNumber());
-                        String maskedNumber = cardEncryptionService.mask(decrypted);
-                        // Поиск по последним 4 цифрам
-                        if (searchMask.length() == 4 && searchMask.matches("\\d{4}")) {
-                            return maskedNumber.endsWith(searchMask);
-                        }
-                        // По полной маске
-                        return maskedNumber.contains(searchMask);
-                    } catch (Exception e) {
-                        return false;
-                    }
-                })
-                .collect(Collectors.toList());
+    // Маска сводится к равенству по HMAC-индексу: полный номер или последние 4 цифры; иное не совпадает ни с чем
+    private Specification<Card> maskSpecification(String mask) {
+        String digits = digitsOf(mask);
+        if (digits.length() == CARD_NUMBER_LENGTH) {
+            return CardSpecification.hasPanHash(cardBlindIndexService.panIndex(digits));
+        }
+        if (digits.length() == LAST4_LENGTH) {
+            return CardSpecification.hasLast4Hash(cardBlindIndexService.last4Index(digits));
+        }
+        return (root, query, cb) -> cb.disjunction();
     }
 
     // Вспомогательные методы
+    private static String digitsOf(String value) {
+        return value == null ? "" : value.replaceAll("\\D", "");
+    }
+
     private boolean isCardExpired(Card card) {
         return card.getExpirationDate().isBefore(LocalDate.now());
     }
@@ -399,7 +435,7 @@ public class CardServiceImpl implements CardService {
             history.setDescription(description);
             history.setCard(card);
             history.setUser(card.getUser());
-            historyRepository.save(history);
+            auditTrail.record(history);
         } catch (Exception ignored) {
             // не прерываем основную операцию если аудит не записался
         }
@@ -1,26 +1,61 @@
 package com.example.bankcards.service.impl;
 
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResultDto;
+import com.example.bankcards.dto.TransferDto;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.History;
 import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.entity.TransferIdempotencyKey;
+import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.CardStatus;
 import com.example.bankcards.entity.HistoryEventType;
 import com.example.bankcards.exception.*;
+import com.example.bankcards.mapper.TransferMapper;
 import com.example.bankcards.repository.CardRepository;
-import com.example.bankcards.repository.HistoryRepository;
+import com.example.bankcards.repository.TransferIdempotencyKeyRepository;
 import com.example.bankcards.repository.TransferRepository;
+import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.security.SecurityUtil;
+import com.example.bankcards.service.AuditTrail;
+import com.example.bankcards.service.TransferLockingMode;
 import com.example.bankcards.service.TransferService;
+import com.example.bankcards.specification.TransferSpecification;
+import com.example.bankcards.util.BoundedTtlCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @Service
 public class TransferServiceImpl implements TransferService {
@@ -29,20 +64,211 @@ public class TransferServiceImpl implements TransferService {
     @Autowired
     private CardRepository cardRepository;
     @Autowired
-    private HistoryRepository historyRepository;
+    private AuditTrail auditTrail;
     @Autowired
     private SecurityUtil securityUtil;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private TransferIdempotencyKeyRepository idempotencyKeyRepository;
+
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 128;
+    // Ответы по ключам идемпотентности в памяти узла; источник истины — transfer_idempotency_keys.
+    // Создаётся при первом обращении, когда размер и время жизни уже прочитаны из transfer.idempotency.cache.*
+    private volatile BoundedTtlCache<String, CachedResult> idempotencyCache;
+
+    private record CachedResult(String requestHash, TransferDto result) {}
+
+    @Value("${export.fetch-size:500}")
+    private int exportFetchSize = 500;
+
+    @Value("${transfer.locking.mode:ATOMIC}")
+    private TransferLockingMode lockingMode = TransferLockingMode.ATOMIC;
+    // Повторы для OPTIMISTIC (конфликт версий) и ATOMIC (карта изменилась между UPDATE и диагностикой)
+    @Value("${transfer.locking.optimistic-max-attempts:5}")
+    private int optimisticMaxAttempts = 5;
+
+    @Value("${transfer.idempotency.cache.max-size:10000}")
+    private int idempotencyCacheMaxSize = 10_000;
+    @Value("${transfer.idempotency.cache.ttl:PT10M}")
+    private Duration idempotencyCacheTtl = Duration.ofMinutes(10);
+
+    private BoundedTtlCache<String, CachedResult> idempotencyCache() {
+        BoundedTtlCache<String, CachedResult> cache = idempotencyCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = idempotencyCache;
+                if (cache == null) {
+                    cache = new BoundedTtlCache<>(idempotencyCacheMaxSize, idempotencyCacheTtl);
+                    idempotencyCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
 
     @Override
-    @Transactional
     public Transfer createTransfer(Long fromCardId, Long toCardId, BigDecimal amount, Long userId) {
-        // Валидация: текущий пользователь должен совпадать с userId (если не админ)
-        if (!securityUtil.isAdmin()) {
-            Long current = securityUtil.getCurrentUserId();
-            if (current == null || userId == null || !current.equals(userId)) {
-                throw new AccessDeniedException("Доступ запрещён: нельзя инициировать перевод от имени другого пользователя");
+        validateRequest(fromCardId, toCardId, amount, userId);
+        return runTransfer(fromCardId, toCardId, amount, userId, null);
+    }
+
+    /*
+     * Повтор с тем же ключом отдаёт сохранённый результат: сначала из кэша узла, затем из
+     * transfer_idempotency_keys (одним запросом, без чтения карт). Новый ключ резервируется
+     * вставкой строки в той же транзакции, что и перевод, поэтому параллельный дубль ждёт
+     * на уникальном индексе и после коммита первого получает его результат.
+     */
+    @Override
+    public TransferDto createTransfer(Long fromCardId, Long toCardId, BigDecimal amount, Long userId, String idempotencyKey) {
+        validateRequest(fromCardId, toCardId, amount, userId);
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return TransferMapper.toDto(runTransfer(fromCardId, toCardId, amount, userId, null));
+        }
+        if (idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key не должен быть длиннее " + MAX_IDEMPOTENCY_KEY_LENGTH + " символов");
+        }
+        String requestHash = requestHash(fromCardId, toCardId, amount);
+        String cacheKey = userId + ":" + idempotencyKey;
+        CachedResult cached = idempotencyCache().get(cacheKey);
+        if (cached != null) {
+            return replay(cached.requestHash(), requestHash, cached.result());
+        }
+        Optional<TransferDto> stored = findStoredResult(userId, idempotencyKey, requestHash, cacheKey);
+        if (stored.isPresent()) {
+            return stored.get();
+        }
+        TransferDto result;
+        try {
+            result = TransferMapper.toDto(runTransfer(fromCardId, toCardId, amount, userId,
+                    () -> reserveIdempotencyKey(userId, idempotencyKey, requestHash)));
+        } catch (DataIntegrityViolationException e) {
+            // ключ успел занять параллельный запрос — отдаём его результат
+            return findStoredResult(userId, idempotencyKey, requestHash, cacheKey).orElseThrow(() -> e);
+        }
+        idempotencyCache().put(cacheKey, new CachedResult(requestHash, result));
+        return result;
+    }
+
+    @Override
+    public List<BatchTransferResultDto> createTransfers(Long userId, List<BatchTransferRequest.Item> items) {
+        validateInitiator(userId);
+        return transactionTemplate.execute(status -> executeBatch(userId, items));
+    }
+
+    /*
+     * Все карты пакета блокируются одним SELECT ... FOR UPDATE по возрастанию id; владение и статус
+     * проверяются один раз на карту, остаток — по текущему балансу с учётом уже принятых переводов.
+     * Переводы и записи аудита сохраняются списками: с id из последовательности Hibernate отправляет
+     * их JDBC-батчами (hibernate.jdbc.batch_size), а изменённые балансы карт — при flush.
+     */
+    private List<BatchTransferResultDto> executeBatch(Long userId, List<BatchTransferRequest.Item> items) {
+        Set<Long> cardIds = new TreeSet<>();
+        for (BatchTransferRequest.Item item : items) {
+            cardIds.add(item.getFromCardId());
+            cardIds.add(item.getToCardId());
+        }
+        Map<Long, Card> cards = new HashMap<>();
+        Map<Long, Long> ownerIds = new HashMap<>();
+        for (CardRepository.LockedCard locked : cardRepository.findAllByIdForUpdate(cardIds)) {
+            cards.put(locked.card().getId(), locked.card());
+            ownerIds.put(locked.card().getId(), locked.ownerId());
+        }
+        Map<Long, Optional<RuntimeException>> sourceChecks = new HashMap<>();
+        Map<Long, Optional<RuntimeException>> destinationChecks = new HashMap<>();
+
+        BatchTransferResultDto[] results = new BatchTransferResultDto[items.size()];
+        Transfer[] applied = new Transfer[items.size()];
+        List<Transfer> transfers = new ArrayList<>();
+        List<History> histories = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            BatchTransferRequest.Item item = items.get(i);
+            Card fromCard = cards.get(item.getFromCardId());
+            Card toCard = cards.get(item.getToCardId());
+            RuntimeException rejection = batchItemRejection(item, fromCard, toCard, userId, ownerIds,
+                    sourceChecks, destinationChecks);
+            if (rejection != null) {
+                results[i] = BatchTransferResultDto.rejected(i, errorCode(rejection), rejection.getMessage());
+                continue;
+            }
+            fromCard.setBalance(fromCard.getBalance().subtract(item.getAmount()));
+            toCard.setBalance(toCard.getBalance().add(item.getAmount()));
+            Transfer transfer = newTransfer(fromCard, toCard, item.getAmount());
+            applied[i] = transfer;
+            transfers.add(transfer);
+            histories.add(transferHistory(transfer, fromCard.getUser()));
+        }
+        transferRepository.saveAll(transfers);
+        auditTrail.recordAll(histories);
+
+        for (int i = 0; i < results.length; i++) {
+            if (applied[i] != null) {
+                results[i] = BatchTransferResultDto.success(i, applied[i].getId());
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private RuntimeException batchItemRejection(BatchTransferRequest.Item item, Card fromCard, Card toCard, Long userId,
+                                                Map<Long, Long> ownerIds,
+                                                Map<Long, Optional<RuntimeException>> sourceChecks,
+                                                Map<Long, Optional<RuntimeException>> destinationChecks) {
+        if (item.getFromCardId().equals(item.getToCardId())) {
+            return new SameCardTransferException("Нельзя переводить на ту же самую карту");
+        }
+        if (item.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            return new IllegalArgumentException("Сумма перевода должна быть положительной");
+        }
+        if (fromCard == null) {
+            return new CardNotFoundException("Source card not found");
+        }
+        if (toCard == null) {
+            return new CardNotFoundException("Destination card not found");
+        }
+        Optional<RuntimeException> sourceRejection = sourceChecks.computeIfAbsent(fromCard.getId(), id -> check(() -> {
+            if (!userId.equals(ownerIds.get(fromCard.getId())) && !securityUtil.isAdmin()) {
+                throw new AccessDeniedException("User does not own the source card");
             }
+            validateCardUsable(fromCard, true);
+        }));
+        if (sourceRejection.isPresent()) {
+            return sourceRejection.get();
         }
+        Optional<RuntimeException> destinationRejection = destinationChecks.computeIfAbsent(toCard.getId(),
+                id -> check(() -> validateCardUsable(toCard, false)));
+        if (destinationRejection.isPresent()) {
+            return destinationRejection.get();
+        }
+        if (fromCard.getBalance().compareTo(item.getAmount()) < 0) {
+            return new InsufficientFundsException("Недостаточно средств на карте");
+        }
+        return null;
+    }
+
+    private static Optional<RuntimeException> check(Runnable validation) {
+        try {
+            validation.run();
+            return Optional.empty();
+        } catch (RuntimeException e) {
+            return Optional.of(e);
+        }
+    }
+
+    private static ErrorCode errorCode(RuntimeException rejection) {
+        if (rejection instanceof InsufficientFundsException) return ErrorCode.INSUFFICIENT_FUNDS;
+        if (rejection instanceof CardBlockedException) return ErrorCode.CARD_BLOCKED;
+        if (rejection instanceof CardExpiredException) return ErrorCode.CARD_EXPIRED;
+        if (rejection instanceof CardInactiveException) return ErrorCode.CARD_INACTIVE;
+        if (rejection instanceof SameCardTransferException) return ErrorCode.SAME_CARD_TRANSFER;
+        if (rejection instanceof CardNotFoundException) return ErrorCode.CARD_NOT_FOUND;
+        if (rejection instanceof AccessDeniedException) return ErrorCode.ACCESS_DENIED;
+        return ErrorCode.BAD_REQUEST;
+    }
+
+    private void validateRequest(Long fromCardId, Long toCardId, BigDecimal amount, Long userId) {
+        validateInitiator(userId);
         // edge case: перевод самому себе
         if (fromCardId.equals(toCardId)) {
             throw new SameCardTransferException("Нельзя переводить на ту же самую карту");
@@ -51,11 +277,159 @@ public class TransferServiceImpl implements TransferService {
         if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Сумма перевода должна быть положительной");
         }
-        Card fromCard = cardRepository.findById(fromCardId)
-                .orElseThrow(() -> new CardNotFoundException("Source card not found"));
-        Card toCard = cardRepository.findById(toCardId)
-                .orElseThrow(() -> new CardNotFoundException("Destination card not found"));
+    }
+
+    // Валидация: текущий пользователь должен совпадать с userId (если не админ)
+    private void validateInitiator(Long userId) {
+        if (!securityUtil.isAdmin()) {
+            Long current = securityUtil.getCurrentUserId();
+            if (current == null || userId == null || !current.equals(userId)) {
+                throw new AccessDeniedException("Доступ запрещён: нельзя инициировать перевод от имени другого пользователя");
+            }
+        }
+    }
+
+    private Transfer runTransfer(Long fromCardId, Long toCardId, BigDecimal amount, Long userId,
+                                 Supplier<TransferIdempotencyKey> keyReservation) {
+        TransactionCallback<Transfer> transfer = lockingMode == TransferLockingMode.ATOMIC
+                ? status -> executeAtomicTransfer(fromCardId, toCardId, amount, userId)
+                : status -> executeTransfer(fromCardId, toCardId, amount, userId);
+        TransactionCallback<Transfer> attempt = keyReservation == null ? transfer : status -> {
+            TransferIdempotencyKey key = keyReservation.get();
+            Transfer saved = transfer.doInTransaction(status);
+            key.setTransfer(saved);
+            // merge: в режиме ATOMIC контекст очищается после UPDATE карт
+            idempotencyKeyRepository.save(key);
+            return saved;
+        };
+        if (lockingMode == TransferLockingMode.PESSIMISTIC) {
+            return transactionTemplate.execute(attempt);
+        }
+        return executeWithRetry(attempt);
+    }
+
+    // Новый экземпляр на каждую попытку: после отката строки с прежним id уже нет
+    private TransferIdempotencyKey reserveIdempotencyKey(Long userId, String idempotencyKey, String requestHash) {
+        TransferIdempotencyKey key = new TransferIdempotencyKey();
+        key.setUserId(userId);
+        key.setIdempotencyKey(idempotencyKey);
+        key.setRequestHash(requestHash);
+        key.setCreatedAt(LocalDateTime.now());
+        idempotencyKeyRepository.saveAndFlush(key);
+        return key;
+    }
+
+    private Optional<TransferDto> findStoredResult(Long userId, String idempotencyKey, String requestHash, String cacheKey) {
+        return idempotencyKeyRepository.findCompleted(userId, idempotencyKey).map(stored -> {
+            TransferDto result = TransferMapper.toDto(stored.getTransfer());
+            idempotencyCache().put(cacheKey, new CachedResult(stored.getRequestHash(), result));
+            return replay(stored.getRequestHash(), requestHash, result);
+        });
+    }
+
+    private static TransferDto replay(String storedHash, String requestHash, TransferDto result) {
+        if (!storedHash.equals(requestHash)) {
+            throw new IdempotencyKeyReuseException("Idempotency-Key уже использован для перевода с другими параметрами");
+        }
+        return result;
+    }
+
+    // Сумма нормализуется, чтобы 100 и 100.00 считались одним запросом
+    private static String requestHash(Long fromCardId, Long toCardId, BigDecimal amount) {
+        String canonical = fromCardId + "|" + toCardId + "|" + amount.stripTrailingZeros().toPlainString();
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    /*
+     * Быстрый путь: списание и зачисление — по одному условному UPDATE, без загрузки карт.
+     * Условия (владелец, статус, срок, остаток) проверяет сама БД; 0 изменённых строк означает отказ,
+     * и только тогда карты читаются, чтобы выбросить то же исключение, что и в остальных режимах.
+     * Операторы выполняются по возрастанию id карты, как и блокировки в режиме PESSIMISTIC.
+     */
+    private Transfer executeAtomicTransfer(Long fromCardId, Long toCardId, BigDecimal amount, Long userId) {
+        Long ownerId = userId;
+        if (securityUtil.isAdmin()) {
+            // администратор может переводить с чужой карты — владелец нужен для условия и для аудита
+            ownerId = cardRepository.findOwnerIdById(fromCardId)
+                    .orElseThrow(() -> new CardNotFoundException("Source card not found"));
+        }
+        LocalDate today = LocalDate.now();
+        boolean applied;
+        if (fromCardId < toCardId) {
+            applied = cardRepository.debitIfUsable(fromCardId, ownerId, amount, CardStatus.ACTIVE, today) == 1
+                    && cardRepository.creditIfUsable(toCardId, amount, CardStatus.ACTIVE, today) == 1;
+        } else {
+            applied = cardRepository.creditIfUsable(toCardId, amount, CardStatus.ACTIVE, today) == 1
+                    && cardRepository.debitIfUsable(fromCardId, ownerId, amount, CardStatus.ACTIVE, today) == 1;
+        }
+        if (!applied) {
+            // исключение откатывает уже выполненный оператор вместе с транзакцией
+            throw rejectionReason(fromCardId, toCardId, amount, userId);
+        }
+        return recordTransfer(cardRepository.getReferenceById(fromCardId), cardRepository.getReferenceById(toCardId),
+                amount, userRepository.getReferenceById(ownerId));
+    }
+
+    private RuntimeException rejectionReason(Long fromCardId, Long toCardId, BigDecimal amount, Long userId) {
+        try {
+            Card fromCard = cardRepository.findById(fromCardId)
+                    .orElseThrow(() -> new CardNotFoundException("Source card not found"));
+            Card toCard = cardRepository.findById(toCardId)
+                    .orElseThrow(() -> new CardNotFoundException("Destination card not found"));
+            validateTransfer(fromCard, toCard, amount, userId);
+        } catch (RuntimeException e) {
+            return e;
+        }
+        // между UPDATE и проверкой карту успели изменить (например, пополнили) — попытка будет повторена
+        return new OptimisticLockingFailureException("Состояние карт изменилось во время перевода");
+    }
+
+    // Каждая попытка — новая транзакция: после конфликта версий контекст персистентности непригоден
+    private Transfer executeWithRetry(TransactionCallback<Transfer> attempt) {
+        for (int attemptNo = 1; ; attemptNo++) {
+            try {
+                return transactionTemplate.execute(attempt);
+            } catch (OptimisticLockingFailureException e) {
+                if (attemptNo >= optimisticMaxAttempts) {
+                    throw new TransferConflictException("Перевод не выполнен: карты одновременно изменяются другими операциями, повторите запрос", e);
+                }
+                backoff(attemptNo);
+            }
+        }
+    }
 
+    private Transfer executeTransfer(Long fromCardId, Long toCardId, BigDecimal amount, Long userId) {
+        Card fromCard;
+        Card toCard;
+        if (lockingMode == TransferLockingMode.OPTIMISTIC) {
+            fromCard = cardRepository.findById(fromCardId)
+                    .orElseThrow(() -> new CardNotFoundException("Source card not found"));
+            toCard = cardRepository.findById(toCardId)
+                    .orElseThrow(() -> new CardNotFoundException("Destination card not found"));
+        } else {
+            // Блокируем строки всегда по возрастанию id: встречные переводы A→B и B→A не дают deadlock
+            boolean sourceFirst = fromCardId < toCardId;
+            Card first = lockCard(sourceFirst ? fromCardId : toCardId, sourceFirst);
+            Card second = lockCard(sourceFirst ? toCardId : fromCardId, !sourceFirst);
+            fromCard = sourceFirst ? first : second;
+            toCard = sourceFirst ? second : first;
+        }
+
+        validateTransfer(fromCard, toCard, amount, userId);
+
+        fromCard.setBalance(fromCard.getBalance().subtract(amount));
+        toCard.setBalance(toCard.getBalance().add(amount));
+        cardRepository.save(fromCard);
+        cardRepository.save(toCard);
+        return recordTransfer(fromCard, toCard, amount, fromCard.getUser());
+    }
+
+    private void validateTransfer(Card fromCard, Card toCard, BigDecimal amount, Long userId) {
         // Проверка владения исходной картой
         if (!fromCard.getUser().getId().equals(userId) && !securityUtil.isAdmin()) {
             throw new AccessDeniedException("User does not own the source card");
@@ -66,29 +440,50 @@ public class TransferServiceImpl implements TransferService {
         if (fromCard.getBalance().compareTo(amount) < 0) {
             throw new InsufficientFundsException("Недостаточно средств на карте");
         }
+    }
 
-        fromCard.setBalance(fromCard.getBalance().subtract(amount));
-        toCard.setBalance(toCard.getBalance().add(amount));
-        cardRepository.save(fromCard);
-        cardRepository.save(toCard);
+    private Transfer recordTransfer(Card fromCard, Card toCard, BigDecimal amount, User owner) {
+        Transfer savedTransfer = transferRepository.save(newTransfer(fromCard, toCard, amount));
+        auditTrail.record(transferHistory(savedTransfer, owner));
+        return savedTransfer;
+    }
 
+    private static Transfer newTransfer(Card fromCard, Card toCard, BigDecimal amount) {
         Transfer transfer = new Transfer();
         transfer.setSourceCard(fromCard);
         transfer.setDestinationCard(toCard);
         transfer.setAmount(amount);
         transfer.setTransferDate(LocalDateTime.now());
         transfer.setStatus("SUCCESS");
-        Transfer savedTransfer = transferRepository.save(transfer);
+        return transfer;
+    }
 
+    private static History transferHistory(Transfer transfer, User owner) {
         History history = new History();
         history.setEventType(HistoryEventType.TRANSFER);
         history.setEventDate(LocalDateTime.now());
-        history.setDescription("Перевод с карты " + fromCardId + " на карту " + toCardId + " на сумму " + amount);
-        history.setUser(fromCard.getUser());
-        history.setCard(fromCard);
-        history.setTransfer(savedTransfer);
-        historyRepository.save(history);
-        return savedTransfer;
+        history.setDescription("Перевод с карты " + transfer.getSourceCard().getId() + " на карту "
+                + transfer.getDestinationCard().getId() + " на сумму " + transfer.getAmount());
+        history.setUser(owner);
+        history.setCard(transfer.getSourceCard());
+        history.setTransfer(transfer);
+        return history;
+    }
+
+    private Card lockCard(Long cardId, boolean isSource) {
+        return cardRepository.findByIdForUpdate(cardId)
+                .orElseThrow(() -> new CardNotFoundException(isSource ? "Source card not found" : "Destination card not found"));
+    }
+
+    // Экспоненциальная задержка с джиттером, чтобы конкурирующие попытки разошлись во времени
+    private static void backoff(int attempt) {
+        long maxDelayMs = Math.min(50L, 5L << Math.min(attempt, 4));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, maxDelayMs + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferConflictException("Перевод прерван во время повторной попытки", e);
+        }
     }
 
     private void validateCardUsable(Card card, boolean isSource) {
@@ -104,22 +499,37 @@ public class TransferServiceImpl implements TransferService {
     }
 
     @Override
-    public List<Transfer> getTransfersByUser(Long userId) {
-        return transferRepository.findByUserId(userId);
+    public Slice<Transfer> getOutgoingTransfersByUser(Long userId, Pageable pageable) {
+        return transferRepository.findOutgoingByUserId(userId, pageable);
     }
 
     @Override
-    public List<Transfer> getTransfersByCard(Long cardId) {
-        return transferRepository.findByCardId(cardId);
+    public Slice<Transfer> getOutgoingTransfersByCard(Long cardId, Pageable pageable) {
+        return transferRepository.findOutgoingByCardId(cardId, pageable);
     }
 
     @Override
-    public List<Transfer> getTransfersByStatus(String status) {
-        return transferRepository.findByStatus(status);
+    public Slice<Transfer> getOutgoingTransfersByStatus(String status, Long userId, Pageable pageable) {
+        if (userId == null) {
+            return transferRepository.findOutgoingByStatus(status, pageable);
+        }
+        return transferRepository.findOutgoingByStatusAndUserId(status, userId, pageable);
     }
 
     @Override
     public Optional<Transfer> getTransferById(Long id) {
         return transferRepository.findById(id);
     }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportOutgoingTransfers(Long userId, String status, LocalDateTime dateFrom, LocalDateTime dateTo,
+                                        Consumer<TransferDto> sink) {
+        Specification<Transfer> spec = TransferSpecification.outgoingForUser(userId)
+                .and(TransferSpecification.hasStatus(status))
+                .and(TransferSpecification.transferDateBetween(dateFrom, dateTo));
+        try (Stream<TransferDto> rows = transferRepository.streamDtos(spec, Sort.by("id"), exportFetchSize)) {
+            rows.forEach(sink);
+        }
+    }
 }
@@ -8,6 +8,8 @@ import java.time.LocalDate;
 
 public class CardSpecification {
 
+    private static final char LIKE_ESCAPE = '\\';
+
     /**
      * Поиск карт по статусу
      */
@@ -58,6 +60,33 @@ public class CardSpecification {
         };
     }
 
+    /**
+     * Поиск карт по началу имени, username или email владельца.
+     * В отличие от hasOwnerName условие lower(col) LIKE 'x%' обслуживается обычным B-tree индексом
+     * (idx_users_*_prefix); спецсимволы LIKE во входной строке экранируются.
+     */
+    public static Specification<Card> hasOwnerNamePrefix(String prefix) {
+        return (root, query, criteriaBuilder) -> {
+            if (prefix == null || prefix.trim().isEmpty()) {
+                return criteriaBuilder.conjunction();
+            }
+            String pattern = escapeLike(prefix.trim().toLowerCase()) + "%";
+
+            return criteriaBuilder.or(
+                    criteriaBuilder.like(criteriaBuilder.lower(root.get("user").get("name")), pattern, LIKE_ESCAPE),
+                    criteriaBuilder.like(criteriaBuilder.lower(root.get("user").get("username")), pattern, LIKE_ESCAPE),
+                    criteriaBuilder.like(criteriaBuilder.lower(root.get("user").get("email")), pattern, LIKE_ESCAPE)
+            );
+        };
+    }
+
+    /**
+     * Поиск по имени владельца в выбранном режиме: по префиксу или по подстроке
+     */
+    public static Specification<Card> ownerNameMatches(String ownerName, boolean prefix) {
+        return prefix ? hasOwnerNamePrefix(ownerName) : hasOwnerName(ownerName);
+    }
+
     /**
      * Поиск просроченных карт
      */
@@ -152,8 +181,8 @@ public class CardSpecification {
 
     /**
      * Поиск по маске номера карты
-     * Примечание: поскольку номера зашифрованы, этот метод возвращает conjunction
-     * (поиск по маске должен выполняться в сервисном слое после расшифровки)
+     * Примечание: поскольку номера зашифрованы, этот метод возвращает conjunction.
+     * Для фильтрации в SQL используйте hasPanHash/hasLast4Hash с HMAC-индексом из CardBlindIndexService
      */
     public static Specification<Card> hasMask(String mask) {
         return (root, query, criteriaBuilder) -> {
@@ -164,6 +193,33 @@ public class CardSpecification {
         };
     }
 
+    /**
+     * Поиск по HMAC-индексу полного номера (колонка pan_hash, уникальный индекс)
+     */
+    public static Specification<Card> hasPanHash(String panHash) {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.equal(root.get("panHash"), panHash);
+    }
+
+    /**
+     * Поиск по HMAC-индексу последних 4 цифр (колонка last4_hash)
+     */
+    public static Specification<Card> hasLast4Hash(String last4Hash) {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.equal(root.get("last4Hash"), last4Hash);
+    }
+
+    /**
+     * Ограничение выборки картами пользователя; в отличие от hasUserId при userId == null
+     * не возвращает ничего (текущий пользователь не определён — чужие карты не отдаются)
+     */
+    public static Specification<Card> ownedBy(Long userId) {
+        return (root, query, criteriaBuilder) -> {
+            if (userId == null) {
+                return criteriaBuilder.disjunction();
+            }
+            return criteriaBuilder.equal(root.get("user").get("id"), userId);
+        };
+    }
+
     /**
      * Поиск активных карт пользователя
      */
@@ -184,4 +240,8 @@ public class CardSpecification {
     public static Specification<Card> expiredCards() {
         return hasStatus(CardStatus.EXPIRED);
     }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
 }
@@ -25,5 +25,9 @@ public class HistorySpecification {
             return cb.between(root.get("eventDate"), from, to);
         };
     }
-}
 
+    // Отбор для архивирования: keyset по id среди строк старше границы
+    public static Specification<History> archivableAfter(LocalDateTime before, long afterId) {
+        return (root, query, cb) -> cb.and(cb.lessThan(root.get("eventDate"), before), cb.greaterThan(root.get("id"), afterId));
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.bankcards.specification;
+
+import com.example.bankcards.entity.Transfer;
+import org.springframework.data.jpa.domain.Specification;
+import java.time.LocalDateTime;
+
+public class TransferSpecification {
+    // Исходящие переводы: userId == null — всех пользователей (любой перевод с исходной картой)
+    public static Specification<Transfer> outgoingForUser(Long userId) {
+        return (root, query, cb) -> userId == null
+                ? cb.isNotNull(root.get("sourceCard"))
+                : cb.equal(root.get("sourceCard").get("user").get("id"), userId);
+    }
+    public static Specification<Transfer> hasStatus(String status) {
+        return (root, query, cb) -> (status == null || status.isBlank()) ? cb.conjunction() : cb.equal(root.get("status"), status);
+    }
+    public static Specification<Transfer> transferDateBetween(LocalDateTime from, LocalDateTime to) {
+        return (root, query, cb) -> {
+            if (from == null && to == null) return cb.conjunction();
+            if (from == null) return cb.lessThanOrEqualTo(root.get("transferDate"), to);
+            if (to == null) return cb.greaterThanOrEqualTo(root.get("transferDate"), from);
+            return cb.between(root.get("transferDate"), from, to);
+        };
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.bankcards.util;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Небольшой потокобезопасный кэш в памяти узла с ограничением размера и временем жизни записей.
+ * При заполнении вытесняется давно не использованная запись (LRU), поэтому get и put — O(1)
+ * при любом числе живых записей; истёкшая запись удаляется при обращении к ней.
+ * Общий для кэшей проверенных JWT, владельцев ресурсов, ключей идемпотентности и COUNT по фильтрам.
+ */
+public class BoundedTtlCache<K, V> {
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Map<K, Entry<V>> entries;
+
+    /** maxSize <= 0 или ttl <= 0 — кэш выключен (put по умолчанию ничего не сохраняет). */
+    public BoundedTtlCache(int maxSize, Duration ttl) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > BoundedTtlCache.this.maxSize;
+            }
+        };
+    }
+
+    public V get(K key) {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAtMillis() <= System.currentTimeMillis()) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.value();
+        }
+    }
+
+    /** Запись на ttl кэша. */
+    public void put(K key, V value) {
+        if (ttlMillis > 0) {
+            put(key, value, System.currentTimeMillis() + ttlMillis);
+        }
+    }
+
+    /** Запись со своим сроком жизни (например, до exp токена). */
+    public void put(K key, V value, long expiresAtMillis) {
+        if (maxSize <= 0) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, new Entry<>(value, expiresAtMillis));
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private record Entry<V>(V value, long expiresAtMillis) {}
+}
@@ -0,0 +1,102 @@
+package com.example.bankcards.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.mapping.PropertyPath;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Курсорная (keyset) пагинация: сортировка по одному полю с тай-брейком по id
+ * и непрозрачный токен {@code after}, в котором закодированы ключи последней записи.
+ * Следующая страница выбирается условием {@code (field, id) > (:lastValue, :lastId)},
+ * поэтому стоимость страницы N не зависит от N и COUNT(*) не выполняется.
+ */
+public class KeysetCursorUtils {
+
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private static final TypeReference<LinkedHashMap<String, Object>> KEYS_TYPE = new TypeReference<>() {};
+
+    public static final String ID_FIELD = "id";
+
+    /**
+     * Сортировка для курсорного режима. Поле должно быть NOT NULL колонкой из allowedFields,
+     * иначе используется id; id всегда добавляется последним, чтобы порядок был однозначным.
+     */
+    public static Sort createKeysetSort(String sortBy, String sortDirection, Set<String> allowedFields) {
+        Sort.Direction direction = "desc".equalsIgnoreCase(sortDirection)
+                ? Sort.Direction.DESC
+                : Sort.Direction.ASC;
+        String field = sortBy == null ? ID_FIELD : sortBy.trim();
+        if (!allowedFields.contains(field)) {
+            field = ID_FIELD;
+        }
+        Sort sort = Sort.by(direction, field);
+        return ID_FIELD.equals(field) ? sort : sort.and(Sort.by(direction, ID_FIELD));
+    }
+
+    /**
+     * Восстанавливает позицию из токена; пустой токен означает первую страницу.
+     */
+    public static ScrollPosition decode(String after, Class<?> domainType, Sort sort) {
+        if (after == null || after.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+        Map<String, Object> raw;
+        try {
+            byte[] json = Base64.getUrlDecoder().decode(after.trim());
+            raw = MAPPER.readValue(json, KEYS_TYPE);
+        } catch (IllegalArgumentException | IOException e) {
+            throw new IllegalArgumentException("Некорректный курсор пагинации");
+        }
+
+        Set<String> expected = new LinkedHashSet<>();
+        sort.forEach(order -> expected.add(order.getProperty()));
+        if (!expected.equals(raw.keySet())) {
+            throw new IllegalArgumentException("Курсор не соответствует параметрам сортировки");
+        }
+
+        Map<String, Object> keys = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : raw.entrySet()) {
+            Class<?> type = PropertyPath.from(entry.getKey(), domainType).getLeafType();
+            try {
+                keys.put(entry.getKey(), MAPPER.convertValue(entry.getValue(), type));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Некорректный курсор пагинации");
+            }
+        }
+        return ScrollPosition.forward(keys);
+    }
+
+    /**
+     * Токен для следующей страницы или null, если окно последнее.
+     */
+    public static String nextCursor(Window<?> window) {
+        if (window.isEmpty() || !window.hasNext()) {
+            return null;
+        }
+        KeysetScrollPosition position = (KeysetScrollPosition) window.positionAt(window.size() - 1);
+        try {
+            byte[] json = MAPPER.writeValueAsBytes(position.getKeys());
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сформировать курсор пагинации", e);
+        }
+    }
+}
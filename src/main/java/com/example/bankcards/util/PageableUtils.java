@@ -16,7 +16,7 @@ public class PageableUtils {
 
     public static Pageable createPageable(PageRequestDto pageRequestDto) {
         int page = Math.max(0, pageRequestDto.getPage());
-        int size = Math.min(MAX_PAGE_SIZE, Math.max(1, pageRequestDto.getSize()));
+        int size = normalizeSize(pageRequestDto.getSize());
 
         Sort sort = createSort(pageRequestDto.getSortBy(), pageRequestDto.getSortDirection());
 
@@ -25,13 +25,17 @@ public class PageableUtils {
 
     public static Pageable createPageable(int page, int size, String sortBy, String sortDirection) {
         page = Math.max(0, page);
-        size = Math.min(MAX_PAGE_SIZE, Math.max(1, size));
+        size = normalizeSize(size);
 
         Sort sort = createSort(sortBy, sortDirection);
 
         return PageRequest.of(page, size, sort);
     }
 
+    public static int normalizeSize(int size) {
+        return Math.min(MAX_PAGE_SIZE, Math.max(1, size));
+    }
+
     private static Sort createSort(String sortBy, String sortDirection) {
         if (sortBy == null || sortBy.trim().isEmpty()) {
             sortBy = "id";
@@ -0,0 +1,76 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.service.CardEncryptionService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение прежней схемы (SecretKeySpec и Cipher.getInstance на каждый вызов)
+ * с переиспользуемыми Cipher в CardEncryptionService; обе стороны расшифровывают один формат
+ * {@code <keyId>:<base64(iv || ciphertext || tag)>} в AES/GCM.
+ * Не входит в surefire; запуск — main() из IDE или через classpath test-classes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class CardEncryptionBenchmark {
+    private static final String KEY = "1234567890abcdef";
+    private static final String CARD_NUMBER = "4000001234567899";
+    private static final int PAGE_SIZE = 20;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+
+    private CardEncryptionService service;
+    private String encrypted;
+    private List<String> page;
+
+    @Setup
+    public void setUp() {
+        service = new CardEncryptionService(KEY);
+        encrypted = service.encrypt(CARD_NUMBER);
+        page = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            page.add(encrypted);
+        }
+    }
+
+    @Benchmark
+    public String decryptPerCallCipher() throws Exception {
+        byte[] payload = Base64.getDecoder().decode(encrypted.substring(encrypted.indexOf(':') + 1));
+        SecretKeySpec keySpec = new SecretKeySpec(KEY.getBytes(), "AES");
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, keySpec, new GCMParameterSpec(TAG_LENGTH_BITS, payload, 0, IV_LENGTH));
+        return new String(cipher.doFinal(payload, IV_LENGTH, payload.length - IV_LENGTH));
+    }
+
+    @Benchmark
+    public String decryptReusedCipher() {
+        return service.decrypt(encrypted);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public List<String> decryptAllPage() {
+        return service.decryptAll(page);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CardEncryptionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
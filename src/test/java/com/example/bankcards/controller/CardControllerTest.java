@@ -7,6 +7,7 @@ import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
 import com.example.bankcards.entity.User; // используем сущность
 import com.example.bankcards.exception.ErrorHandler;
+import com.example.bankcards.repository.CardSummaryRepository.CardSummary;
 import com.example.bankcards.service.CardService;
 import com.example.bankcards.service.UserService;
 import com.example.bankcards.security.SecurityConfig;
@@ -25,6 +26,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.http.MediaType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -43,9 +47,6 @@ import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
-import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -85,6 +86,13 @@ class CardControllerTest {
         @Bean
         public SecurityUtil securityUtil() { return new SecurityUtil(); }
         @Bean
+        public com.example.bankcards.service.ApproximateCountService approximateCountService() {
+            return Mockito.mock(com.example.bankcards.service.ApproximateCountService.class);
+        }
+        // нужен JwtAuthenticationFilter, который подхватывает срез @WebMvcTest
+        @Bean
+        public com.example.bankcards.security.JwtService jwtService() { return new com.example.bankcards.security.JwtService(); }
+        @Bean
         @Primary
         public ObjectMapper objectMapper() {
             return Jackson2ObjectMapperBuilder.json()
@@ -118,7 +126,7 @@ class CardControllerTest {
         public PasswordEncoder passwordEncoder() { return NoOpPasswordEncoder.getInstance(); }
     }
 
-    private Card testCard;
+    private CardSummary testSummary;
     private CardDto testCardDto;
     private User testUser;
 
@@ -129,12 +137,8 @@ class CardControllerTest {
         testUser.setId(1L);
         testUser.setName("Иван Иванов");
 
-        testCard = new Card();
-        testCard.setId(1L);
-        testCard.setEncryptedNumber("encrypted123");
-        testCard.setStatus(CardStatus.ACTIVE);
-        testCard.setExpirationDate(LocalDate.now().plusYears(3));
-        testCard.setUser(testUser);
+        testSummary = new CardSummary(1L, "**** **** **** 1234", "encrypted123", CardStatus.ACTIVE,
+                LocalDate.now().plusYears(3), testUser.getId());
 
         testCardDto = new CardDto(1L, "**** **** **** 1234", CardStatus.ACTIVE, LocalDate.now().plusYears(3));
     }
@@ -145,12 +149,11 @@ class CardControllerTest {
     @WithMockUser(roles = "USER")
     void searchCardsShouldReturnCardsWhenAllParametersProvided() throws Exception {
         // Given
-        List<Card> cards = Arrays.asList(testCard);
+        List<CardSummary> cards = Arrays.asList(testSummary);
         List<CardDto> cardDtos = Arrays.asList(testCardDto);
 
-        when(cardService.searchCards(any(CardSearchDto.class))).thenReturn(cards);
-        when(cardMapper.toDtoList(anyList())).thenReturn(cardDtos);
-        when(cardMapper.toDto(any(Card.class))).thenReturn(testCardDto);
+        when(cardService.searchCardSummarySlice(any(CardSearchDto.class), any(Pageable.class))).thenReturn(new SliceImpl<>(cards));
+        when(cardMapper.toSummaryDtoList(anyList())).thenReturn(cardDtos);
 
         // When & Then
         mockMvc.perform(get("/api/cards/search")
@@ -173,12 +176,11 @@ class CardControllerTest {
     @WithMockUser(roles = "USER")
     void searchCardsShouldReturnCardsWhenOnlyStatusProvided() throws Exception {
         // Given
-        List<Card> cards = Arrays.asList(testCard);
+        List<CardSummary> cards = Arrays.asList(testSummary);
         List<CardDto> cardDtos = Arrays.asList(testCardDto);
 
-        when(cardService.searchCards(any(CardSearchDto.class))).thenReturn(cards);
-        when(cardMapper.toDtoList(anyList())).thenReturn(cardDtos);
-        when(cardMapper.toDto(any(Card.class))).thenReturn(testCardDto);
+        when(cardService.searchCardSummarySlice(any(CardSearchDto.class), any(Pageable.class))).thenReturn(new SliceImpl<>(cards));
+        when(cardMapper.toSummaryDtoList(anyList())).thenReturn(cardDtos);
 
         // When & Then
         mockMvc.perform(get("/api/cards/search")
@@ -194,8 +196,8 @@ class CardControllerTest {
     @WithMockUser(roles = "USER")
     void searchCardsShouldReturnEmptyListWhenNoCardsFound() throws Exception {
         // Given
-        when(cardService.searchCards(any(CardSearchDto.class))).thenReturn(Collections.emptyList());
-        when(cardMapper.toDtoList(anyList())).thenReturn(Collections.emptyList());
+        when(cardService.searchCardSummarySlice(any(CardSearchDto.class), any(Pageable.class))).thenReturn(new SliceImpl<>(Collections.emptyList()));
+        when(cardMapper.toSummaryDtoList(anyList())).thenReturn(Collections.emptyList());
 
         // When & Then
         mockMvc.perform(get("/api/cards/search")
@@ -211,12 +213,11 @@ class CardControllerTest {
     @WithMockUser(roles = "USER")
     void searchCardsByMaskShouldReturnMatchingCards() throws Exception {
         // Given
-        List<Card> cards = Arrays.asList(testCard);
+        List<CardSummary> cards = Arrays.asList(testSummary);
         List<CardDto> cardDtos = Arrays.asList(testCardDto);
 
-        when(cardService.searchCardsByMask("1234")).thenReturn(cards);
-        when(cardMapper.toDtoList(anyList())).thenReturn(cardDtos);
-        when(cardMapper.toDto(any(Card.class))).thenReturn(testCardDto);
+        when(cardService.searchCardSummaries(any(CardSearchDto.class), any(Sort.class))).thenReturn(cards);
+        when(cardMapper.toSummaryDtoList(anyList())).thenReturn(cardDtos);
 
         // When & Then
         mockMvc.perform(get("/api/cards/search/mask/1234")
@@ -233,12 +234,11 @@ class CardControllerTest {
     void searchCardsByOwnerNameShouldReturnMatchingCards() throws Exception {
         // Given
         String ownerName = "Иван";
-        List<Card> cards = Arrays.asList(testCard);
+        List<CardSummary> cards = Arrays.asList(testSummary);
         List<CardDto> cardDtos = Arrays.asList(testCardDto);
 
-        when(cardService.searchCardsByOwnerName(ownerName)).thenReturn(cards);
-        when(cardMapper.toDtoList(anyList())).thenReturn(cardDtos);
-        when(cardMapper.toDto(any(Card.class))).thenReturn(testCardDto);
+        when(cardService.searchCardSummaries(any(CardSearchDto.class), any(Sort.class))).thenReturn(cards);
+        when(cardMapper.toSummaryDtoList(anyList())).thenReturn(cardDtos);
 
         // When & Then
         mockMvc.perform(get("/api/cards/search/owner")
@@ -254,12 +254,11 @@ class CardControllerTest {
     @WithMockUser(roles = "USER")
     void searchCardsByStatusAndOwnerShouldReturnMatchingCards() throws Exception {
         // Given
-        List<Card> cards = Arrays.asList(testCard);
+        List<CardSummary> cards = Arrays.asList(testSummary);
         List<CardDto> cardDtos = Arrays.asList(testCardDto);
 
-        when(cardService.searchCardsByStatusAndOwner(eq(CardStatus.ACTIVE), eq(1L))).thenReturn(cards);
-        when(cardMapper.toDtoList(anyList())).thenReturn(cardDtos);
-        when(cardMapper.toDto(any(Card.class))).thenReturn(testCardDto);
+        when(cardService.searchCardSummaries(any(CardSearchDto.class), any(Sort.class))).thenReturn(cards);
+        when(cardMapper.toSummaryDtoList(anyList())).thenReturn(cardDtos);
 
         // When & Then
         mockMvc.perform(get("/api/cards/search/filter")
@@ -276,12 +275,11 @@ class CardControllerTest {
     @WithMockUser(roles = "USER")
     void searchCardsByStatusAndOwnerShouldReturnCardsWhenOnlyStatusProvided() throws Exception {
         // Given
-        List<Card> cards = Arrays.asList(testCard);
+        List<CardSummary> cards = Arrays.asList(testSummary);
         List<CardDto> cardDtos = Arrays.asList(testCardDto);
 
-        when(cardService.searchCardsByStatusAndOwner(eq(CardStatus.BLOCKED), isNull())).thenReturn(cards);
-        when(cardMapper.toDtoList(anyList())).thenReturn(cardDtos);
-        when(cardMapper.toDto(any(Card.class))).thenReturn(testCardDto);
+        when(cardService.searchCardSummaries(any(CardSearchDto.class), any(Sort.class))).thenReturn(cards);
+        when(cardMapper.toSummaryDtoList(anyList())).thenReturn(cardDtos);
 
         // When & Then
         mockMvc.perform(get("/api/cards/search/filter")
@@ -295,7 +293,7 @@ class CardControllerTest {
     @WithMockUser(roles = "USER")
     void searchCardsShouldReturnBadRequestWhenServiceThrowsException() throws Exception {
         // Given
-        when(cardService.searchCards(any(CardSearchDto.class))).thenThrow(new RuntimeException("Service error"));
+        when(cardService.searchCardSummarySlice(any(CardSearchDto.class), any(Pageable.class))).thenThrow(new RuntimeException("Service error"));
 
         // When & Then
         mockMvc.perform(get("/api/cards/search")
@@ -308,7 +306,7 @@ class CardControllerTest {
     @WithMockUser(roles = "USER")
     void searchCardsByMaskShouldReturnBadRequestWhenServiceThrowsException() throws Exception {
         // Given
-        when(cardService.searchCardsByMask(anyString())).thenThrow(new RuntimeException("Service error"));
+        when(cardService.searchCardSummaries(any(CardSearchDto.class), any(Sort.class))).thenThrow(new RuntimeException("Service error"));
 
         // When & Then
         mockMvc.perform(get("/api/cards/search/mask/1234")
@@ -320,7 +318,7 @@ class CardControllerTest {
     @WithMockUser(roles = "USER")
     void searchCardsByOwnerNameShouldReturnBadRequestWhenServiceThrowsException() throws Exception {
         // Given
-        when(cardService.searchCardsByOwnerName(anyString())).thenThrow(new RuntimeException("Service error"));
+        when(cardService.searchCardSummaries(any(CardSearchDto.class), any(Sort.class))).thenThrow(new RuntimeException("Service error"));
 
         // When & Then
         mockMvc.perform(get("/api/cards/search/owner")
@@ -389,7 +387,7 @@ class CardControllerTest {
     @WithMockUser(roles = "USER")
     void searchCardsByMask_ShouldReturnErrorResponseBody_WhenServiceThrowsRuntimeException() throws Exception {
         // Given
-        org.mockito.Mockito.when(cardService.searchCardsByMask("1234")).thenThrow(new RuntimeException("Service error"));
+        org.mockito.Mockito.when(cardService.searchCardSummaries(any(CardSearchDto.class), any(Sort.class))).thenThrow(new RuntimeException("Service error"));
 
         // When & Then
         mockMvc.perform(get("/api/cards/search/mask/1234").contentType(MediaType.APPLICATION_JSON))
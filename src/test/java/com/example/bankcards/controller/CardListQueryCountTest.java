@@ -0,0 +1,152 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.JwtService;
+import com.example.bankcards.service.CardBlindIndexService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Списки карт читаются проекцией: число SQL-запросов на эндпоинт не зависит от количества карт в выдаче,
+ * ленивые связи (user, переводы) не подгружаются.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@Transactional
+class CardListQueryCountTest {
+    private static final int EXTRA_CARDS = 20;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CardRepository cardRepository;
+    @Autowired
+    private CardBlindIndexService cardBlindIndexService;
+    @Autowired
+    private JwtService jwtService;
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private User owner;
+    private String tokenOwner;
+    private String tokenAdmin;
+    private String suffix;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        suffix = String.valueOf(System.nanoTime());
+        owner = saveUser("stats_owner_" + suffix, Role.USER);
+        User admin = saveUser("stats_admin_" + suffix, Role.ADMIN);
+        saveCard(0);
+        tokenOwner = jwtService.generateToken(owner);
+        tokenAdmin = jwtService.generateToken(admin);
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void listEndpoints_issueConstantNumberOfStatements() throws Exception {
+        Map<String, String> endpoints = new LinkedHashMap<>();
+        endpoints.put("/api/cards/user/" + owner.getId(), tokenAdmin);
+        endpoints.put("/api/cards/user/" + owner.getId() + "/active", tokenAdmin);
+        endpoints.put("/api/cards/status/ACTIVE", tokenAdmin);
+        endpoints.put("/api/cards/search?status=ACTIVE", tokenOwner);
+        endpoints.put("/api/cards/search/filter?status=ACTIVE", tokenOwner);
+        endpoints.put("/api/cards/search/owner?ownerName=stats_owner_" + suffix, tokenOwner);
+        endpoints.put("/api/cards/search/mask/7890", tokenOwner);
+        endpoints.put("/api/cards/user/" + owner.getId() + "/paginated?size=50", tokenAdmin);
+        endpoints.put("/api/cards/search/paginated?size=50", tokenOwner);
+        endpoints.put("/api/cards/search/paginated?size=50&withTotal=false", tokenOwner);
+
+        Map<String, Long> small = new LinkedHashMap<>();
+        for (Map.Entry<String, String> endpoint : endpoints.entrySet()) {
+            // прогрев: кэши токенов и прав не должны влиять на замер
+            statementsFor(endpoint.getKey(), endpoint.getValue());
+            small.put(endpoint.getKey(), statementsFor(endpoint.getKey(), endpoint.getValue()));
+        }
+
+        for (int i = 1; i <= EXTRA_CARDS; i++) {
+            saveCard(i);
+        }
+
+        for (Map.Entry<String, String> endpoint : endpoints.entrySet()) {
+            assertThat(statementsFor(endpoint.getKey(), endpoint.getValue()))
+                    .as(endpoint.getKey())
+                    .isEqualTo(small.get(endpoint.getKey()));
+            assertThat(statistics.getEntityFetchCount())
+                    .as("ленивые загрузки: " + endpoint.getKey())
+                    .isZero();
+        }
+
+        mockMvc.perform(get("/api/cards/user/" + owner.getId())
+                        .header("Authorization", "Bearer " + tokenAdmin)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(EXTRA_CARDS + 1)));
+    }
+
+    private long statementsFor(String url, String token) throws Exception {
+        // данные — в БД, контекст пуст: иначе сущности брались бы из кэша первого уровня
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+        mockMvc.perform(get(url)
+                        .header("Authorization", "Bearer " + token)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        return statistics.getPrepareStatementCount();
+    }
+
+    private User saveUser(String username, Role role) {
+        User user = new User();
+        user.setName(username);
+        user.setUsername(username);
+        user.setEmail(username + "@mail.com");
+        user.setPassword("p");
+        user.setRole(role);
+        user.setActive(true);
+        return userRepository.save(user);
+    }
+
+    private void saveCard(int index) {
+        // у всех карт одинаковые последние 4 цифры — поиск по маске возвращает их все
+        String number = String.format("40%08d%06d", index, 7890);
+        Card card = new Card();
+        card.setEncryptedNumber("stats-" + suffix + "-" + number);
+        card.setMaskedNumber("**** **** **** 7890");
+        card.setStatus(CardStatus.ACTIVE);
+        card.setExpirationDate(LocalDate.now().plusYears(2));
+        card.setBalance(BigDecimal.ZERO);
+        card.setUser(owner);
+        cardBlindIndexService.index(card, number);
+        cardRepository.save(card);
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.JwtService;
+import com.example.bankcards.service.CardBlindIndexService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Поиск карт: маска и ограничение по владельцу применяются в SQL (blind index + user_id),
+ * поэтому totalElements совпадает с тем, что видит пользователь.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+class CardSearchIntegrationTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CardRepository cardRepository;
+    @Autowired
+    private CardBlindIndexService cardBlindIndexService;
+    @Autowired
+    private JwtService jwtService;
+
+    private User owner;
+    private Card ownCard;
+    private String tokenOwner;
+    private String tokenAdmin;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = String.valueOf(System.nanoTime());
+        owner = saveUser("search_owner_" + suffix, Role.USER);
+        User stranger = saveUser("search_stranger_" + suffix, Role.USER);
+        User admin = saveUser("search_admin_" + suffix, Role.ADMIN);
+
+        // Одинаковые последние 4 цифры у своей и чужой карты
+        ownCard = saveCard(owner, "4000001234567890", suffix);
+        saveCard(owner, "4000009999995555", suffix);
+        saveCard(stranger, "5100001234567890", suffix);
+
+        tokenOwner = jwtService.generateToken(owner);
+        tokenAdmin = jwtService.generateToken(admin);
+    }
+
+    @Test
+    void userSearchByLast4_returnsOnlyOwnCardsWithMatchingTotals() throws Exception {
+        mockMvc.perform(get("/api/cards/search/paginated")
+                        .param("mask", "**** **** **** 7890")
+                        .header("Authorization", "Bearer " + tokenOwner)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()", is(1)))
+                .andExpect(jsonPath("$.content[0].id", is(ownCard.getId().intValue())))
+                .andExpect(jsonPath("$.totalElements", is(1)));
+    }
+
+    @Test
+    void adminSearchByLast4_seesAllOwners() throws Exception {
+        mockMvc.perform(get("/api/cards/search")
+                        .param("mask", "7890")
+                        .header("Authorization", "Bearer " + tokenAdmin)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(2)));
+    }
+
+    @Test
+    void searchByFullNumber_usesPanIndex() throws Exception {
+        mockMvc.perform(get("/api/cards/search")
+                        .param("mask", "4000 0012 3456 7890")
+                        .header("Authorization", "Bearer " + tokenOwner)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(1)))
+                .andExpect(jsonPath("$[0].id", is(ownCard.getId().intValue())));
+    }
+
+    @Test
+    void partialMask_matchesNothing() throws Exception {
+        mockMvc.perform(get("/api/cards/search")
+                        .param("mask", "90")
+                        .header("Authorization", "Bearer " + tokenOwner)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(0)));
+    }
+
+    private User saveUser(String username, Role role) {
+        User user = new User();
+        user.setName(username);
+        user.setUsername(username);
+        user.setEmail(username + "@mail.com");
+        user.setPassword("p");
+        user.setRole(role);
+        user.setActive(true);
+        return userRepository.save(user);
+    }
+
+    private Card saveCard(User user, String number, String suffix) {
+        Card card = new Card();
+        card.setEncryptedNumber("search-" + suffix + "-" + number);
+        card.setMaskedNumber("**** **** **** " + number.substring(12));
+        card.setStatus(CardStatus.ACTIVE);
+        card.setExpirationDate(LocalDate.now().plusYears(2));
+        card.setBalance(BigDecimal.ZERO);
+        card.setUser(user);
+        cardBlindIndexService.index(card, number);
+        return cardRepository.save(card);
+    }
+}
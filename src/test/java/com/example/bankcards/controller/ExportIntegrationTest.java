@@ -0,0 +1,203 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.History;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.HistoryRepository;
+import com.example.bankcards.repository.TransferRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.JwtService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Без @Transactional: тело выгрузки пишется в потоке async-обработки и видит только закоммиченные строки
+@SpringBootTest
+@AutoConfigureMockMvc
+class ExportIntegrationTest {
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private UserRepository userRepository;
+    @Autowired private CardRepository cardRepository;
+    @Autowired private TransferRepository transferRepository;
+    @Autowired private HistoryRepository historyRepository;
+    @Autowired private JwtService jwtService;
+    @Autowired private ObjectMapper objectMapper;
+
+    private final List<History> histories = new ArrayList<>();
+    private final List<Transfer> transfers = new ArrayList<>();
+    private final List<Card> cards = new ArrayList<>();
+    private final List<User> users = new ArrayList<>();
+
+    private String eventType;
+    private User user1;
+    private User user2;
+    private String tokenUser1;
+    private String tokenAdmin;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = String.valueOf(System.nanoTime());
+        eventType = "EXPORT_" + suffix;
+        user1 = saveUser("exp_u1_" + suffix, Role.USER);
+        user2 = saveUser("exp_u2_" + suffix, Role.USER);
+        User admin = saveUser("exp_admin_" + suffix, Role.ADMIN);
+        Card card1 = saveCard(user1);
+        Card card2 = saveCard(user2);
+
+        saveTransfer(card1, card2, "10.00", "SUCCESS");
+        saveTransfer(card1, card2, "20.00", "FAILED");
+        saveTransfer(card2, card1, "5.00", "SUCCESS");
+
+        for (int i = 0; i < 3; i++) {
+            saveHistory(user1, "Событие, \"u1\" " + i);
+        }
+        saveHistory(user2, "Событие u2");
+
+        tokenUser1 = jwtService.generateToken(user1);
+        tokenAdmin = jwtService.generateToken(admin);
+    }
+
+    @AfterEach
+    void tearDown() {
+        historyRepository.deleteAll(histories);
+        transferRepository.deleteAll(transfers);
+        cardRepository.deleteAll(cards);
+        userRepository.deleteAll(users);
+    }
+
+    @Test
+    void historyExport_ndjson_userSeesOnlyOwnRows() throws Exception {
+        String body = export("/api/history/export?eventType=" + eventType + "&userId=" + user2.getId(), tokenUser1,
+                "application/x-ndjson", "history.ndjson");
+
+        List<JsonNode> rows = parseNdjson(body);
+        assertThat(rows).hasSize(3);
+        assertThat(rows).allSatisfy(row -> assertThat(row.get("userId").asLong()).isEqualTo(user1.getId()));
+        assertThat(rows.get(0).get("eventType").asText()).isEqualTo(eventType);
+    }
+
+    @Test
+    void historyExport_csv_hasHeaderAndEscapedValues() throws Exception {
+        String body = export("/api/history/export?format=csv&eventType=" + eventType + "&userId=" + user1.getId(), tokenAdmin,
+                "text/csv", "history.csv");
+
+        String[] lines = body.split("\n");
+        assertThat(lines[0]).isEqualTo("id,eventType,eventDate,description,userId,cardId,transferId");
+        assertThat(lines).hasSize(4);
+        assertThat(lines[1]).contains("\"Событие, \"\"u1\"\" 0\"");
+    }
+
+    @Test
+    void transferExport_userGetsOwnOutgoing_adminFiltersByStatus() throws Exception {
+        List<JsonNode> own = parseNdjson(export("/api/transfers/export?userId=" + user2.getId(), tokenUser1,
+                "application/x-ndjson", "transfers.ndjson"));
+        assertThat(own).hasSize(2);
+        assertThat(own).allSatisfy(row -> assertThat(row.get("fromCardId").asLong()).isEqualTo(cards.get(0).getId()));
+
+        String csv = export("/api/transfers/export?format=csv&status=SUCCESS&userId=" + user2.getId(), tokenAdmin,
+                "text/csv", "transfers.csv");
+        String[] lines = csv.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[1]).endsWith(",SUCCESS").contains(",5.00,");
+    }
+
+    @Test
+    void export_rejectsUnknownFormat() throws Exception {
+        mockMvc.perform(get("/api/history/export?format=xml").header("Authorization", "Bearer " + tokenAdmin))
+                .andExpect(status().isBadRequest());
+    }
+
+    private String export(String url, String token, String contentType, String filename) throws Exception {
+        MvcResult started = mockMvc.perform(get(url).header("Authorization", "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", containsString(contentType)))
+                .andExpect(header().string("Content-Disposition", containsString(filename)))
+                .andExpect(content().encoding(StandardCharsets.UTF_8))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+    }
+
+    private List<JsonNode> parseNdjson(String body) throws Exception {
+        List<JsonNode> rows = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            if (!line.isBlank()) {
+                rows.add(objectMapper.readTree(line));
+            }
+        }
+        return rows;
+    }
+
+    private User saveUser(String username, Role role) {
+        User u = new User();
+        u.setName(username);
+        u.setUsername(username);
+        u.setEmail(username + "@mail.com");
+        u.setPassword("pass");
+        u.setRole(role);
+        u.setActive(true);
+        u = userRepository.save(u);
+        users.add(u);
+        return u;
+    }
+
+    private Card saveCard(User owner) {
+        Card c = new Card();
+        c.setEncryptedNumber("exp" + System.nanoTime());
+        c.setStatus(CardStatus.ACTIVE);
+        c.setExpirationDate(LocalDate.now().plusYears(1));
+        c.setBalance(BigDecimal.ZERO);
+        c.setUser(owner);
+        c = cardRepository.save(c);
+        cards.add(c);
+        return c;
+    }
+
+    private void saveTransfer(Card source, Card dest, String amount, String status) {
+        Transfer t = new Transfer();
+        t.setSourceCard(source);
+        t.setDestinationCard(dest);
+        t.setAmount(new BigDecimal(amount));
+        t.setTransferDate(LocalDateTime.now());
+        t.setStatus(status);
+        transfers.add(transferRepository.save(t));
+    }
+
+    private void saveHistory(User user, String description) {
+        History h = new History();
+        h.setEventType(eventType);
+        h.setEventDate(LocalDateTime.now());
+        h.setDescription(description);
+        h.setUser(user);
+        histories.add(historyRepository.save(h));
+    }
+}
@@ -102,7 +102,7 @@ class HistoryControllerAccessIntegrationTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.content", notNullValue()))
                 .andExpect(jsonPath("$.content.length()", is(3)))
-                .andExpect(jsonPath("$.content[*].user.id", everyItem(is(user1.getId().intValue()))));
+                .andExpect(jsonPath("$.content[*].userId", everyItem(is(user1.getId().intValue()))));
     }
 
     @Test
@@ -113,7 +113,7 @@ class HistoryControllerAccessIntegrationTest {
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.content.length()", is(3)))
-                .andExpect(jsonPath("$.content[*].user.id", everyItem(is(user1.getId().intValue()))));
+                .andExpect(jsonPath("$.content[*].userId", everyItem(is(user1.getId().intValue()))));
     }
 
     @Test
@@ -124,7 +124,7 @@ class HistoryControllerAccessIntegrationTest {
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.content.length()", is(2)))
-                .andExpect(jsonPath("$.content[*].user.id", everyItem(is(user2.getId().intValue()))));
+                .andExpect(jsonPath("$.content[*].userId", everyItem(is(user2.getId().intValue()))));
     }
 
     @Test
@@ -135,4 +135,75 @@ class HistoryControllerAccessIntegrationTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.content.length()", is(5)));
     }
+
+    @Test
+    void withTotalFalse_returnsSliceWithoutTotals() throws Exception {
+        mockMvc.perform(get("/api/history")
+                .param("size", "2")
+                .param("withTotal", "false")
+                .header("Authorization", "Bearer " + tokenAdmin)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()", is(2)))
+                .andExpect(jsonPath("$.totalElements").doesNotExist())
+                .andExpect(jsonPath("$.totalPages").doesNotExist())
+                .andExpect(jsonPath("$.last", is(false)));
+
+        mockMvc.perform(get("/api/history")
+                .param("size", "2")
+                .param("page", "2")
+                .param("withTotal", "false")
+                .header("Authorization", "Bearer " + tokenAdmin)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()", is(1)))
+                .andExpect(jsonPath("$.last", is(true)));
+    }
+
+    @Test
+    void withTotalApproximate_marksTotalAsEstimate() throws Exception {
+        mockMvc.perform(get("/api/history")
+                .param("size", "2")
+                .param("withTotal", "approximate")
+                .header("Authorization", "Bearer " + tokenUser1)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElements", is(3)))
+                .andExpect(jsonPath("$.totalPages", is(2)))
+                .andExpect(jsonPath("$.totalApproximate", is(true)));
+    }
+
+    @Test
+    void unknownWithTotalValue_isBadRequest() throws Exception {
+        mockMvc.perform(get("/api/history")
+                .param("withTotal", "maybe")
+                .header("Authorization", "Bearer " + tokenAdmin)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void historyPayload_isFlatDtoWithForeignKeyIds() throws Exception {
+        mockMvc.perform(get("/api/history")
+                .param("sort", "id")
+                .header("Authorization", "Bearer " + tokenUser1)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()", is(3)))
+                .andExpect(jsonPath("$.content[0].description", is("user1 event 0")))
+                .andExpect(jsonPath("$.content[0].userId", is(user1.getId().intValue())))
+                .andExpect(jsonPath("$.content[0].cardId", nullValue()))
+                .andExpect(jsonPath("$.content[0].user").doesNotExist())
+                .andExpect(jsonPath("$.content[0].card").doesNotExist());
+
+        mockMvc.perform(get("/api/history")
+                .param("after", "")
+                .param("size", "2")
+                .header("Authorization", "Bearer " + tokenUser1)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[*].userId", everyItem(is(user1.getId().intValue()))))
+                .andExpect(jsonPath("$.content[0].user").doesNotExist())
+                .andExpect(jsonPath("$.nextCursor", notNullValue()));
+    }
 }
@@ -1,7 +1,6 @@
 package com.example.bankcards.controller;
 
-import com.example.bankcards.entity.History;
-import com.example.bankcards.entity.User;
+import com.example.bankcards.dto.HistoryDto;
 import com.example.bankcards.security.PermissionService;
 import com.example.bankcards.service.HistoryService;
 import org.junit.jupiter.api.BeforeEach;
@@ -17,6 +16,7 @@ import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 import static org.mockito.Mockito.mock;
@@ -52,16 +52,12 @@ class HistoryControllerSecurityTest {
     @Autowired
     private PermissionService permissionService;
 
-    private History testHistory;
-    private User testUser;
+    private HistoryDto testHistory;
 
     @BeforeEach
     void setUp() {
-        testUser = new User();
-        testUser.setId(1L);
-        testHistory = new History();
-        testHistory.setId(200L);
-        testHistory.setUser(testUser);
+        Mockito.reset(historyService, permissionService);
+        testHistory = new HistoryDto(200L, "CARD_BLOCKED", LocalDateTime.now(), null, 1L, null, null);
     }
 
     @Test
@@ -91,6 +87,22 @@ class HistoryControllerSecurityTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    @WithMockUser(username = "operator", roles = {"USER"})
+    void filterHistory_shouldReturnForbidden_whenUserIdUnknown() throws Exception {
+        mockMvc.perform(get("/api/history").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isForbidden());
+        Mockito.verifyNoInteractions(historyService);
+    }
+
+    @Test
+    @WithMockUser(username = "operator", roles = {"USER"})
+    void exportHistory_shouldReturnForbidden_whenUserIdUnknown() throws Exception {
+        mockMvc.perform(get("/api/history/export"))
+                .andExpect(status().isForbidden());
+        Mockito.verifyNoInteractions(historyService);
+    }
+
     @Test
     void getHistory_shouldReturnUnauthorized_whenNoAuth() throws Exception {
         mockMvc.perform(get("/api/history/200").contentType(MediaType.APPLICATION_JSON))
@@ -0,0 +1,193 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.History;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.HistoryRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.JwtService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+class KeysetPaginationIntegrationTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CardRepository cardRepository;
+    @Autowired
+    private HistoryRepository historyRepository;
+    @Autowired
+    private JwtService jwtService;
+
+    private User owner;
+    private String tokenAdmin;
+    private final List<Card> cards = new ArrayList<>();
+    private final List<History> events = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        String suffix = String.valueOf(System.nanoTime());
+
+        owner = new User();
+        owner.setName("Keyset Owner");
+        owner.setUsername("keyset_owner_" + suffix);
+        owner.setEmail("keyset_owner_" + suffix + "@mail.com");
+        owner.setPassword("p");
+        owner.setRole(Role.USER);
+        owner.setActive(true);
+        owner = userRepository.save(owner);
+
+        User admin = new User();
+        admin.setName("Keyset Admin");
+        admin.setUsername("keyset_admin_" + suffix);
+        admin.setEmail("keyset_admin_" + suffix + "@mail.com");
+        admin.setPassword("p");
+        admin.setRole(Role.ADMIN);
+        admin.setActive(true);
+        admin = userRepository.save(admin);
+        tokenAdmin = jwtService.generateToken(admin);
+
+        // Две карты с одинаковой датой: порядок внутри группы определяет тай-брейк по id
+        LocalDate[] dates = {LocalDate.now().plusYears(2), LocalDate.now().plusYears(1),
+                LocalDate.now().plusYears(1), LocalDate.now().plusYears(3), LocalDate.now().plusYears(1)};
+        for (int i = 0; i < dates.length; i++) {
+            Card card = new Card();
+            card.setEncryptedNumber("keyset-" + suffix + "-" + i);
+            card.setMaskedNumber("**** **** **** 000" + i);
+            card.setStatus(CardStatus.ACTIVE);
+            card.setExpirationDate(dates[i]);
+            card.setBalance(BigDecimal.TEN);
+            card.setUser(owner);
+            cards.add(cardRepository.save(card));
+        }
+
+        LocalDateTime base = LocalDateTime.now().withNano(0);
+        for (int i = 0; i < 5; i++) {
+            History h = new History();
+            h.setEventType("KEYSET");
+            h.setEventDate(base.minusMinutes(i % 3));
+            h.setDescription("event " + i);
+            h.setUser(owner);
+            events.add(historyRepository.save(h));
+        }
+    }
+
+    @Test
+    void cardsCursorPagesWalkAllRowsInSortOrderWithoutTotals() throws Exception {
+        List<Long> expected = cards.stream()
+                .sorted(Comparator.comparing(Card::getExpirationDate).thenComparing(Card::getId))
+                .map(Card::getId)
+                .toList();
+
+        List<Long> seen = new ArrayList<>();
+        String after = "";
+        int pages = 0;
+        do {
+            JsonNode body = perform(get("/api/cards/user/" + owner.getId() + "/paginated")
+                    .param("size", "2")
+                    .param("sortBy", "expirationDate")
+                    .param("after", after));
+            assertThat(body.has("totalElements")).isFalse();
+            assertThat(body.has("totalPages")).isFalse();
+            assertThat(body.get("first").asBoolean()).isEqualTo(pages == 0);
+            body.get("content").forEach(c -> seen.add(c.get("id").asLong()));
+            after = body.get("nextCursor") == null ? null : body.get("nextCursor").asText();
+            assertThat(body.get("last").asBoolean()).isEqualTo(after == null);
+            pages++;
+        } while (after != null);
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(seen).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void historyCursorPagesSupportDescendingEventDate() throws Exception {
+        List<Long> expected = events.stream()
+                .sorted(Comparator.comparing(History::getEventDate).thenComparing(History::getId).reversed())
+                .map(History::getId)
+                .toList();
+
+        List<Long> seen = new ArrayList<>();
+        String after = "";
+        do {
+            JsonNode body = perform(get("/api/history")
+                    .param("userId", owner.getId().toString())
+                    .param("size", "2")
+                    .param("sort", "eventDate,desc")
+                    .param("after", after));
+            body.get("content").forEach(h -> seen.add(h.get("id").asLong()));
+            after = body.get("nextCursor") == null ? null : body.get("nextCursor").asText();
+        } while (after != null);
+
+        assertThat(seen).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void offsetModeStillReturnsTotals() throws Exception {
+        JsonNode body = perform(get("/api/history")
+                .param("userId", owner.getId().toString())
+                .param("size", "2"));
+        assertThat(body.get("totalElements").asLong()).isEqualTo(5);
+        assertThat(body.get("totalPages").asInt()).isEqualTo(3);
+    }
+
+    @Test
+    void cursorFromDifferentSortIsRejected() throws Exception {
+        JsonNode first = perform(get("/api/history")
+                .param("userId", owner.getId().toString())
+                .param("size", "2")
+                .param("sort", "eventDate,desc")
+                .param("after", ""));
+        String cursor = first.get("nextCursor").asText();
+
+        mockMvc.perform(get("/api/history")
+                        .param("userId", owner.getId().toString())
+                        .param("size", "2")
+                        .param("after", cursor)
+                        .header("Authorization", "Bearer " + tokenAdmin))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/history")
+                        .param("after", "not-a-cursor")
+                        .header("Authorization", "Bearer " + tokenAdmin))
+                .andExpect(status().isBadRequest());
+    }
+
+    private JsonNode perform(MockHttpServletRequestBuilder request) throws Exception {
+        String json = mockMvc.perform(request
+                        .header("Authorization", "Bearer " + tokenAdmin)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(json);
+    }
+}
@@ -144,6 +144,37 @@ class TransferControllerAccessIntegrationTest {
                 .andExpect(jsonPath("$", hasSize(2)));
     }
 
+    @Test
+    void userTransfers_arePagedNewestFirst() throws Exception {
+        mockMvc.perform(get("/api/transfers/user/" + user1.getId())
+                .param("size", "1")
+                .header("Authorization", "Bearer " + tokenUser1)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].amount", is(15.00)));
+        mockMvc.perform(get("/api/transfers/user/" + user1.getId())
+                .param("page", "1")
+                .param("size", "1")
+                .header("Authorization", "Bearer " + tokenUser1)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].amount", is(10.00)));
+    }
+
+    @Test
+    void statusEndpointForUser_excludesIncomingTransfers() throws Exception {
+        String token = jwtService.generateToken(user2);
+        mockMvc.perform(get("/api/transfers/status/SUCCESS")
+                .header("Authorization", "Bearer " + token)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                // у user2 один исходящий и один входящий перевод — входящий в выдачу не попадает
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].fromCardId", is(user2CardA.getId().intValue())));
+    }
+
     @Test
     void cardNotFoundReturns404() throws Exception {
         Long nonExistingId = 999999L;
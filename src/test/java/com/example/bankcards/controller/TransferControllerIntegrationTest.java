@@ -24,6 +24,7 @@ import java.math.BigDecimal;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -132,4 +133,55 @@ class TransferControllerIntegrationTest {
                 .andExpect(status().is4xxClientError())
                 .andExpect(content().string(org.hamcrest.Matchers.containsString("статус BLOCKED")));
     }
+
+    @Test
+    void transfer_repeatedWithSameIdempotencyKey_debitsOnce() throws Exception {
+        String key = java.util.UUID.randomUUID().toString();
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/api/transfers")
+                    .param("fromCardId", fromCard.getId().toString())
+                    .param("toCardId", toCard.getId().toString())
+                    .param("amount", "30.00")
+                    .param("userId", user.getId().toString())
+                    .header("Authorization", "Bearer " + jwtToken)
+                    .header("Idempotency-Key", key)
+                    .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk());
+        }
+        assertThat(cardRepository.findById(fromCard.getId()).get().getBalance()).isEqualByComparingTo("70.00");
+        assertThat(transferRepository.findAll()).hasSize(1);
+
+        // тот же ключ с другой суммой — конфликт, баланс не меняется
+        mockMvc.perform(post("/api/transfers")
+                .param("fromCardId", fromCard.getId().toString())
+                .param("toCardId", toCard.getId().toString())
+                .param("amount", "40.00")
+                .param("userId", user.getId().toString())
+                .header("Authorization", "Bearer " + jwtToken)
+                .header("Idempotency-Key", key)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isConflict());
+        assertThat(cardRepository.findById(fromCard.getId()).get().getBalance()).isEqualByComparingTo("70.00");
+    }
+
+    @Test
+    void batchTransfer_appliesValidItemsAndReportsRejected() throws Exception {
+        String body = "{\"userId\": " + user.getId() + ", \"transfers\": ["
+                + "{\"fromCardId\": " + fromCard.getId() + ", \"toCardId\": " + toCard.getId() + ", \"amount\": 60.00},"
+                + "{\"fromCardId\": " + fromCard.getId() + ", \"toCardId\": " + toCard.getId() + ", \"amount\": 60.00},"
+                + "{\"fromCardId\": " + toCard.getId() + ", \"toCardId\": " + fromCard.getId() + ", \"amount\": 10.00}]}";
+        mockMvc.perform(post("/api/transfers/batch")
+                .header("Authorization", "Bearer " + jwtToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("SUCCESS"))
+                .andExpect(jsonPath("$[1].status").value("REJECTED"))
+                .andExpect(jsonPath("$[1].errorCode").value("INSUFFICIENT_FUNDS"))
+                .andExpect(jsonPath("$[2].status").value("SUCCESS"));
+        assertThat(cardRepository.findById(fromCard.getId()).get().getBalance()).isEqualByComparingTo("50.00");
+        assertThat(cardRepository.findById(toCard.getId()).get().getBalance()).isEqualByComparingTo("100.00");
+        assertThat(transferRepository.findAll()).hasSize(2);
+        assertThat(historyRepository.findAll()).filteredOn(h -> h.getEventType().equals("TRANSFER")).hasSize(2);
+    }
 }
@@ -4,6 +4,7 @@ import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.Transfer;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.security.JwtService;
 import com.example.bankcards.security.PermissionService;
 import com.example.bankcards.security.SecurityConfig;
 import com.example.bankcards.security.SecurityUtil;
@@ -60,6 +61,9 @@ class TransferControllerSecurityTest {
         public CardRepository cardRepository() { return Mockito.mock(CardRepository.class); }
         @Bean
         public TransferFilter transferFilter() { return new TransferFilter(); }
+        // нужен JwtAuthenticationFilter, который подхватывает срез @WebMvcTest
+        @Bean
+        public JwtService jwtService() { return new JwtService(); }
     }
 
     @BeforeEach
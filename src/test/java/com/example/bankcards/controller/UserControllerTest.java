@@ -5,6 +5,7 @@ import com.example.bankcards.dto.UserDto;
 import com.example.bankcards.dto.UserMapper;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.Role;
+import com.example.bankcards.security.JwtService;
 import com.example.bankcards.service.UserService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
@@ -76,6 +77,12 @@ class UserControllerTest {
             return mock(UserMapper.class);
         }
 
+        // нужен JwtAuthenticationFilter, который подхватывает срез @WebMvcTest
+        @Bean
+        public JwtService jwtService() {
+            return new JwtService();
+        }
+
         @Bean
         public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
             http
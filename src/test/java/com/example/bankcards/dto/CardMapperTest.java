@@ -0,0 +1,61 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.repository.CardSummaryRepository.CardSummary;
+import com.example.bankcards.service.CardEncryptionService;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CardMapperTest {
+    @Test
+    void toDtoShouldUseStoredMaskWithoutDecrypting() {
+        CardEncryptionService encryptionService = Mockito.mock(CardEncryptionService.class);
+        CardMapper mapper = new CardMapper(encryptionService);
+        Card card = new Card();
+        card.setId(1L);
+        card.setEncryptedNumber("enc");
+        card.setMaskedNumber("**** **** **** 3456");
+        card.setStatus(CardStatus.ACTIVE);
+        card.setExpirationDate(LocalDate.now().plusYears(1));
+
+        CardDto dto = mapper.toDto(card);
+
+        assertEquals("**** **** **** 3456", dto.getMaskedNumber());
+        verifyNoInteractions(encryptionService);
+    }
+
+    @Test
+    void toDtoShouldFallBackToDecryptionWhenMaskMissing() {
+        CardEncryptionService encryptionService = new CardEncryptionService("1234567890abcdef");
+        CardMapper mapper = new CardMapper(encryptionService);
+        Card card = new Card();
+        card.setId(2L);
+        card.setEncryptedNumber(encryptionService.encrypt("1234567890123456"));
+        card.setStatus(CardStatus.ACTIVE);
+
+        assertEquals("**** **** **** 3456", mapper.toDto(card).getMaskedNumber());
+    }
+
+    @Test
+    void toSummaryDtoListShouldDecryptOnlyUnmaskedRows() {
+        CardEncryptionService encryptionService = new CardEncryptionService("1234567890abcdef");
+        CardMapper mapper = new CardMapper(encryptionService);
+        LocalDate expiration = LocalDate.now().plusYears(1);
+        List<CardSummary> summaries = List.of(
+                new CardSummary(1L, "**** **** **** 1111", "enc", CardStatus.ACTIVE, expiration, 7L),
+                new CardSummary(2L, null, encryptionService.encrypt("1234567890123456"), CardStatus.BLOCKED, expiration, 7L));
+
+        List<CardDto> dtos = mapper.toSummaryDtoList(summaries);
+
+        assertEquals("**** **** **** 1111", dtos.get(0).getMaskedNumber());
+        assertEquals("**** **** **** 3456", dtos.get(1).getMaskedNumber());
+        assertEquals(CardStatus.BLOCKED, dtos.get(1).getStatus());
+    }
+}
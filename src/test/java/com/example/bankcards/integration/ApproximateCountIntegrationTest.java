@@ -0,0 +1,82 @@
+package com.example.bankcards.integration;
+
+import com.example.bankcards.service.ApproximateCountService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * withTotal=approximate на PostgreSQL: без фильтра — оценка планировщика из pg_class,
+ * с фильтром — точный COUNT, переиспользуемый из кэша.
+ */
+@SpringBootTest
+@ActiveProfiles("test-db")
+@Transactional
+class ApproximateCountIntegrationTest {
+
+    @Autowired
+    private ApproximateCountService approximateCountService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void unfilteredCount_usesReltuplesWithoutCountQuery() {
+        jdbcTemplate.update("""
+            INSERT INTO users (id, name, username, email, password, role, active)
+            SELECT 800000 + g, 'Approx ' || g, 'approx_' || g, 'approx_' || g || '@example.com', 'pwd', 'USER', true
+            FROM generate_series(1, 300) g
+            """);
+        jdbcTemplate.execute("ANALYZE users");
+        long actual = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class);
+
+        long estimate = approximateCountService.estimate("users", null, () -> {
+            throw new AssertionError("COUNT не должен выполняться");
+        });
+
+        assertThat(estimate).isEqualTo(actual);
+    }
+
+    @Test
+    void unfilteredCount_onPartitionedTable_sumsPartitionEstimates() {
+        jdbcTemplate.update("""
+            INSERT INTO history (id, event_type, event_date, description)
+            SELECT 800000 + g, 'APPROX', now() - g * interval '1 day', 'approx'
+            FROM generate_series(1, 300) g
+            """);
+        // ANALYZE секционированной таблицы обходит и её секции
+        jdbcTemplate.execute("ANALYZE history");
+        long actual = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM history", Long.class);
+
+        long estimate = approximateCountService.estimate("history", null, () -> {
+            throw new AssertionError("COUNT не должен выполняться");
+        });
+
+        assertThat(estimate).isEqualTo(actual);
+    }
+
+    @Test
+    void filteredCount_isCachedPerFilter() {
+        AtomicInteger counts = new AtomicInteger();
+        String filter = "approx-filter-" + System.nanoTime();
+
+        long first = approximateCountService.estimate("cards", filter, () -> {
+            counts.incrementAndGet();
+            return 42;
+        });
+        long second = approximateCountService.estimate("cards", filter, () -> {
+            counts.incrementAndGet();
+            return 43;
+        });
+
+        assertThat(first).isEqualTo(42);
+        assertThat(second).isEqualTo(42);
+        assertThat(counts).hasValue(1);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.bankcards.integration;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.HistoryEventType;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.TransferService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Без @Transactional: события аудита уходят в очередь только после коммита перевода
+@SpringBootTest(properties = {"audit.mode=ASYNC", "audit.flush-interval=PT0.05S"})
+@ActiveProfiles("test")
+class AuditTrailIntegrationTest {
+
+    @Autowired
+    private TransferService transferService;
+    @Autowired
+    private CardRepository cardRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User owner;
+    private final List<Long> cardIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        String suffix = String.valueOf(System.nanoTime());
+        owner = userRepository.save(new User("Audit Owner", "audit_" + suffix, "audit_" + suffix + "@example.com", "pwd", Role.USER));
+        for (int i = 0; i < 2; i++) {
+            Card card = new Card();
+            card.setUser(owner);
+            card.setEncryptedNumber("audit_enc_" + suffix + "_" + i);
+            card.setStatus(CardStatus.ACTIVE);
+            card.setExpirationDate(LocalDate.now().plusYears(1));
+            card.setBalance(new BigDecimal("100.00"));
+            cardIds.add(cardRepository.save(card).getId());
+        }
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                "admin", null, List.of(new SimpleGrantedAuthority("ROLE_ADMIN"))));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        jdbcTemplate.update("DELETE FROM history WHERE card_id IN (?, ?)", cardIds.get(0), cardIds.get(1));
+        jdbcTemplate.update("DELETE FROM transfers WHERE from_card_id IN (?, ?)", cardIds.get(0), cardIds.get(1));
+        cardRepository.deleteAllById(cardIds);
+        userRepository.deleteById(owner.getId());
+    }
+
+    @Test
+    void committedTransfer_isAuditedInBackground_rejectedIsNot() throws Exception {
+        Transfer transfer = transferService.createTransfer(cardIds.get(0), cardIds.get(1), new BigDecimal("30.00"), owner.getId());
+        assertThatThrownBy(() -> transferService.createTransfer(cardIds.get(0), cardIds.get(1), new BigDecimal("500.00"), owner.getId()))
+                .isInstanceOf(InsufficientFundsException.class);
+
+        List<Map<String, Object>> rows = awaitHistoryRows(1);
+        assertThat(rows).hasSize(1);
+        Map<String, Object> row = rows.get(0);
+        assertThat(row.get("EVENT_TYPE")).isEqualTo(HistoryEventType.TRANSFER);
+        assertThat(((Number) row.get("TRANSFER_ID")).longValue()).isEqualTo(transfer.getId());
+        assertThat(((Number) row.get("USER_ID")).longValue()).isEqualTo(owner.getId());
+        assertThat(((Number) row.get("CARD_ID")).longValue()).isEqualTo(cardIds.get(0));
+    }
+
+    private List<Map<String, Object>> awaitHistoryRows(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        List<Map<String, Object>> rows;
+        do {
+            Thread.sleep(50);
+            rows = jdbcTemplate.queryForList("SELECT event_type, transfer_id, user_id, card_id FROM history WHERE card_id = ?",
+                    cardIds.get(0));
+        } while (rows.size() < expected && System.currentTimeMillis() < deadline);
+        // ещё один интервал сброса: лишних записей (от отклонённого перевода) не появляется
+        Thread.sleep(200);
+        return jdbcTemplate.queryForList("SELECT event_type, transfer_id, user_id, card_id FROM history WHERE card_id = ?",
+                cardIds.get(0));
+    }
+}
@@ -6,8 +6,10 @@ import com.example.bankcards.entity.Role;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.HistoryRepository;
+import com.example.bankcards.repository.JobLeaseRepository;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.scheduler.CardExpirationScheduler;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,7 +21,8 @@ import java.time.LocalDate;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
-@SpringBootTest
+// маленькая порция, чтобы проход шёл несколькими keyset-порциями
+@SpringBootTest(properties = "card.expiration.chunk-size=2")
 @ActiveProfiles("test")
 @Transactional
 class CardExpirationSchedulerIntegrationTest {
@@ -33,6 +36,12 @@ class CardExpirationSchedulerIntegrationTest {
     @Autowired
     private CardExpirationScheduler scheduler;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private JobLeaseRepository jobLeaseRepository;
+
+    private User user;
     private Card expiringCard;
 
     @BeforeEach
@@ -45,6 +54,7 @@ class CardExpirationSchedulerIntegrationTest {
         u.setEmail("scheduler@example.com");
         u.setPassword("pwd");
         u = userRepository.save(u);
+        user = u;
 
         expiringCard = new Card();
         expiringCard.setUser(u);
@@ -62,5 +72,40 @@ class CardExpirationSchedulerIntegrationTest {
         assertThat(historyRepository.findAll())
                 .anyMatch(h -> h.getCard() != null && h.getCard().getId().equals(expiringCard.getId()) && "CARD_EXPIRED".equals(h.getEventType()));
     }
-}
 
+    @Test
+    void scheduled_run_expires_cards_through_leased_shards() {
+        scheduler.expireCards();
+        assertThat(cardRepository.findById(expiringCard.getId()).orElseThrow().getStatus()).isEqualTo(CardStatus.EXPIRED);
+        assertThat(jobLeaseRepository.findAll()).anyMatch(l -> l.getName().startsWith("card-expiration#"));
+    }
+
+    @Test
+    void scheduler_processes_all_chunks_and_skips_non_candidates() {
+        double before = meterRegistry.get("card.expiration.cards").counter().count();
+        for (int i = 0; i < 4; i++) {
+            card("sched_more_" + i, CardStatus.ACTIVE, LocalDate.now().minusDays(i + 1));
+        }
+        Card blocked = card("sched_blocked", CardStatus.BLOCKED, LocalDate.now().minusDays(1));
+        Card valid = card("sched_valid", CardStatus.ACTIVE, LocalDate.now().plusDays(1));
+
+        scheduler.triggerForTests();
+
+        assertThat(cardRepository.findAll()).filteredOn(c -> c.getEncryptedNumber().startsWith("sched_more_"))
+                .allMatch(c -> c.getStatus() == CardStatus.EXPIRED);
+        assertThat(cardRepository.findById(blocked.getId()).orElseThrow().getStatus()).isEqualTo(CardStatus.BLOCKED);
+        assertThat(cardRepository.findById(valid.getId()).orElseThrow().getStatus()).isEqualTo(CardStatus.ACTIVE);
+        assertThat(historyRepository.findAll()).filteredOn(h -> "CARD_EXPIRED".equals(h.getEventType())).hasSize(5);
+        assertThat(meterRegistry.get("card.expiration.cards").counter().count() - before).isEqualTo(5.0);
+        assertThat(meterRegistry.get("card.expiration.chunk").timer().count()).isGreaterThanOrEqualTo(3);
+    }
+
+    private Card card(String encryptedNumber, CardStatus status, LocalDate expirationDate) {
+        Card card = new Card();
+        card.setUser(user);
+        card.setEncryptedNumber(encryptedNumber);
+        card.setStatus(status);
+        card.setExpirationDate(expirationDate);
+        return cardRepository.save(card);
+    }
+}
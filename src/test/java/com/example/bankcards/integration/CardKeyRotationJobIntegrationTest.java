@@ -0,0 +1,68 @@
+package com.example.bankcards.integration;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.scheduler.CardKeyRotationJob;
+import com.example.bankcards.service.CardEncryptionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Без @Transactional: порции перешифровки коммитятся в собственных транзакциях воркеров
+@SpringBootTest
+@ActiveProfiles("test")
+class CardKeyRotationJobIntegrationTest {
+
+    @Autowired
+    private CardRepository cardRepository;
+    @Autowired
+    private CardEncryptionService cardEncryptionService;
+    @Autowired
+    private CardKeyRotationJob rotationJob;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Card legacyCard;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec("1234567890123456".getBytes(), "AES"));
+        legacyCard = new Card();
+        legacyCard.setEncryptedNumber(Base64.getEncoder().encodeToString(cipher.doFinal("4000001234567899".getBytes())));
+        legacyCard.setStatus(CardStatus.ACTIVE);
+        legacyCard.setExpirationDate(LocalDate.now().plusYears(1));
+        legacyCard.setBalance(new BigDecimal("10.00"));
+        legacyCard = cardRepository.save(legacyCard);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cardRepository.deleteById(legacyCard.getId());
+    }
+
+    @Test
+    void rotate_reencrypts_legacy_number_with_active_key_and_keeps_other_columns() {
+        rotationJob.rotate();
+
+        Card refreshed = cardRepository.findById(legacyCard.getId()).orElseThrow();
+        assertThat(cardEncryptionService.isCurrent(refreshed.getEncryptedNumber())).isTrue();
+        assertThat(cardEncryptionService.decrypt(refreshed.getEncryptedNumber())).isEqualTo("4000001234567899");
+        assertThat(refreshed.getBalance()).isEqualByComparingTo("10.00");
+        assertThat(meterRegistry.get("card.key_rotation.rotated").functionCounter().count()).isGreaterThanOrEqualTo(1);
+        assertThat(meterRegistry.get("card.key_rotation.remaining").gauge().value()).isZero();
+    }
+}
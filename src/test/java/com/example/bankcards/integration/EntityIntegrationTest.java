@@ -102,8 +102,8 @@ class EntityIntegrationTest {
 
         assertThat(savedTransfer.getId()).isNotNull();
         assertThat(savedTransfer.getAmount()).isEqualByComparingTo(new BigDecimal("100.50"));
-        assertThat(savedTransfer.getSourceCard().getEncryptedNumber()).isEqualTo(cardEncryptionService.encrypt("1111222233334444"));
-        assertThat(savedTransfer.getDestinationCard().getEncryptedNumber()).isEqualTo(cardEncryptionService.encrypt("5555666677778888"));
+        assertThat(cardEncryptionService.decrypt(savedTransfer.getSourceCard().getEncryptedNumber())).isEqualTo("1111222233334444");
+        assertThat(cardEncryptionService.decrypt(savedTransfer.getDestinationCard().getEncryptedNumber())).isEqualTo("5555666677778888");
         assertThat(savedTransfer.getStatus()).isEqualTo("COMPLETED");
 
         List<Transfer> sourceTransfers = transferRepository.findBySourceCard(sourceCard);
@@ -212,7 +212,7 @@ class EntityIntegrationTest {
 
         Optional<User> foundByUsername = userRepository.findByUsername("querytest");
         Optional<User> foundByEmail = userRepository.findByEmail("query@example.com");
-        Optional<Card> foundByNumber = cardRepository.findByEncryptedNumber(cardEncryptionService.encrypt("4444555566667777"));
+        Optional<Card> foundByNumber = cardRepository.findByEncryptedNumber(card.getEncryptedNumber());
         List<Card> foundByUserId = cardRepository.findByUserIdAndStatus(user.getId(), CardStatus.ACTIVE);
 
         assertThat(foundByUsername).isPresent();
@@ -225,6 +225,6 @@ class EntityIntegrationTest {
         assertThat(foundByNumber.get().getUser().getId()).isEqualTo(user.getId());
 
         assertThat(foundByUserId).hasSize(1);
-        assertThat(foundByUserId.get(0).getEncryptedNumber()).isEqualTo(cardEncryptionService.encrypt("4444555566667777"));
+        assertThat(cardEncryptionService.decrypt(foundByUserId.get(0).getEncryptedNumber())).isEqualTo("4444555566667777");
     }
 }
@@ -0,0 +1,261 @@
+package com.example.bankcards.integration;
+
+import com.example.bankcards.dto.HistoryDto;
+import com.example.bankcards.dto.HistoryFilterDto;
+import com.example.bankcards.scheduler.HistoryArchiveJob;
+import com.example.bankcards.service.HistoryArchive;
+import com.example.bankcards.service.HistoryService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Холодный архив истории на PostgreSQL: перенос старых строк в сегменты с удалением из БД
+ * и чтение архива в HistoryService, когда dateFrom раньше границы архива.
+ */
+@SpringBootTest(properties = {
+        "history.archive.dir=" + HistoryArchiveIntegrationTest.ARCHIVE_DIR,
+        "history.archive.segment-rows=2",
+        "history.archive.delete-chunk-size=1",
+        "history.archive.max-window=10"})
+@ActiveProfiles("test-db")
+@Transactional
+class HistoryArchiveIntegrationTest {
+
+    static final String ARCHIVE_DIR = "target/history-archive-test";
+
+    private static final long USER_ID = 910001L;
+    private static final long OTHER_USER_ID = 910002L;
+
+    @Autowired
+    private HistoryArchiveJob job;
+    @Autowired
+    private HistoryArchive historyArchive;
+    @Autowired
+    private HistoryService historyService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        FileSystemUtils.deleteRecursively(Path.of(ARCHIVE_DIR));
+        Files.createDirectories(Path.of(ARCHIVE_DIR));
+        for (long id : new long[]{USER_ID, OTHER_USER_ID}) {
+            jdbcTemplate.update("""
+                    INSERT INTO users (id, name, username, email, password, role, active)
+                    VALUES (?, 'Archive', 'archive_' || ?, 'archive_' || ? || '@example.com', 'pwd', 'USER', true)
+                    """, id, id, id);
+        }
+        insertHistory(910101L, "TRANSFER", now.minusYears(2), USER_ID);
+        insertHistory(910102L, "CARD_BLOCKED", now.minusYears(2).plusDays(1), USER_ID);
+        insertHistory(910103L, "TRANSFER", now.minusYears(2).plusDays(2), USER_ID);
+        insertHistory(910104L, "TRANSFER", now.minusYears(2), OTHER_USER_ID);
+        insertHistory(910105L, "TRANSFER", now.minusDays(1), USER_ID);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(Path.of(ARCHIVE_DIR));
+    }
+
+    @Test
+    void archive_writesSegmentsAndDeletesOldRows() {
+        HistoryArchiveJob.Result result = job.archive(LocalDate.now());
+
+        assertThat(result.rows()).isGreaterThanOrEqualTo(4);
+        assertThat(result.segments()).isGreaterThanOrEqualTo(2);
+        assertThat(historyArchive.segments()).allMatch(HistoryArchive.Segment::purged);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM history WHERE id BETWEEN 910101 AND 910104", Integer.class)).isZero();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM history WHERE id = 910105", Integer.class)).isEqualTo(1);
+
+        // повторный запуск переносить нечего
+        assertThat(job.archive(LocalDate.now()).rows()).isZero();
+    }
+
+    @Test
+    void findByFilter_mergesArchiveWithDatabase() {
+        job.archive(LocalDate.now());
+        HistoryFilterDto filter = new HistoryFilterDto();
+        filter.setUserId(USER_ID);
+        filter.setDateFrom(now.minusYears(3));
+        Sort byDateDesc = Sort.by(Sort.Direction.DESC, "eventDate");
+
+        Page<HistoryDto> first = historyService.findByFilter(filter, PageRequest.of(0, 2, byDateDesc));
+        Page<HistoryDto> second = historyService.findByFilter(filter, PageRequest.of(1, 2, byDateDesc));
+
+        assertThat(first.getTotalElements()).isEqualTo(4);
+        assertThat(first.getContent()).extracting(HistoryDto::getId).containsExactly(910105L, 910103L);
+        assertThat(second.getContent()).extracting(HistoryDto::getId).containsExactly(910102L, 910101L);
+
+        filter.setEventType("CARD_BLOCKED");
+        assertThat(historyService.findByFilter(filter, PageRequest.of(0, 10)).getContent())
+                .extracting(HistoryDto::getId).containsExactly(910102L);
+    }
+
+    @Test
+    void findByFilter_recentPeriod_doesNotReadArchive() {
+        job.archive(LocalDate.now());
+        HistoryFilterDto filter = new HistoryFilterDto();
+        filter.setUserId(USER_ID);
+        filter.setDateFrom(now.minusDays(7));
+
+        assertThat(historyArchive.covers(filter)).isFalse();
+        Page<HistoryDto> page = historyService.findByFilter(filter, PageRequest.of(0, 10));
+        assertThat(page.getContent()).extracting(HistoryDto::getId).containsExactly(910105L);
+    }
+
+    @Test
+    void findByFilter_withoutDateFrom_readsDatabaseOnly() {
+        job.archive(LocalDate.now());
+        HistoryFilterDto filter = new HistoryFilterDto();
+        filter.setUserId(USER_ID);
+
+        assertThat(historyArchive.covers(filter)).isFalse();
+        Page<HistoryDto> page = historyService.findByFilter(filter, PageRequest.of(0, 10));
+        assertThat(page.getContent()).extracting(HistoryDto::getId).containsExactly(910105L);
+        assertThat(historyService.countByFilter(filter)).isEqualTo(1);
+    }
+
+    @Test
+    void sliceAndCount_matchPageWithArchive() {
+        job.archive(LocalDate.now());
+        HistoryFilterDto filter = new HistoryFilterDto();
+        filter.setUserId(USER_ID);
+        filter.setDateFrom(now.minusYears(3));
+        Sort byDateDesc = Sort.by(Sort.Direction.DESC, "eventDate");
+
+        Slice<HistoryDto> first = historyService.findSliceByFilter(filter, PageRequest.of(0, 3, byDateDesc));
+        Slice<HistoryDto> last = historyService.findSliceByFilter(filter, PageRequest.of(1, 3, byDateDesc));
+
+        assertThat(first.getContent()).extracting(HistoryDto::getId).containsExactly(910105L, 910103L, 910102L);
+        assertThat(first.hasNext()).isTrue();
+        assertThat(last.getContent()).extracting(HistoryDto::getId).containsExactly(910101L);
+        assertThat(last.hasNext()).isFalse();
+        assertThat(historyService.countByFilter(filter))
+                .isEqualTo(historyService.findByFilter(filter, PageRequest.of(0, 2)).getTotalElements())
+                .isEqualTo(4);
+    }
+
+    @Test
+    void archivedPeriod_deepPagesCursorAndExportAreRejected() {
+        job.archive(LocalDate.now());
+        HistoryFilterDto filter = new HistoryFilterDto();
+        filter.setUserId(USER_ID);
+        filter.setDateFrom(now.minusYears(3));
+
+        assertThatThrownBy(() -> historyService.findByFilter(filter, PageRequest.of(5, 2)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> historyService.findByFilterAfter(filter, Sort.by("id"), ScrollPosition.keyset(), 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> historyService.checkExportable(filter))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        filter.setDateFrom(null);
+        historyService.checkExportable(filter);
+    }
+
+    @Test
+    void archivedPeriod_textSortIsRejected() {
+        job.archive(LocalDate.now());
+        HistoryFilterDto filter = new HistoryFilterDto();
+        filter.setUserId(USER_ID);
+        filter.setDateFrom(now.minusYears(3));
+
+        // порядок строк в БД задаёт её collation, в архиве — String.compareTo: слияние было бы несогласованным
+        assertThatThrownBy(() -> historyService.findByFilter(filter, PageRequest.of(0, 2, Sort.by("eventType"))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("eventType");
+        assertThatThrownBy(() -> historyService.findSliceByFilter(filter, PageRequest.of(0, 2, Sort.by("description"))))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        filter.setDateFrom(now.minusDays(7));
+        assertThat(historyService.findByFilter(filter, PageRequest.of(0, 2, Sort.by("eventType"))).getContent())
+                .extracting(HistoryDto::getId).containsExactly(910105L);
+    }
+
+    @Test
+    void enabledArchive_requiresExistingDirectory() {
+        Path missing = Path.of(ARCHIVE_DIR, "not-mounted");
+
+        assertThatThrownBy(() -> new HistoryArchive(null, null, missing, true))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("не найден");
+        assertThat(new HistoryArchive(null, null, Path.of(ARCHIVE_DIR), true).segments()).isEmpty();
+    }
+
+    @Test
+    void segments_seeIndexPublishedByAnotherNodeWithinSameDirectoryMtime() throws IOException {
+        Path dir = Path.of(ARCHIVE_DIR);
+        FileTime directoryMtime = Files.getLastModifiedTime(dir);
+        assertThat(historyArchive.segments()).isEmpty();
+
+        // другой узел публикует сегмент; на сетевом томе mtime каталога может не измениться
+        HistoryArchive otherNode = new HistoryArchive(null, objectMapper, dir, false);
+        try (HistoryArchive.SegmentWriter writer = otherNode.newSegment(now.minusYears(1))) {
+            writer.write(new HistoryDto(910101L, "TRANSFER", now.minusYears(2), "archived", USER_ID, null, null));
+            writer.publish();
+        }
+        Files.setLastModifiedTime(dir, directoryMtime);
+
+        assertThat(historyArchive.segments()).singleElement()
+                .matches(segment -> segment.minId() == 910101L);
+    }
+
+    @Test
+    void unpurgedSegment_isNotReadTwiceAndIsPurgedOnNextRun() {
+        // сегмент опубликован, но удаление строк из БД не началось (как после остановки узла)
+        HistoryArchive.Segment segment;
+        try (HistoryArchive.SegmentWriter writer = historyArchive.newSegment(now.minusYears(1))) {
+            writer.write(new HistoryDto(910101L, "TRANSFER", now.minusYears(2), "archived", USER_ID, null, null));
+            segment = writer.publish();
+        }
+        HistoryFilterDto filter = new HistoryFilterDto();
+        filter.setUserId(USER_ID);
+        filter.setDateFrom(now.minusYears(3));
+
+        assertThat(historyService.findByFilter(filter, PageRequest.of(0, 10)).getContent())
+                .extracting(HistoryDto::getId).containsOnlyOnce(910101L);
+
+        job.archive(LocalDate.now());
+
+        assertThat(historyArchive.segments())
+                .filteredOn(s -> s.file().equals(segment.file()))
+                .singleElement()
+                .matches(HistoryArchive.Segment::purged);
+        assertThat(historyService.findByFilter(filter, PageRequest.of(0, 10)).getTotalElements()).isEqualTo(4);
+    }
+
+    private void insertHistory(long id, String eventType, LocalDateTime eventDate, long userId) {
+        jdbcTemplate.update("INSERT INTO history (id, event_type, event_date, description, user_id) VALUES (?, ?, ?, ?, ?)",
+                id, eventType, eventDate, "archive test", userId);
+    }
+}
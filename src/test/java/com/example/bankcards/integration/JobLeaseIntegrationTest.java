@@ -0,0 +1,115 @@
+package com.example.bankcards.integration;
+
+import com.example.bankcards.repository.JobLeaseRepository;
+import com.example.bankcards.scheduler.JobLeaseService;
+import com.example.bankcards.scheduler.JobLeaseService.Lease;
+import com.example.bankcards.scheduler.ShardedJobRunner;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class JobLeaseIntegrationTest {
+
+    @Autowired
+    private JobLeaseRepository leaseRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void lease_isExclusiveUntilReleased() {
+        JobLeaseService nodeA = node("node-a");
+        JobLeaseService nodeB = node("node-b");
+        String job = "test-job-" + UUID.randomUUID();
+
+        Optional<Lease> lease = nodeA.tryAcquire(job, Duration.ofMinutes(10));
+        assertThat(lease).isPresent();
+        assertThat(nodeB.tryAcquire(job, Duration.ofMinutes(10))).isEmpty();
+        assertThat(nodeA.tryAcquire(job, Duration.ofMinutes(10))).isEmpty();
+
+        nodeA.release(lease.get(), Duration.ZERO);
+        assertThat(nodeB.tryAcquire(job, Duration.ofMinutes(10))).isPresent();
+        assertThat(leaseRepository.findById(job).orElseThrow().getOwner()).isEqualTo("node-b");
+    }
+
+    @Test
+    void lease_ofCrashedNode_expiresAfterLockAtMostFor() throws InterruptedException {
+        String job = "test-job-" + UUID.randomUUID();
+        assertThat(node("node-a").tryAcquire(job, Duration.ofMillis(20))).isPresent();
+        Thread.sleep(50);
+        assertThat(node("node-b").tryAcquire(job, Duration.ofMinutes(10))).isPresent();
+    }
+
+    @Test
+    void lease_heldForLockAtLeastForAfterRelease() {
+        JobLeaseService nodeA = node("node-a");
+        String job = "test-job-" + UUID.randomUUID();
+        Lease lease = nodeA.tryAcquire(job, Duration.ofMinutes(10)).orElseThrow();
+        nodeA.release(lease, Duration.ofMinutes(5));
+        assertThat(node("node-b").tryAcquire(job, Duration.ofMinutes(10))).isEmpty();
+    }
+
+    @Test
+    void purgeExpired_removesOnlyLongExpiredLeases() throws InterruptedException {
+        JobLeaseService nodeA = node("node-a");
+        String stale = "test-stale#10:" + UUID.randomUUID();
+        String active = "test-active-" + UUID.randomUUID();
+        assertThat(nodeA.tryAcquire(stale, Duration.ofMillis(10))).isPresent();
+        assertThat(nodeA.tryAcquire(active, Duration.ofMinutes(10))).isPresent();
+        Thread.sleep(50);
+
+        assertThat(nodeA.purgeExpired(Duration.ofMillis(20))).isGreaterThanOrEqualTo(1);
+
+        assertThat(leaseRepository.existsById(stale)).isFalse();
+        assertThat(leaseRepository.existsById(active)).isTrue();
+        // удалённая аренда захватывается заново вставкой
+        assertThat(node("node-b").tryAcquire(stale, Duration.ofMinutes(10))).isPresent();
+    }
+
+    @Test
+    void sharded_rangesCoverIdsOnceAcrossNodes() {
+        String job = "test-sharded-" + UUID.randomUUID();
+        ShardedJobRunner runnerA = new ShardedJobRunner(node("node-a"), true);
+        ShardedJobRunner runnerB = new ShardedJobRunner(node("node-b"), true);
+        List<long[]> rangesA = new ArrayList<>();
+        List<long[]> rangesB = new ArrayList<>();
+
+        long processedA = runnerA.runSharded(job, 5, 37, 10, Duration.ofMinutes(10), Duration.ofMinutes(5),
+                (from, to) -> { rangesA.add(new long[]{from, to}); return 1; });
+        long processedB = runnerB.runSharded(job, 5, 37, 10, Duration.ofMinutes(10), Duration.ofMinutes(5),
+                (from, to) -> { rangesB.add(new long[]{from, to}); return 1; });
+
+        assertThat(processedA).isEqualTo(4);
+        assertThat(rangesA).extracting(r -> r[0]).containsExactlyInAnyOrder(0L, 10L, 20L, 30L);
+        assertThat(rangesA).allMatch(r -> r[1] == r[0] + 9);
+        // шарды ещё заняты узлом A (lock-at-least-for)
+        assertThat(processedB).isZero();
+        assertThat(rangesB).isEmpty();
+    }
+
+    @Test
+    void exclusive_skipsWhenAnotherNodeHoldsLease() {
+        String job = "test-exclusive-" + UUID.randomUUID();
+        assertThat(node("node-a").tryAcquire(job, Duration.ofMinutes(10))).isPresent();
+        boolean[] ran = {false};
+        boolean executed = new ShardedJobRunner(node("node-b"), true)
+                .runExclusively(job, Duration.ofMinutes(10), Duration.ZERO, () -> ran[0] = true);
+        assertThat(executed).isFalse();
+        assertThat(ran[0]).isFalse();
+    }
+
+    private JobLeaseService node(String nodeId) {
+        return new JobLeaseService(leaseRepository, transactionManager, nodeId);
+    }
+}
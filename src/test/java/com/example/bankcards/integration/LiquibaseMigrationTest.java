@@ -42,6 +42,25 @@ class LiquibaseMigrationTest {
         );
     }
 
+    @Test
+    void shouldHavePooledIdSequences() {
+        String query = """
+            SELECT sequence_name, increment
+            FROM information_schema.sequences
+            WHERE sequence_schema = 'public'
+            """;
+
+        Map<String, String> increments = new java.util.HashMap<>();
+        jdbcTemplate.queryForList(query).forEach(row ->
+                increments.put((String) row.get("sequence_name"), String.valueOf(row.get("increment"))));
+
+        // шаг совпадает с allocationSize у @SequenceGenerator, иначе Hibernate не стартует
+        assertThat(increments).containsEntry("users_seq", "50")
+                .containsEntry("cards_seq", "50")
+                .containsEntry("transfers_seq", "50")
+                .containsEntry("history_seq", "50");
+    }
+
     @Test
     void shouldHaveCorrectUsersTableStructure() {
         String query = """
@@ -75,13 +94,17 @@ class LiquibaseMigrationTest {
 
         List<Map<String, Object>> columns = jdbcTemplate.queryForList(query);
 
-        assertThat(columns).hasSize(6); // Было 5, стало 6 из-за balance
+        assertThat(columns).hasSize(10); // 6 + pan_hash/last4_hash (blind index) + masked_number + version
         assertThat(columns.stream().anyMatch(col -> "id".equals(col.get("column_name")))).isTrue();
         assertThat(columns.stream().anyMatch(col -> "encrypted_number".equals(col.get("column_name")))).isTrue();
         assertThat(columns.stream().anyMatch(col -> "status".equals(col.get("column_name")))).isTrue();
         assertThat(columns.stream().anyMatch(col -> "expiration_date".equals(col.get("column_name")))).isTrue();
         assertThat(columns.stream().anyMatch(col -> "balance".equals(col.get("column_name")))).isTrue(); // Новое поле
         assertThat(columns.stream().anyMatch(col -> "user_id".equals(col.get("column_name")))).isTrue();
+        assertThat(columns.stream().anyMatch(col -> "pan_hash".equals(col.get("column_name")))).isTrue();
+        assertThat(columns.stream().anyMatch(col -> "last4_hash".equals(col.get("column_name")))).isTrue();
+        assertThat(columns.stream().anyMatch(col -> "masked_number".equals(col.get("column_name")))).isTrue();
+        assertThat(columns.stream().anyMatch(col -> "version".equals(col.get("column_name")))).isTrue();
     }
 
     @Test
@@ -0,0 +1,88 @@
+package com.example.bankcards.integration;
+
+import com.example.bankcards.scheduler.PartitionMaintenanceJob;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Месячные секции history/transfers на PostgreSQL: создание заранее с переносом строк из секции _default
+ * и снятие секций старше срока хранения. DDL выполняется в транзакции теста и откатывается вместе с ней.
+ */
+@SpringBootTest(properties = "partition.retention.history-months=24")
+@ActiveProfiles("test-db")
+@Transactional
+class PartitionMaintenanceJobIntegrationTest {
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    @Autowired
+    private PartitionMaintenanceJob job;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void tablesArePartitionedByMonth() {
+        YearMonth current = YearMonth.now();
+
+        assertThat(partitions("history")).contains("history_default", "history_p" + current.format(SUFFIX),
+                "history_p" + current.plusMonths(3).format(SUFFIX));
+        assertThat(partitions("transfers")).contains("transfers_default", "transfers_p" + current.format(SUFFIX));
+    }
+
+    @Test
+    void maintain_premakesPartitionsAndMovesRowsFromDefault() {
+        YearMonth future = YearMonth.now().plusYears(5);
+        jdbcTemplate.update("INSERT INTO history (id, event_type, event_date, description) VALUES (?, 'FUTURE', ?, 'future')",
+                900001L, future.plusMonths(1).atDay(15).atStartOfDay());
+        assertThat(countIn("history_default", 900001L)).isEqualTo(1);
+
+        PartitionMaintenanceJob.Result result = job.maintain(future.atDay(10));
+
+        // текущий месяц + 3 вперёд для каждой из двух таблиц
+        assertThat(result.created()).isEqualTo(8);
+        String moved = "history_p" + future.plusMonths(1).format(SUFFIX);
+        assertThat(partitions("history")).contains(moved, "history_p" + future.plusMonths(3).format(SUFFIX));
+        assertThat(partitions("transfers")).contains("transfers_p" + future.format(SUFFIX));
+        assertThat(countIn("history_default", 900001L)).isZero();
+        assertThat(countIn(moved, 900001L)).isEqualTo(1);
+
+        // повторный запуск ничего не создаёт
+        assertThat(job.maintain(future.atDay(10)).created()).isZero();
+    }
+
+    @Test
+    void maintain_detachesHistoryPartitionsOlderThanRetention() {
+        YearMonth current = YearMonth.now();
+        String old = "history_p" + current.format(SUFFIX);
+
+        // срок хранения истории 24 месяца (свойство теста), переводы хранятся без ограничения
+        PartitionMaintenanceJob.Result result = job.maintain(current.plusMonths(30).atDay(1));
+
+        assertThat(result.removed()).isGreaterThan(0);
+        assertThat(partitions("history")).doesNotContain(old);
+        assertThat(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, old)).isTrue();
+        assertThat(partitions("transfers")).contains("transfers_p" + current.format(SUFFIX));
+    }
+
+    private List<String> partitions(String table) {
+        return jdbcTemplate.queryForList("""
+                SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = ?::regclass
+                """, String.class, table);
+    }
+
+    private int countIn(String table, long id) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE id = ?", Integer.class, id);
+    }
+}
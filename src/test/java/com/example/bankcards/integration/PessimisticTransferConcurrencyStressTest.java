@@ -0,0 +1,8 @@
+package com.example.bankcards.integration;
+
+import org.springframework.test.context.TestPropertySource;
+
+// Тот же сценарий в режиме SELECT ... FOR UPDATE: проверяет отсутствие deadlock при встречных переводах
+@TestPropertySource(properties = "transfer.locking.mode=PESSIMISTIC")
+class PessimisticTransferConcurrencyStressTest extends TransferConcurrencyStressTest {
+}
@@ -0,0 +1,158 @@
+package com.example.bankcards.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Планы горячих запросов репозиториев используют индексы из 19_add_query_indexes, 20_add_owner_name_search_indexes
+ * и 21_add_transfers_status_date_index. transfers и history секционированы по месяцам (22_partition_history_and_transfers):
+ * в плане видны секционные копии индекса, они находятся через pg_inherits.
+ * Карты заполняются синтетическими данными (откатываются вместе с транзакцией теста) и по ним
+ * собирается статистика; последовательное сканирование отключается, так как таблицы всё равно
+ * малы, — проверяется, что подходящий индекс есть и планировщик выбирает именно его.
+ */
+@SpringBootTest
+@ActiveProfiles("test-db")
+@Transactional
+class QueryIndexUsageTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seedAndDisableSeqScan() {
+        jdbcTemplate.update("""
+            INSERT INTO users (id, name, username, email, password, role, active)
+            SELECT 900000 + g, 'Explain ' || g, 'explain_' || g, 'explain_' || g || '@example.com', 'pwd', 'USER', true
+            FROM generate_series(1, 50) g
+            """);
+        jdbcTemplate.update("""
+            INSERT INTO cards (id, encrypted_number, status, expiration_date, balance, user_id, version)
+            SELECT 900000 + g, 'explain_enc_' || g,
+                   CASE WHEN g % 10 = 0 THEN 'BLOCKED' WHEN g % 10 = 1 THEN 'EXPIRED' ELSE 'ACTIVE' END,
+                   CURRENT_DATE + (g % 1000) - 10, 0, 900001 + g % 50, 0
+            FROM generate_series(1, 5000) g
+            """);
+        jdbcTemplate.execute("ANALYZE cards");
+        jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+    }
+
+    @Test
+    void cardsByUserAndStatus_useCompositeIndex() {
+        assertThat(explain("SELECT * FROM cards WHERE user_id = 900001 AND status = 'ACTIVE'"))
+                .contains("idx_cards_user_id_status");
+    }
+
+    @Test
+    void expirationCandidates_usePartialIndex() {
+        // keyset-порция CardExpirationScheduler (findExpiringAfter)
+        assertThat(explain("SELECT id, user_id, expiration_date FROM cards WHERE id > 0 AND id <= 1000000 "
+                + "AND status = 'ACTIVE' AND expiration_date < CURRENT_DATE ORDER BY id LIMIT 500"))
+                .contains("idx_cards_active_expiration");
+    }
+
+    @Test
+    void transfersByCard_useBothCardIndexes() {
+        String plan = explain("SELECT * FROM transfers WHERE from_card_id = 1 OR to_card_id = 1");
+        assertUsesIndex(plan, "idx_transfers_from_card_id_date");
+        assertUsesIndex(plan, "idx_transfers_to_card_id_date");
+    }
+
+    @Test
+    void historyByUserOrderedByDate_needsNoSort() {
+        String plan = explain("SELECT * FROM history WHERE user_id = 1 ORDER BY event_date DESC LIMIT 20");
+        assertUsesIndex(plan, "idx_history_user_id_event_date");
+        // секции упорядочены по event_date и сливаются Merge Append без узла Sort
+        assertThat(hasSortNode(plan)).isFalse();
+    }
+
+    @Test
+    void historyByCardOrderedByDate_needsNoSort() {
+        String plan = explain("SELECT * FROM history WHERE card_id = 1 ORDER BY event_date DESC LIMIT 20");
+        assertUsesIndex(plan, "idx_history_card_id_event_date");
+        // секции упорядочены по event_date и сливаются Merge Append без узла Sort
+        assertThat(hasSortNode(plan)).isFalse();
+    }
+
+    @Test
+    void historyByPeriod_usesEventDateIndex() {
+        assertUsesIndex(explain("SELECT * FROM history WHERE event_date BETWEEN now() - interval '1 day' AND now()"),
+                "idx_history_event_date");
+    }
+
+    @Test
+    void historyAndTransfersByMonth_scanOnlyThatPartition() {
+        LocalDate month = LocalDate.now().withDayOfMonth(1);
+        String suffix = month.format(DateTimeFormatter.ofPattern("yyyy_MM"));
+        String nextSuffix = month.plusMonths(1).format(DateTimeFormatter.ofPattern("yyyy_MM"));
+
+        String historyPlan = explain("SELECT * FROM history WHERE event_date >= '" + month + "' AND event_date < '" + month.plusMonths(1) + "'");
+        assertThat(historyPlan).contains("history_p" + suffix).doesNotContain("history_p" + nextSuffix).doesNotContain("history_default");
+
+        String transfersPlan = explain("SELECT * FROM transfers WHERE transfer_date >= '" + month + "' AND transfer_date < '" + month.plusMonths(1) + "'");
+        assertThat(transfersPlan).contains("transfers_p" + suffix).doesNotContain("transfers_p" + nextSuffix).doesNotContain("transfers_default");
+    }
+
+    @Test
+    void ownerNameSubstringSearch_usesTrigramIndexes() {
+        // CardSpecification.hasOwnerName: три lower(...) LIKE '%x%' объединяются BitmapOr по GIN-индексам
+        jdbcTemplate.execute("ANALYZE users");
+        String plan = explain("SELECT * FROM users WHERE lower(name) LIKE '%xplain 1%' "
+                + "OR lower(username) LIKE '%xplain 1%' OR lower(email) LIKE '%xplain 1%'");
+        assertThat(plan)
+                .contains("idx_users_name_trgm")
+                .contains("idx_users_username_trgm")
+                .contains("idx_users_email_trgm");
+    }
+
+    @Test
+    void ownerNamePrefixSearch_usesBtreeIndex() {
+        jdbcTemplate.execute("ANALYZE users");
+        assertThat(explain("SELECT * FROM users WHERE lower(username) LIKE 'explain\\_1%' ESCAPE '\\'"))
+                .contains("idx_users_username_prefix");
+    }
+
+    @Test
+    void outgoingTransfersByUser_useCardOwnerAndSourceCardIndexes() {
+        // TransferRepository.findOutgoingByUserId: условие по исходной карте, без OR с входящими
+        String plan = explain("SELECT t.* FROM transfers t JOIN cards c ON c.id = t.from_card_id "
+                + "WHERE c.user_id = 900001 ORDER BY t.transfer_date DESC, t.id DESC LIMIT 101");
+        assertThat(plan).contains("idx_cards_user_id_status");
+        assertUsesIndex(plan, "idx_transfers_from_card_id_date");
+    }
+
+    @Test
+    void outgoingTransfersByStatus_useStatusDateIndex() {
+        assertUsesIndex(explain("SELECT * FROM transfers WHERE status = 'SUCCESS' AND from_card_id IS NOT NULL "
+                + "ORDER BY transfer_date DESC, id DESC LIMIT 101"), "idx_transfers_status_date");
+    }
+
+    // Индекс секционированной таблицы в плане представлен индексами секций
+    private void assertUsesIndex(String plan, String indexName) {
+        List<String> names = new ArrayList<>(jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = ?::regclass",
+                String.class, indexName));
+        names.add(indexName);
+        assertThat(names).as("индекс %s в плане:%n%s", indexName, plan).anyMatch(plan::contains);
+    }
+
+    private static boolean hasSortNode(String plan) {
+        return plan.lines().map(String::strip).anyMatch(line -> line.startsWith("Sort  (") || line.startsWith("->  Sort  ("));
+    }
+
+    private String explain(String sql) {
+        return String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class));
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.bankcards.integration;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.TransferService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Режим переводов по умолчанию (ATOMIC); режим с блокировками — в PessimisticTransferConcurrencyStressTest.
+// Без @Transactional: каждый перевод коммитится в своей транзакции, как в проде.
+// SQL-лог отключён, иначе тест меряет скорость вывода в консоль
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "logging.level.com.example.bankcards=INFO", "logging.level.org.springframework.security=INFO"})
+@ActiveProfiles("test")
+class TransferConcurrencyStressTest {
+
+    private static final int CARDS = 6;
+    private static final int THREADS = 8;
+    private static final int TRANSFERS = 2000;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("100.00");
+    // Консервативная нижняя граница для H2 в памяти на одном ядре CI; на стенде задаётся -Dstress.min-tps
+    private static final double MIN_TRANSFERS_PER_SECOND = Double.parseDouble(System.getProperty("stress.min-tps", "25"));
+
+    @Autowired
+    private TransferService transferService;
+    @Autowired
+    private CardRepository cardRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User owner;
+    private final List<Long> cardIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(new User("Stress Owner", "stress_owner", "stress@example.com", "pwd", Role.USER));
+        for (int i = 0; i < CARDS; i++) {
+            Card card = new Card();
+            card.setUser(owner);
+            card.setEncryptedNumber("stress_enc_" + i);
+            card.setStatus(CardStatus.ACTIVE);
+            card.setExpirationDate(LocalDate.now().plusYears(1));
+            card.setBalance(INITIAL_BALANCE);
+            cardIds.add(cardRepository.save(card).getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        String ids = cardIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        jdbcTemplate.update("DELETE FROM history WHERE card_id IN (" + ids + ")");
+        jdbcTemplate.update("DELETE FROM transfers WHERE from_card_id IN (" + ids + ") OR to_card_id IN (" + ids + ")");
+        cardRepository.deleteAllById(cardIds);
+        userRepository.deleteById(owner.getId());
+    }
+
+    @Test
+    void concurrent_transfers_conserve_total_balance_without_deadlocks() throws Exception {
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger insufficient = new AtomicInteger();
+        ConcurrentLinkedQueue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+
+        for (int i = 0; i < TRANSFERS; i++) {
+            pool.submit(() -> {
+                SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                        "admin", null, List.of(new SimpleGrantedAuthority("ROLE_ADMIN"))));
+                try {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    int from = random.nextInt(CARDS);
+                    int to = (from + 1 + random.nextInt(CARDS - 1)) % CARDS;
+                    BigDecimal amount = BigDecimal.valueOf(random.nextInt(1, 2000), 2);
+                    transferService.createTransfer(cardIds.get(from), cardIds.get(to), amount, owner.getId());
+                    succeeded.incrementAndGet();
+                } catch (InsufficientFundsException e) {
+                    insufficient.incrementAndGet();
+                } catch (Throwable e) {
+                    unexpected.add(e);
+                } finally {
+                    SecurityContextHolder.clearContext();
+                }
+            });
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(2, TimeUnit.MINUTES)).isTrue();
+        double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+
+        assertThat(unexpected).isEmpty();
+        assertThat(succeeded.get() + insufficient.get()).isEqualTo(TRANSFERS);
+        assertThat(succeeded.get()).isPositive();
+
+        List<Card> cards = cardRepository.findAllById(cardIds);
+        BigDecimal total = cards.stream().map(Card::getBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertThat(total).isEqualByComparingTo(INITIAL_BALANCE.multiply(BigDecimal.valueOf(CARDS)));
+        assertThat(cards).allSatisfy(card -> assertThat(card.getBalance()).isNotNegative());
+
+        Integer recorded = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM transfers WHERE from_card_id IN (" +
+                        cardIds.stream().map(String::valueOf).collect(Collectors.joining(",")) + ")", Integer.class);
+        assertThat(recorded).isEqualTo(succeeded.get());
+        assertThat(TRANSFERS / seconds).isGreaterThanOrEqualTo(MIN_TRANSFERS_PER_SECOND);
+    }
+}
@@ -213,4 +213,11 @@ class CardRepositoryTest {
         assertThat(activeCards).isEmpty();
         assertThat(activeCount).isZero();
     }
+
+    @Test
+    void likePrefix_treatsUnderscoreInKeyIdLiterally() {
+        // без экранирования "k_:%" совпал бы с "k1:..." и карты считались бы уже перешифрованными
+        assertThat(cardRepository.countEncryptedNotWithPrefix(CardRepository.likePrefix("k_:"))).isEqualTo(3);
+        assertThat(cardRepository.countEncryptedNotWithPrefix(CardRepository.likePrefix("k1:"))).isZero();
+    }
 }
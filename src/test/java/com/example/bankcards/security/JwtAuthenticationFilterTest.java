@@ -1,5 +1,6 @@
 package com.example.bankcards.security;
 
+import com.example.bankcards.entity.Role;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -17,7 +18,7 @@ import static org.junit.jupiter.api.Assertions.*;
 class JwtAuthenticationFilterTest {
     @Test
     void doFilterInternalWithNoToken() throws ServletException, IOException {
-        JwtAuthenticationFilter filter = new JwtAuthenticationFilter();
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(new JwtService());
         MockHttpServletRequest request = new MockHttpServletRequest();
         MockHttpServletResponse response = new MockHttpServletResponse();
         FilterChain chain = Mockito.mock(FilterChain.class);
@@ -25,5 +26,35 @@ class JwtAuthenticationFilterTest {
         filter.doFilterInternal(request, response, chain);
         assertNull(SecurityContextHolder.getContext().getAuthentication());
     }
-}
 
+    @Test
+    void doFilterInternalWithValidTokenAuthenticates() throws ServletException, IOException {
+        JwtService jwtService = new JwtService();
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtService);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + jwtService.generateToken("filteruser", Role.USER));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = Mockito.mock(FilterChain.class);
+        SecurityContextHolder.clearContext();
+        try {
+            filter.doFilterInternal(request, response, chain);
+            assertEquals("filteruser", SecurityContextHolder.getContext().getAuthentication().getName());
+            Mockito.verify(chain).doFilter(request, response);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    @Test
+    void doFilterInternalWithInvalidTokenReturns401() throws ServletException, IOException {
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(new JwtService());
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer not.a.token");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = Mockito.mock(FilterChain.class);
+        SecurityContextHolder.clearContext();
+        filter.doFilterInternal(request, response, chain);
+        assertEquals(HttpServletResponse.SC_UNAUTHORIZED, response.getStatus());
+        Mockito.verifyNoInteractions(chain);
+    }
+}
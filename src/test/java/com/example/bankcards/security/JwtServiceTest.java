@@ -1,6 +1,8 @@
 package com.example.bankcards.security;
 
 import com.example.bankcards.entity.Role;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -14,4 +16,32 @@ class JwtServiceTest {
         // Дополнительно можно проверить структуру токена, например, наличие точек (header.payload.signature)
         assertEquals(2, token.chars().filter(ch -> ch == '.').count());
     }
+
+    @Test
+    void parseClaimsShouldVerifyTokenAndReuseCachedClaims() {
+        JwtService jwtService = new JwtService();
+        String token = jwtService.generateToken("testuser", Role.USER);
+        Claims first = jwtService.parseClaims(token);
+        assertEquals("testuser", first.getSubject());
+        assertEquals("USER", first.get("role", String.class));
+        assertEquals(first, jwtService.parseClaims(token));
+    }
+
+    @Test
+    void cachedClaimsShouldNotBeAffectedByCallerChanges() {
+        JwtService jwtService = new JwtService();
+        String token = jwtService.generateToken("testuser", Role.USER);
+        jwtService.parseClaims(token).put("role", "ADMIN");
+        Claims cached = jwtService.parseClaims(token);
+        cached.put("role", "ADMIN");
+        assertEquals("USER", jwtService.parseClaims(token).get("role", String.class));
+    }
+
+    @Test
+    void parseClaimsShouldRejectTamperedToken() {
+        JwtService jwtService = new JwtService();
+        String token = jwtService.generateToken("testuser", Role.USER);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+        assertThrows(JwtException.class, () -> jwtService.parseClaims(tampered));
+    }
 }
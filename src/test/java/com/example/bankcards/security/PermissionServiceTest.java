@@ -0,0 +1,94 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardRepository.OwnerView;
+import com.example.bankcards.repository.HistoryRepository;
+import com.example.bankcards.repository.TransferRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PermissionServiceTest {
+    private CardRepository cardRepository;
+    private TransferRepository transferRepository;
+    private HistoryRepository historyRepository;
+    private UserRepository userRepository;
+    private PermissionService permissionService;
+
+    @BeforeEach
+    void setUp() {
+        cardRepository = mock(CardRepository.class);
+        transferRepository = mock(TransferRepository.class);
+        historyRepository = mock(HistoryRepository.class);
+        userRepository = mock(UserRepository.class);
+        when(userRepository.existsByIdAndUsername(1L, "user1")).thenReturn(true);
+        when(userRepository.existsByIdAndUsername(2L, "user2")).thenReturn(true);
+        permissionService = new PermissionService(cardRepository, transferRepository, historyRepository,
+                userRepository, Duration.ofMinutes(1), 100);
+    }
+
+    @Test
+    void isCardOwner_usesSingleProjectionAndCachesOwner() {
+        when(cardRepository.findOwnerById(10L)).thenReturn(Optional.of(owner(1L, "user1")));
+
+        assertTrue(permissionService.isCardOwner(10L, 1L));
+        assertFalse(permissionService.isCardOwner(10L, 2L));
+        assertTrue(permissionService.isCardOwnerUsername(10L, "user1"));
+
+        verify(cardRepository, times(1)).findOwnerById(10L);
+        verify(cardRepository, never()).findById(any());
+    }
+
+    @Test
+    void isCardOwner_missingCardIsNotCached() {
+        when(cardRepository.findOwnerById(10L)).thenReturn(Optional.empty());
+
+        assertFalse(permissionService.isCardOwner(10L, 1L));
+        assertFalse(permissionService.isCardOwner(10L, 1L));
+
+        verify(cardRepository, times(2)).findOwnerById(10L);
+    }
+
+    @Test
+    void transferAndHistoryOwnership_cachedPerResourceType() {
+        when(transferRepository.findOwnerById(5L)).thenReturn(Optional.of(owner(1L, "user1")));
+        when(historyRepository.findOwnerById(5L)).thenReturn(Optional.of(owner(2L, "user2")));
+
+        assertTrue(permissionService.isTransferOwner(5L, 1L));
+        assertTrue(permissionService.isTransferOwnerByUsername(5L, "user1"));
+        assertTrue(permissionService.isHistoryOwner(5L, "user2"));
+        assertFalse(permissionService.isHistoryOwner(5L, "user1"));
+
+        verify(transferRepository, times(1)).findOwnerById(5L);
+        verify(historyRepository, times(1)).findOwnerById(5L);
+    }
+
+    @Test
+    void usernameChecks_followRenameWithinCacheTtl() {
+        when(cardRepository.findOwnerById(10L)).thenReturn(Optional.of(owner(1L, "user1")));
+        assertTrue(permissionService.isCardOwnerUsername(10L, "user1"));
+
+        // пользователь 1 переименован: прежнее имя больше не проходит, хотя владелец карты в кэше
+        when(userRepository.existsByIdAndUsername(1L, "user1")).thenReturn(false);
+        when(userRepository.existsByIdAndUsername(1L, "renamed")).thenReturn(true);
+
+        assertFalse(permissionService.isCardOwnerUsername(10L, "user1"));
+        assertTrue(permissionService.isCardOwnerUsername(10L, "renamed"));
+        verify(cardRepository, times(1)).findOwnerById(10L);
+    }
+
+    private static OwnerView owner(Long userId, String username) {
+        return new OwnerView() {
+            @Override
+            public Long getUserId() { return userId; }
+            @Override
+            public String getUsername() { return username; }
+        };
+    }
+}
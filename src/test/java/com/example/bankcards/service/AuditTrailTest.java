@@ -0,0 +1,242 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.History;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.HistoryRepository;
+import com.example.bankcards.repository.TransferRepository;
+import com.example.bankcards.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AuditTrailTest {
+    private HistoryRepository historyRepository;
+    private UserRepository userRepository;
+    private CardRepository cardRepository;
+    private TransferRepository transferRepository;
+    private PlatformTransactionManager transactionManager;
+    private final List<History> saved = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> writerThreads = Collections.synchronizedList(new ArrayList<>());
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AuditTrail auditTrail;
+
+    @BeforeEach
+    void setUp() {
+        historyRepository = Mockito.mock(HistoryRepository.class);
+        userRepository = Mockito.mock(UserRepository.class);
+        cardRepository = Mockito.mock(CardRepository.class);
+        transferRepository = Mockito.mock(TransferRepository.class);
+        transactionManager = Mockito.mock(PlatformTransactionManager.class);
+        when(historyRepository.saveAll(anyList())).thenAnswer(i -> {
+            List<History> batch = i.getArgument(0);
+            saved.addAll(batch);
+            writerThreads.add(Thread.currentThread().getName());
+            return batch;
+        });
+        when(userRepository.getReferenceById(1L)).thenReturn(user(1L));
+        when(cardRepository.getReferenceById(10L)).thenReturn(card(10L));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (auditTrail != null) {
+            auditTrail.shutdown();
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void syncMode_savesInCallerTransaction() {
+        auditTrail = create(AuditMode.SYNC, 100, 10, Duration.ofMillis(20));
+
+        History history = history("CARD_BLOCKED");
+        auditTrail.record(history);
+
+        verify(historyRepository).saveAll(List.of(history));
+        verify(transactionManager, never()).getTransaction(Mockito.any());
+    }
+
+    @Test
+    void asyncMode_writesBatchesFromBackgroundThreadWithReferencesById() throws Exception {
+        auditTrail = create(AuditMode.ASYNC, 100, 10, Duration.ofMillis(20));
+
+        for (int i = 0; i < 25; i++) {
+            auditTrail.record(history("E" + i));
+        }
+
+        awaitSaved(25);
+        assertThat(saved).extracting(History::getEventType).startsWith("E0", "E1");
+        assertThat(saved).allSatisfy(h -> {
+            assertThat(h.getUser().getId()).isEqualTo(1L);
+            assertThat(h.getCard().getId()).isEqualTo(10L);
+            assertThat(h.getTransfer()).isNull();
+        });
+        assertThat(writerThreads).allMatch("audit-writer"::equals);
+        // не больше batch-size событий на запись
+        assertThat(writerThreads.size()).isGreaterThanOrEqualTo(3);
+    }
+
+    @Test
+    void asyncMode_insideTransaction_enqueuesOnlyAfterCommit() throws Exception {
+        auditTrail = create(AuditMode.ASYNC, 100, 10, Duration.ofMillis(20));
+
+        TransactionSynchronizationManager.initSynchronization();
+        auditTrail.record(history("COMMITTED"));
+        Thread.sleep(100);
+        assertThat(saved).isEmpty();
+        List<TransactionSynchronization> committed = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        committed.forEach(TransactionSynchronization::afterCommit);
+
+        TransactionSynchronizationManager.initSynchronization();
+        auditTrail.record(history("ROLLED_BACK"));
+        List<TransactionSynchronization> rolledBack = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        rolledBack.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        awaitSaved(1);
+        Thread.sleep(100);
+        assertThat(saved).extracting(History::getEventType).containsExactly("COMMITTED");
+    }
+
+    @Test
+    void asyncMode_fullQueue_callerWritesItself() throws Exception {
+        CountDownLatch writerBusy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(i -> {
+            List<History> batch = i.getArgument(0);
+            if ("audit-writer".equals(Thread.currentThread().getName())) {
+                writerBusy.countDown();
+                release.await(5, TimeUnit.SECONDS);
+            }
+            saved.addAll(batch);
+            writerThreads.add(Thread.currentThread().getName());
+            return batch;
+        }).when(historyRepository).saveAll(anyList());
+        auditTrail = create(AuditMode.ASYNC, 1, 10, Duration.ofMillis(10));
+
+        auditTrail.record(history("FIRST"));
+        assertThat(writerBusy.await(5, TimeUnit.SECONDS)).isTrue();
+        auditTrail.record(history("QUEUED"));
+        auditTrail.record(history("OVERFLOW"));
+
+        // очередь на одно событие занята — третье записано вызывающим потоком, не дожидаясь фонового
+        assertThat(saved).extracting(History::getEventType).containsExactly("OVERFLOW");
+        assertThat(writerThreads).containsExactly(Thread.currentThread().getName());
+
+        release.countDown();
+        awaitSaved(3);
+        assertThat(saved).extracting(History::getEventType).containsExactlyInAnyOrder("FIRST", "QUEUED", "OVERFLOW");
+    }
+
+    @Test
+    void shutdown_flushesQueuedEvents() {
+        auditTrail = create(AuditMode.ASYNC, 100, 10, Duration.ofSeconds(30));
+
+        auditTrail.record(history("PENDING"));
+        auditTrail.shutdown();
+
+        assertThat(saved).extracting(History::getEventType).containsExactly("PENDING");
+    }
+
+    @Test
+    void failedBatch_isRetriedBeforeGivingUp() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        doAnswer(i -> {
+            if (calls.getAndIncrement() == 0) {
+                throw new IllegalStateException("временный сбой");
+            }
+            List<History> batch = i.getArgument(0);
+            saved.addAll(batch);
+            return batch;
+        }).when(historyRepository).saveAll(anyList());
+        auditTrail = create(AuditMode.ASYNC, 100, 10, Duration.ofSeconds(30));
+
+        auditTrail.recordAll(List.of(history("A"), history("B")));
+        auditTrail.shutdown();
+
+        assertThat(saved).extracting(History::getEventType).containsExactly("A", "B");
+        assertThat(calls).hasValue(2);
+        assertThat(meterRegistry.get("audit.failed").functionCounter().count()).isZero();
+    }
+
+    @Test
+    void persistentlyFailingBatch_fallsBackToSingleRowsAndCountsOnlyLostEvents() {
+        // одна строка ломает батч (например, ссылка на удалённую карту) — остальные должны дойти до БД
+        doAnswer(i -> {
+            List<History> batch = i.getArgument(0);
+            if (batch.stream().anyMatch(h -> "POISON".equals(h.getEventType()))) {
+                throw new IllegalStateException("нарушение ограничения");
+            }
+            saved.addAll(batch);
+            return batch;
+        }).when(historyRepository).saveAll(anyList());
+        auditTrail = create(AuditMode.ASYNC, 100, 10, Duration.ofSeconds(30));
+
+        auditTrail.recordAll(List.of(history("A"), history("POISON"), history("B")));
+        auditTrail.shutdown();
+
+        assertThat(saved).extracting(History::getEventType).containsExactly("A", "B");
+        assertThat(meterRegistry.get("audit.failed").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("audit.written").functionCounter().count()).isEqualTo(2);
+    }
+
+    private AuditTrail create(AuditMode mode, int capacity, int batchSize, Duration flushInterval) {
+        return new AuditTrail(historyRepository, userRepository, cardRepository, transferRepository, transactionManager,
+                meterRegistry, mode, capacity, batchSize, flushInterval, Duration.ofMillis(20), 3, Duration.ofMillis(5));
+    }
+
+    private void awaitSaved(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (saved.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(saved).hasSize(count);
+    }
+
+    private static History history(String eventType) {
+        History history = new History();
+        history.setEventType(eventType);
+        history.setEventDate(LocalDateTime.now());
+        history.setUser(user(1L));
+        history.setCard(card(10L));
+        return history;
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+
+    private static Card card(Long id) {
+        Card card = new Card();
+        card.setId(id);
+        return card;
+    }
+}
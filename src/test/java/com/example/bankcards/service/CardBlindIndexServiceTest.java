@@ -0,0 +1,35 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CardBlindIndexServiceTest {
+    @Test
+    void indexShouldBeDeterministicAndKeyed() {
+        CardBlindIndexService service = new CardBlindIndexService("blindIndexKeyblindIndexKey");
+        CardBlindIndexService otherKey = new CardBlindIndexService("anotherKeyanotherKeyanother");
+        String pan = "1234567890123456";
+
+        assertEquals(service.panIndex(pan), service.panIndex(pan));
+        assertEquals(64, service.panIndex(pan).length());
+        assertNotEquals(service.panIndex(pan), otherKey.panIndex(pan));
+        assertNotEquals(service.panIndex(pan), service.panIndex("1234567890123457"));
+    }
+
+    @Test
+    void last4IndexShouldDifferFromPanIndex() {
+        CardBlindIndexService service = new CardBlindIndexService("blindIndexKeyblindIndexKey");
+        assertNotEquals(service.last4Index("3456"), service.panIndex("3456"));
+    }
+
+    @Test
+    void indexShouldFillCardColumns() {
+        CardBlindIndexService service = new CardBlindIndexService("blindIndexKeyblindIndexKey");
+        Card card = new Card();
+        service.index(card, "1234567890123456");
+        assertEquals(service.panIndex("1234567890123456"), card.getPanHash());
+        assertEquals(service.last4Index("3456"), card.getLast4Hash());
+    }
+}
@@ -4,6 +4,15 @@ import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 import com.example.bankcards.exception.EncryptionFailureException;
 
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 class CardEncryptionServiceTest {
     @Test
     void testEncryptDecrypt() {
@@ -28,4 +37,73 @@ class CardEncryptionServiceTest {
         CardEncryptionService service = new CardEncryptionService("1234567890abcdef");
         assertThrows(EncryptionFailureException.class, () -> service.decrypt("invalid_base64"));
     }
+
+    @Test
+    void decryptAllShouldPreserveOrder() {
+        CardEncryptionService service = new CardEncryptionService("1234567890abcdef");
+        List<String> numbers = List.of("1234567890123456", "4000001234567899", "5500000000000004");
+        List<String> encrypted = numbers.stream().map(service::encrypt).toList();
+        assertEquals(numbers, service.decryptAll(encrypted));
+        assertTrue(service.decryptAll(List.of()).isEmpty());
+    }
+
+    @Test
+    void decryptShouldRecoverAfterFailure() {
+        CardEncryptionService service = new CardEncryptionService("1234567890abcdef");
+        String encrypted = service.encrypt("1234567890123456");
+        assertThrows(EncryptionFailureException.class, () -> service.decrypt("AAAAAAAAAAAAAAAAAAAAAA=="));
+        assertEquals("1234567890123456", service.decrypt(encrypted));
+    }
+
+    @Test
+    void decryptShouldBeThreadSafe() throws Exception {
+        CardEncryptionService service = new CardEncryptionService("1234567890abcdef");
+        String encrypted = service.encrypt("1234567890123456");
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                results.add(pool.submit(() -> service.decrypt(encrypted)));
+            }
+            for (Future<String> result : results) {
+                assertEquals("1234567890123456", result.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void encryptShouldUseVersionedGcmFormat() {
+        CardEncryptionService service = new CardEncryptionService("1234567890abcdef");
+        String first = service.encrypt("1234567890123456");
+        String second = service.encrypt("1234567890123456");
+        assertTrue(first.startsWith("k1:"));
+        assertTrue(service.isCurrent(first));
+        assertNotEquals(first, second); // случайный IV
+    }
+
+    @Test
+    void decryptShouldSupportLegacyEcbValues() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec("1234567890abcdef".getBytes(), "AES"));
+        String legacy = Base64.getEncoder().encodeToString(cipher.doFinal("1234567890123456".getBytes()));
+
+        CardEncryptionService service = new CardEncryptionService("1234567890abcdef");
+        assertFalse(service.isCurrent(legacy));
+        assertEquals("1234567890123456", service.decrypt(legacy));
+    }
+
+    @Test
+    void decryptShouldUseKeyFromPrefixAfterRotation() {
+        CardEncryptionService before = new CardEncryptionService("1234567890abcdef");
+        String oldValue = before.encrypt("1234567890123456");
+
+        CardEncryptionService after = new CardEncryptionService("1234567890abcdef", "k2", "k2=fedcba0987654321");
+        assertFalse(after.isCurrent(oldValue));
+        assertEquals("1234567890123456", after.decrypt(oldValue));
+        String newValue = after.encrypt("1234567890123456");
+        assertTrue(newValue.startsWith("k2:"));
+        assertThrows(EncryptionFailureException.class, () -> before.decrypt(newValue));
+    }
 }
@@ -10,20 +10,20 @@ import static org.mockito.ArgumentMatchers.anyString;
 
 class CardNumberGeneratorTest {
     private CardRepository cardRepository;
-    private CardEncryptionService cardEncryptionService;
+    private CardBlindIndexService cardBlindIndexService;
     private CardNumberGenerator generator;
 
     @BeforeEach
     void setUp() {
         cardRepository = Mockito.mock(CardRepository.class);
-        cardEncryptionService = Mockito.mock(CardEncryptionService.class);
-        generator = new CardNumberGenerator(cardRepository, cardEncryptionService);
+        cardBlindIndexService = Mockito.mock(CardBlindIndexService.class);
+        generator = new CardNumberGenerator(cardRepository, cardBlindIndexService);
     }
 
     @Test
     void generatedCardNumberShouldBe16Digits() {
-        Mockito.when(cardEncryptionService.encrypt(anyString())).thenReturn("encrypted");
-        Mockito.when(cardRepository.findByEncryptedNumber("encrypted")).thenReturn(java.util.Optional.empty());
+        Mockito.when(cardBlindIndexService.panIndex(anyString())).thenReturn("hash");
+        Mockito.when(cardRepository.existsByPanHash("hash")).thenReturn(false);
         String number = generator.generateUniqueCardNumber();
         assertEquals(16, number.length());
         assertTrue(number.matches("\\d{16}"));
@@ -31,10 +31,10 @@ class CardNumberGeneratorTest {
 
     @Test
     void generatorShouldRetryIfNumberExists() {
-        Mockito.when(cardEncryptionService.encrypt(anyString())).thenReturn("encrypted");
-        Mockito.when(cardRepository.findByEncryptedNumber("encrypted"))
-                .thenReturn(java.util.Optional.of(Mockito.mock(com.example.bankcards.entity.Card.class)))
-                .thenReturn(java.util.Optional.empty());
+        Mockito.when(cardBlindIndexService.panIndex(anyString())).thenReturn("hash");
+        Mockito.when(cardRepository.existsByPanHash("hash"))
+                .thenReturn(true)
+                .thenReturn(false);
         String number = generator.generateUniqueCardNumber();
         assertEquals(16, number.length());
         assertTrue(number.matches("\\d{16}"));
@@ -42,8 +42,8 @@ class CardNumberGeneratorTest {
 
     @Test
     void generatedCardNumberShouldPassLuhnCheck() {
-        Mockito.when(cardEncryptionService.encrypt(anyString())).thenReturn("encrypted");
-        Mockito.when(cardRepository.findByEncryptedNumber("encrypted")).thenReturn(java.util.Optional.empty());
+        Mockito.when(cardBlindIndexService.panIndex(anyString())).thenReturn("hash");
+        Mockito.when(cardRepository.existsByPanHash("hash")).thenReturn(false);
         String number = generator.generateUniqueCardNumber();
         assertTrue(CardNumberGenerator.isValidLuhn(number), "Номер карты должен проходить проверку Луна");
     }
@@ -1,7 +1,7 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.HistoryDto;
 import com.example.bankcards.dto.HistoryFilterDto;
-import com.example.bankcards.entity.History;
 import com.example.bankcards.repository.HistoryRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -24,6 +24,8 @@ import static org.mockito.Mockito.when;
 class HistoryServiceTest {
     @Mock
     private HistoryRepository historyRepository;
+    @Mock
+    private HistoryArchive historyArchive;
     @InjectMocks
     private HistoryService historyService;
 
@@ -40,10 +42,10 @@ class HistoryServiceTest {
         filter.setDateFrom(LocalDateTime.now().minusDays(10));
         filter.setDateTo(LocalDateTime.now());
         Pageable pageable = PageRequest.of(0, 10);
-        History history = new History();
-        Page<History> page = new PageImpl<>(Collections.singletonList(history));
-        when(historyRepository.findAll(any(Specification.class), any(Pageable.class))).thenReturn(page);
-        Page<History> result = historyService.findByFilter(filter, pageable);
+        HistoryDto history = new HistoryDto(1L, "TRANSFER", LocalDateTime.now(), null, 1L, null, 5L);
+        Page<HistoryDto> page = new PageImpl<>(Collections.singletonList(history));
+        when(historyRepository.findDtoPage(any(Specification.class), any(Pageable.class))).thenReturn(page);
+        Page<HistoryDto> result = historyService.findByFilter(filter, pageable);
         assertThat(result.getContent()).hasSize(1);
     }
 
@@ -51,9 +53,9 @@ class HistoryServiceTest {
     void findByFilter_emptyFilter_returnsAll() {
         HistoryFilterDto filter = new HistoryFilterDto();
         Pageable pageable = PageRequest.of(0, 10);
-        Page<History> page = new PageImpl<>(Collections.emptyList());
-        when(historyRepository.findAll(any(Specification.class), any(Pageable.class))).thenReturn(page);
-        Page<History> result = historyService.findByFilter(filter, pageable);
+        Page<HistoryDto> page = new PageImpl<>(Collections.emptyList());
+        when(historyRepository.findDtoPage(any(Specification.class), any(Pageable.class))).thenReturn(page);
+        Page<HistoryDto> result = historyService.findByFilter(filter, pageable);
         assertThat(result.getContent()).isEmpty();
     }
 }
@@ -4,7 +4,6 @@ import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
 import com.example.bankcards.exception.InsufficientFundsException;
 import com.example.bankcards.repository.CardRepository;
-import com.example.bankcards.repository.HistoryRepository;
 import com.example.bankcards.repository.TransferRepository;
 import com.example.bankcards.security.SecurityUtil;
 import com.example.bankcards.service.impl.TransferServiceImpl;
@@ -14,12 +13,17 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -27,8 +31,9 @@ class TransferServiceImplTest {
 
     @Mock TransferRepository transferRepository;
     @Mock CardRepository cardRepository;
-    @Mock HistoryRepository historyRepository;
+    @Mock AuditTrail auditTrail;
     @Mock SecurityUtil securityUtil;
+    @Mock TransactionTemplate transactionTemplate;
 
     @InjectMocks TransferServiceImpl service;
 
@@ -48,6 +53,9 @@ class TransferServiceImplTest {
     void setupSecurity() {
         when(securityUtil.isAdmin()).thenReturn(false);
         when(securityUtil.getCurrentUserId()).thenReturn(1L);
+        lenient().when(transactionTemplate.execute(any()))
+                .thenAnswer(i -> i.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        ReflectionTestUtils.setField(service, "lockingMode", TransferLockingMode.PESSIMISTIC);
     }
 
     @Test
@@ -57,8 +65,8 @@ class TransferServiceImplTest {
         Long userId = 1L;
         Card from = activeCard(fromId, userId, new BigDecimal("50.00"));
         Card to = activeCard(toId, 2L, new BigDecimal("10.00"));
-        when(cardRepository.findById(fromId)).thenReturn(Optional.of(from));
-        when(cardRepository.findById(toId)).thenReturn(Optional.of(to));
+        when(cardRepository.findByIdForUpdate(fromId)).thenReturn(Optional.of(from));
+        when(cardRepository.findByIdForUpdate(toId)).thenReturn(Optional.of(to));
 
         assertThrows(InsufficientFundsException.class, () ->
                 service.createTransfer(fromId, toId, new BigDecimal("100.00"), userId)
@@ -5,7 +5,8 @@ import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.repository.CardRepository;
-import com.example.bankcards.repository.HistoryRepository;
+import com.example.bankcards.service.AuditTrail;
+import com.example.bankcards.service.CardBlindIndexService;
 import com.example.bankcards.service.CardEncryptionService;
 import com.example.bankcards.service.CardNumberGenerator;
 import com.example.bankcards.security.SecurityUtil;
@@ -18,6 +19,7 @@ import org.springframework.data.jpa.domain.Specification;
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -27,8 +29,9 @@ class CardServiceImplTest {
     private CardRepository cardRepository;
     private CardNumberGenerator cardNumberGenerator;
     private CardEncryptionService cardEncryptionService;
+    private CardBlindIndexService cardBlindIndexService;
     private SecurityUtil securityUtil; // новый mock
-    private HistoryRepository historyRepository;
+    private AuditTrail auditTrail;
     private CardServiceImpl cardService;
 
     @BeforeEach
@@ -36,12 +39,13 @@ class CardServiceImplTest {
         cardRepository = Mockito.mock(CardRepository.class);
         cardNumberGenerator = Mockito.mock(CardNumberGenerator.class);
         cardEncryptionService = Mockito.mock(CardEncryptionService.class);
+        cardBlindIndexService = Mockito.mock(CardBlindIndexService.class);
         securityUtil = Mockito.mock(SecurityUtil.class);
-        historyRepository = Mockito.mock(HistoryRepository.class);
+        auditTrail = Mockito.mock(AuditTrail.class);
         // Админ = true, чтобы пропустить guard проверки
         when(securityUtil.isAdmin()).thenReturn(true);
         when(securityUtil.getCurrentUserId()).thenReturn(1L);
-        cardService = new CardServiceImpl(cardRepository, cardNumberGenerator, cardEncryptionService, securityUtil, historyRepository);
+        cardService = new CardServiceImpl(cardRepository, cardNumberGenerator, cardEncryptionService, securityUtil, auditTrail, cardBlindIndexService);
     }
 
     @Test
@@ -51,6 +55,7 @@ class CardServiceImplTest {
         String encryptedNumber = "encrypted";
         when(cardNumberGenerator.generateUniqueCardNumber()).thenReturn(generatedNumber);
         when(cardEncryptionService.encrypt(generatedNumber)).thenReturn(encryptedNumber);
+        when(cardEncryptionService.mask(generatedNumber)).thenReturn("**** **** **** 3452");
         Card savedCard = new Card();
         when(cardRepository.save(any(Card.class))).thenReturn(savedCard);
 
@@ -62,9 +67,11 @@ class CardServiceImplTest {
 
         assertEquals(user, card.getUser());
         assertEquals(encryptedNumber, card.getEncryptedNumber());
+        assertEquals("**** **** **** 3452", card.getMaskedNumber());
         assertEquals(CardStatus.ACTIVE, card.getStatus());
         assertEquals(LocalDate.now().plusYears(3), card.getExpirationDate());
         assertSame(savedCard, result);
+        verify(cardBlindIndexService).index(card, generatedNumber);
     }
 
     // Тесты для функционала поиска карт
@@ -86,40 +93,66 @@ class CardServiceImplTest {
     }
 
     @Test
-    void searchCardsShouldFilterByMaskWhenProvided() {
+    void searchCardsShouldFilterByMaskInQueryViaBlindIndex() {
         CardSearchDto searchDto = new CardSearchDto();
-        searchDto.setMask("1234");
+        searchDto.setMask("**** **** **** 1234");
 
-        Card card1 = createTestCard(1L);
-        Card card2 = createTestCard(2L);
-        List<Card> allCards = Arrays.asList(card1, card2);
-
-        when(cardRepository.findAll()).thenReturn(allCards);
-        when(cardEncryptionService.decrypt(anyString())).thenReturn("1234567890123456", "9876543210987654");
-        when(cardEncryptionService.mask(anyString())).thenReturn("**** **** **** 3456", "**** **** **** 7654");
+        when(cardBlindIndexService.last4Index("1234")).thenReturn("last4-hash");
+        when(cardRepository.findAll(any(Specification.class))).thenReturn(List.of());
 
         List<Card> result = cardService.searchCards(searchDto);
 
-        assertEquals(0, result.size()); // Ни одна карта не соответствует маске "1234"
+        assertEquals(0, result.size());
+        verify(cardBlindIndexService).last4Index("1234");
+        verify(cardRepository).findAll(any(Specification.class));
+        verify(cardRepository, never()).findAll();
+        verifyNoInteractions(cardEncryptionService);
     }
 
     @Test
-    void searchCardsByMaskShouldReturnMatchingCards() {
-        String mask = "1234";
+    void searchCardsByMaskShouldUseLast4BlindIndex() {
         Card card1 = createTestCard(1L);
-        Card card2 = createTestCard(2L);
-        List<Card> allCards = Arrays.asList(card1, card2);
+        when(cardBlindIndexService.last4Index("1234")).thenReturn("last4-hash");
+        when(cardRepository.findByLast4Hash("last4-hash")).thenReturn(List.of(card1));
 
-        when(cardRepository.findAll()).thenReturn(allCards);
-        when(cardEncryptionService.decrypt(card1.getEncryptedNumber())).thenReturn("1234567890121234");
-        when(cardEncryptionService.decrypt(card2.getEncryptedNumber())).thenReturn("9876543210987654");
-        when(cardEncryptionService.mask("1234567890121234")).thenReturn("**** **** **** 1234");
-        when(cardEncryptionService.mask("9876543210987654")).thenReturn("**** **** **** 7654");
+        List<Card> result = cardService.searchCardsByMask("**** **** **** 1234");
 
-        List<Card> result = cardService.searchCardsByMask(mask);
+        assertEquals(List.of(card1), result);
+        verify(cardRepository, never()).findAll();
+        verifyNoInteractions(cardEncryptionService);
+    }
 
-        assertEquals(1, result.size());
-        assertEquals(card1, result.get(0));
+    @Test
+    void searchCardsByMaskShouldUsePanBlindIndexForFullNumber() {
+        Card card1 = createTestCard(1L);
+        when(cardBlindIndexService.panIndex("1234567890121234")).thenReturn("pan-hash");
+        when(cardRepository.findByPanHash("pan-hash")).thenReturn(Optional.of(card1));
+
+        List<Card> result = cardService.searchCardsByMask("1234 5678 9012 1234");
+
+        assertEquals(List.of(card1), result);
+        verifyNoInteractions(cardEncryptionService);
+    }
+
+    @Test
+    void searchCardsByMaskShouldReturnEmptyListForPartialDigits() {
+        List<Card> result = cardService.searchCardsByMask("12");
+
+        assertEquals(0, result.size());
+        verifyNoInteractions(cardRepository);
+    }
+
+    @Test
+    void getCardByMaskedNumberShouldUseLast4BlindIndex() {
+        Card card1 = createTestCard(1L);
+        when(cardBlindIndexService.last4Index("3456")).thenReturn("last4-hash");
+        when(cardRepository.findFirstByLast4HashOrderByIdAsc("last4-hash")).thenReturn(Optional.of(card1));
+
+        Optional<Card> result = cardService.getCardByMaskedNumber("**** **** **** 3456");
+
+        assertEquals(Optional.of(card1), result);
+        verify(cardRepository, never()).findAll();
+        verifyNoInteractions(cardEncryptionService);
     }
 
     @Test
@@ -6,8 +6,9 @@ import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.CardExpiredException;
 import com.example.bankcards.exception.CardBlockedException;
 import com.example.bankcards.repository.CardRepository;
-import com.example.bankcards.repository.HistoryRepository;
 import com.example.bankcards.security.SecurityUtil;
+import com.example.bankcards.service.AuditTrail;
+import com.example.bankcards.service.CardBlindIndexService;
 import com.example.bankcards.service.CardEncryptionService;
 import com.example.bankcards.service.CardNumberGenerator;
 import org.junit.jupiter.api.BeforeEach;
@@ -24,9 +25,10 @@ import static org.mockito.Mockito.*;
 
 class CardServiceStatusTest {
     private CardRepository cardRepository;
-    private HistoryRepository historyRepository;
+    private AuditTrail auditTrail;
     private CardNumberGenerator cardNumberGenerator;
     private CardEncryptionService cardEncryptionService;
+    private CardBlindIndexService cardBlindIndexService;
     private SecurityUtil securityUtil;
     private CardServiceImpl service;
 
@@ -35,13 +37,14 @@ class CardServiceStatusTest {
     @BeforeEach
     void init() {
         cardRepository = Mockito.mock(CardRepository.class);
-        historyRepository = Mockito.mock(HistoryRepository.class);
+        auditTrail = Mockito.mock(AuditTrail.class);
         cardNumberGenerator = Mockito.mock(CardNumberGenerator.class);
         cardEncryptionService = Mockito.mock(CardEncryptionService.class);
+        cardBlindIndexService = Mockito.mock(CardBlindIndexService.class);
         securityUtil = Mockito.mock(SecurityUtil.class);
         when(securityUtil.getCurrentUserId()).thenReturn(10L);
         when(securityUtil.isAdmin()).thenReturn(false);
-        service = new CardServiceImpl(cardRepository, cardNumberGenerator, cardEncryptionService, securityUtil, historyRepository);
+        service = new CardServiceImpl(cardRepository, cardNumberGenerator, cardEncryptionService, securityUtil, auditTrail, cardBlindIndexService);
         card = new Card();
         card.setId(1L);
         card.setStatus(CardStatus.ACTIVE);
@@ -59,7 +62,7 @@ class CardServiceStatusTest {
         assertEquals(CardStatus.BLOCKED, result.getStatus());
         ArgumentCaptor<Card> captor = ArgumentCaptor.forClass(Card.class);
         verify(cardRepository, atLeastOnce()).save(captor.capture());
-        verify(historyRepository, atLeastOnce()).save(any());
+        verify(auditTrail, atLeastOnce()).record(any());
     }
 
     @Test
@@ -74,7 +77,7 @@ class CardServiceStatusTest {
         when(securityUtil.isAdmin()).thenReturn(true);
         Card unblocked = service.unblockCard(1L);
         assertEquals(CardStatus.ACTIVE, unblocked.getStatus());
-        verify(historyRepository).save(any());
+        verify(auditTrail).record(any());
     }
 
     @Test
@@ -1,23 +1,38 @@
 package com.example.bankcards.service.impl;
 
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResultDto;
+import com.example.bankcards.dto.TransferDto;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
 import com.example.bankcards.entity.History;
 import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.entity.TransferIdempotencyKey;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.repository.CardRepository;
-import com.example.bankcards.repository.HistoryRepository;
+import com.example.bankcards.repository.TransferIdempotencyKeyRepository;
 import com.example.bankcards.repository.TransferRepository;
+import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.security.SecurityUtil;
 import com.example.bankcards.exception.CardBlockedException;
+import com.example.bankcards.exception.ErrorCode;
+import com.example.bankcards.exception.IdempotencyKeyReuseException;
 import com.example.bankcards.exception.InsufficientFundsException;
 import com.example.bankcards.exception.SameCardTransferException;
+import com.example.bankcards.exception.TransferConflictException;
+import com.example.bankcards.service.AuditTrail;
+import com.example.bankcards.service.TransferLockingMode;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.access.AccessDeniedException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -25,6 +40,8 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class TransferServiceImplTest {
@@ -33,9 +50,15 @@ class TransferServiceImplTest {
     @Mock
     private CardRepository cardRepository;
     @Mock
-    private HistoryRepository historyRepository;
+    private AuditTrail auditTrail;
     @Mock
     private SecurityUtil securityUtil;
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    @Mock
+    private TransferIdempotencyKeyRepository idempotencyKeyRepository;
     @InjectMocks
     private TransferServiceImpl transferService;
 
@@ -46,6 +69,9 @@ class TransferServiceImplTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(transactionTemplate.execute(any())).thenAnswer(i -> i.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        // основной набор проверяет путь с блокировками; ATOMIC — в отдельных тестах ниже
+        ReflectionTestUtils.setField(transferService, "lockingMode", TransferLockingMode.PESSIMISTIC);
         when(securityUtil.isAdmin()).thenReturn(false);
         when(securityUtil.getCurrentUserId()).thenReturn(1L);
         user = new User();
@@ -66,8 +92,8 @@ class TransferServiceImplTest {
 
     @Test
     void createTransfer_success() {
-        when(cardRepository.findById(10L)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findById(20L)).thenReturn(Optional.of(toCard));
+        when(cardRepository.findByIdForUpdate(10L)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdForUpdate(20L)).thenReturn(Optional.of(toCard));
         when(transferRepository.save(any(Transfer.class))).thenAnswer(i -> i.getArgument(0));
         when(cardRepository.save(any(Card.class))).thenAnswer(i -> i.getArgument(0));
 
@@ -80,8 +106,8 @@ class TransferServiceImplTest {
 
     @Test
     void createTransfer_insufficientBalance() {
-        when(cardRepository.findById(10L)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findById(20L)).thenReturn(Optional.of(toCard));
+        when(cardRepository.findByIdForUpdate(10L)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdForUpdate(20L)).thenReturn(Optional.of(toCard));
         assertThrows(InsufficientFundsException.class, () ->
                 transferService.createTransfer(10L, 20L, new BigDecimal("200.00"), 1L));
     }
@@ -89,8 +115,8 @@ class TransferServiceImplTest {
     @Test
     void createTransfer_inactiveCard() {
         fromCard.setStatus(CardStatus.BLOCKED);
-        when(cardRepository.findById(10L)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findById(20L)).thenReturn(Optional.of(toCard));
+        when(cardRepository.findByIdForUpdate(10L)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdForUpdate(20L)).thenReturn(Optional.of(toCard));
         assertThrows(CardBlockedException.class, () ->
                 transferService.createTransfer(10L, 20L, new BigDecimal("10.00"), 1L));
     }
@@ -100,25 +126,24 @@ class TransferServiceImplTest {
         User anotherUser = new User();
         anotherUser.setId(2L);
         fromCard.setUser(anotherUser);
-        when(cardRepository.findById(10L)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findById(20L)).thenReturn(Optional.of(toCard));
+        when(cardRepository.findByIdForUpdate(10L)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdForUpdate(20L)).thenReturn(Optional.of(toCard));
         assertThrows(AccessDeniedException.class, () ->
                 transferService.createTransfer(10L, 20L, new BigDecimal("10.00"), 1L));
     }
 
     @Test
     void createTransfer_auditHistoryCreated() {
-        when(cardRepository.findById(10L)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findById(20L)).thenReturn(Optional.of(toCard));
+        when(cardRepository.findByIdForUpdate(10L)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdForUpdate(20L)).thenReturn(Optional.of(toCard));
         when(transferRepository.save(any(Transfer.class))).thenAnswer(i -> {
             Transfer t = i.getArgument(0);
             t.setId(100L);
             return t;
         });
         when(cardRepository.save(any(Card.class))).thenAnswer(i -> i.getArgument(0));
-        when(historyRepository.save(any(History.class))).thenAnswer(i -> i.getArgument(0));
         transferService.createTransfer(10L, 20L, new BigDecimal("10.00"), 1L);
-        verify(historyRepository, times(1)).save(any(History.class));
+        verify(auditTrail, times(1)).record(any(History.class));
     }
 
     @Test
@@ -134,4 +159,229 @@ class TransferServiceImplTest {
         assertThrows(IllegalArgumentException.class, () ->
                 transferService.createTransfer(10L, 20L, BigDecimal.ZERO, 1L));
     }
+
+    @Test
+    void createTransfer_locksCardsInAscendingIdOrder() {
+        when(cardRepository.findByIdForUpdate(10L)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdForUpdate(20L)).thenReturn(Optional.of(toCard));
+        when(transferRepository.save(any(Transfer.class))).thenAnswer(i -> i.getArgument(0));
+
+        // встречный перевод 20 → 10: блокировки всё равно берутся 10, затем 20
+        transferService.createTransfer(20L, 10L, new BigDecimal("5.00"), 1L);
+
+        InOrder order = inOrder(cardRepository);
+        order.verify(cardRepository).findByIdForUpdate(10L);
+        order.verify(cardRepository).findByIdForUpdate(20L);
+        verify(cardRepository, never()).findById(any());
+        assertEquals(new BigDecimal("45.00"), toCard.getBalance());
+        assertEquals(new BigDecimal("105.00"), fromCard.getBalance());
+    }
+
+    @Test
+    void createTransfer_optimisticModeRetriesOnVersionConflict() {
+        ReflectionTestUtils.setField(transferService, "lockingMode", TransferLockingMode.OPTIMISTIC);
+        when(cardRepository.findById(10L)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findById(20L)).thenReturn(Optional.of(toCard));
+        when(transferRepository.save(any(Transfer.class))).thenAnswer(i -> i.getArgument(0));
+        doThrow(new ObjectOptimisticLockingFailureException(Card.class, 10L))
+                .doAnswer(i -> i.<TransactionCallback<?>>getArgument(0).doInTransaction(null))
+                .when(transactionTemplate).execute(any());
+
+        Transfer transfer = transferService.createTransfer(10L, 20L, new BigDecimal("30.00"), 1L);
+
+        assertEquals("SUCCESS", transfer.getStatus());
+        verify(transactionTemplate, times(2)).execute(any());
+        verify(cardRepository, never()).findByIdForUpdate(any());
+    }
+
+    @Test
+    void createTransfer_optimisticModeGivesUpAfterMaxAttempts() {
+        ReflectionTestUtils.setField(transferService, "lockingMode", TransferLockingMode.OPTIMISTIC);
+        ReflectionTestUtils.setField(transferService, "optimisticMaxAttempts", 3);
+        doThrow(new ObjectOptimisticLockingFailureException(Card.class, 10L)).when(transactionTemplate).execute(any());
+
+        assertThrows(TransferConflictException.class, () ->
+                transferService.createTransfer(10L, 20L, new BigDecimal("30.00"), 1L));
+        verify(transactionTemplate, times(3)).execute(any());
+    }
+
+    @Test
+    void createTransfer_atomicModeUsesConditionalUpdatesWithoutLoadingCards() {
+        ReflectionTestUtils.setField(transferService, "lockingMode", TransferLockingMode.ATOMIC);
+        when(cardRepository.debitIfUsable(eq(10L), eq(1L), eq(new BigDecimal("30.00")), eq(CardStatus.ACTIVE), any())).thenReturn(1);
+        when(cardRepository.creditIfUsable(eq(20L), eq(new BigDecimal("30.00")), eq(CardStatus.ACTIVE), any())).thenReturn(1);
+        when(cardRepository.getReferenceById(10L)).thenReturn(fromCard);
+        when(cardRepository.getReferenceById(20L)).thenReturn(toCard);
+        when(userRepository.getReferenceById(1L)).thenReturn(user);
+        when(transferRepository.save(any(Transfer.class))).thenAnswer(i -> i.getArgument(0));
+
+        Transfer transfer = transferService.createTransfer(10L, 20L, new BigDecimal("30.00"), 1L);
+
+        assertEquals("SUCCESS", transfer.getStatus());
+        assertSame(fromCard, transfer.getSourceCard());
+        verify(cardRepository, never()).findById(any());
+        verify(cardRepository, never()).save(any());
+        verify(auditTrail).record(argThat(h -> h.getUser() == user && h.getTransfer() == transfer));
+    }
+
+    @Test
+    void createTransfer_atomicModeAppliesStatementsInAscendingIdOrder() {
+        ReflectionTestUtils.setField(transferService, "lockingMode", TransferLockingMode.ATOMIC);
+        when(cardRepository.debitIfUsable(eq(20L), eq(1L), any(), any(), any())).thenReturn(1);
+        when(cardRepository.creditIfUsable(eq(10L), any(), any(), any())).thenReturn(1);
+        when(cardRepository.getReferenceById(10L)).thenReturn(toCard);
+        when(cardRepository.getReferenceById(20L)).thenReturn(fromCard);
+        when(transferRepository.save(any(Transfer.class))).thenAnswer(i -> i.getArgument(0));
+
+        transferService.createTransfer(20L, 10L, new BigDecimal("5.00"), 1L);
+
+        InOrder order = inOrder(cardRepository);
+        order.verify(cardRepository).creditIfUsable(eq(10L), any(), any(), any());
+        order.verify(cardRepository).debitIfUsable(eq(20L), eq(1L), any(), any(), any());
+    }
+
+    @Test
+    void createTransfer_atomicModeReportsRejectionReason() {
+        ReflectionTestUtils.setField(transferService, "lockingMode", TransferLockingMode.ATOMIC);
+        when(cardRepository.debitIfUsable(any(), any(), any(), any(), any())).thenReturn(0);
+        when(cardRepository.findById(10L)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findById(20L)).thenReturn(Optional.of(toCard));
+
+        assertThrows(InsufficientFundsException.class, () ->
+                transferService.createTransfer(10L, 20L, new BigDecimal("200.00"), 1L));
+        verify(cardRepository, never()).creditIfUsable(any(), any(), any(), any());
+        verify(transferRepository, never()).save(any());
+    }
+
+    @Test
+    void createTransfer_atomicModeRetriesWhenNoRejectionReasonFound() {
+        ReflectionTestUtils.setField(transferService, "lockingMode", TransferLockingMode.ATOMIC);
+        // первая попытка: списание не прошло, но к моменту проверки баланс уже пополнен
+        when(cardRepository.debitIfUsable(any(), any(), any(), any(), any())).thenReturn(0, 1);
+        when(cardRepository.creditIfUsable(any(), any(), any(), any())).thenReturn(1);
+        when(cardRepository.findById(10L)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findById(20L)).thenReturn(Optional.of(toCard));
+        when(cardRepository.getReferenceById(10L)).thenReturn(fromCard);
+        when(cardRepository.getReferenceById(20L)).thenReturn(toCard);
+        when(transferRepository.save(any(Transfer.class))).thenAnswer(i -> i.getArgument(0));
+
+        Transfer transfer = transferService.createTransfer(10L, 20L, new BigDecimal("30.00"), 1L);
+
+        assertEquals("SUCCESS", transfer.getStatus());
+        verify(transactionTemplate, times(2)).execute(any());
+    }
+
+    @Test
+    void createTransfer_idempotentReplayFromStoreSkipsCards() {
+        Transfer stored = new Transfer();
+        stored.setId(5L);
+        stored.setSourceCard(fromCard);
+        stored.setDestinationCard(toCard);
+        stored.setAmount(new BigDecimal("30.00"));
+        stored.setStatus("SUCCESS");
+        TransferIdempotencyKey key = new TransferIdempotencyKey();
+        key.setTransfer(stored);
+        // сумма в запросе записана иначе — хэш нормализован
+        key.setRequestHash(storedHash(10L, 20L, new BigDecimal("30")));
+        when(idempotencyKeyRepository.findCompleted(1L, "key-1")).thenReturn(Optional.of(key));
+
+        TransferDto dto = transferService.createTransfer(10L, 20L, new BigDecimal("30.00"), 1L, "key-1");
+
+        assertEquals(5L, dto.getId());
+        verifyNoInteractions(cardRepository, transferRepository, transactionTemplate);
+    }
+
+    @Test
+    void createTransfer_idempotencyKeyWithDifferentParametersRejected() {
+        TransferIdempotencyKey key = new TransferIdempotencyKey();
+        key.setTransfer(new Transfer());
+        key.setRequestHash(storedHash(10L, 20L, new BigDecimal("30.00")));
+        when(idempotencyKeyRepository.findCompleted(1L, "key-1")).thenReturn(Optional.of(key));
+
+        assertThrows(IdempotencyKeyReuseException.class, () ->
+                transferService.createTransfer(10L, 20L, new BigDecimal("31.00"), 1L, "key-1"));
+        verifyNoInteractions(transactionTemplate);
+    }
+
+    @Test
+    void createTransfer_idempotentRepeatServedFromCache() {
+        when(cardRepository.findByIdForUpdate(10L)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdForUpdate(20L)).thenReturn(Optional.of(toCard));
+        when(transferRepository.save(any(Transfer.class))).thenAnswer(i -> {
+            Transfer t = i.getArgument(0);
+            t.setId(7L);
+            return t;
+        });
+        when(idempotencyKeyRepository.findCompleted(any(), any())).thenReturn(Optional.empty());
+
+        TransferDto first = transferService.createTransfer(10L, 20L, new BigDecimal("30.00"), 1L, "key-2");
+        TransferDto second = transferService.createTransfer(10L, 20L, new BigDecimal("30.00"), 1L, "key-2");
+
+        assertEquals(7L, second.getId());
+        assertSame(first, second);
+        verify(transferRepository, times(1)).save(any(Transfer.class));
+        verify(idempotencyKeyRepository, times(1)).findCompleted(1L, "key-2");
+        verify(idempotencyKeyRepository).saveAndFlush(argThat(k -> "key-2".equals(k.getIdempotencyKey())));
+        verify(idempotencyKeyRepository).save(argThat(k -> k.getTransfer() != null && k.getTransfer().getId() == 7L));
+    }
+
+    @Test
+    void createTransfers_locksCardsOnceAndReportsEachItem() {
+        when(cardRepository.findAllByIdForUpdate(any())).thenReturn(java.util.List.of(locked(fromCard), locked(toCard)));
+        when(transferRepository.saveAll(any())).thenAnswer(i -> {
+            java.util.List<Transfer> transfers = i.getArgument(0);
+            long id = 100;
+            for (Transfer t : transfers) t.setId(id++);
+            return transfers;
+        });
+
+        java.util.List<BatchTransferResultDto> results = transferService.createTransfers(1L, java.util.List.of(
+                new BatchTransferRequest.Item(10L, 20L, new BigDecimal("30.00")),
+                new BatchTransferRequest.Item(10L, 20L, new BigDecimal("80.00")), // после первого осталось 70
+                new BatchTransferRequest.Item(10L, 99L, new BigDecimal("1.00")),
+                new BatchTransferRequest.Item(20L, 10L, new BigDecimal("5.00"))));
+
+        assertEquals(java.util.List.of("SUCCESS", "REJECTED", "REJECTED", "SUCCESS"),
+                results.stream().map(BatchTransferResultDto::getStatus).toList());
+        assertEquals(100L, results.get(0).getTransferId());
+        assertEquals(ErrorCode.INSUFFICIENT_FUNDS, results.get(1).getErrorCode());
+        assertEquals(ErrorCode.CARD_NOT_FOUND, results.get(2).getErrorCode());
+        assertEquals(101L, results.get(3).getTransferId());
+        assertEquals(new BigDecimal("75.00"), fromCard.getBalance());
+        assertEquals(new BigDecimal("75.00"), toCard.getBalance());
+        verify(cardRepository).findAllByIdForUpdate(argThat(ids -> java.util.List.copyOf(ids).equals(java.util.List.of(10L, 20L, 99L))));
+        verify(transferRepository, never()).save(any());
+        verify(auditTrail).recordAll(argThat(h -> h.size() == 2));
+    }
+
+    @Test
+    void createTransfers_rejectsForeignSourceCardOnce() {
+        User other = new User();
+        other.setId(2L);
+        fromCard.setUser(other);
+        when(cardRepository.findAllByIdForUpdate(any())).thenReturn(java.util.List.of(locked(fromCard), locked(toCard)));
+
+        java.util.List<BatchTransferResultDto> results = transferService.createTransfers(1L, java.util.List.of(
+                new BatchTransferRequest.Item(10L, 20L, new BigDecimal("1.00")),
+                new BatchTransferRequest.Item(10L, 20L, new BigDecimal("2.00"))));
+
+        assertTrue(results.stream().allMatch(r -> r.getErrorCode() == ErrorCode.ACCESS_DENIED));
+        assertEquals(new BigDecimal("100.00"), fromCard.getBalance());
+        verify(securityUtil, times(2)).isAdmin(); // инициатор + одна проверка владения на карту
+    }
+
+    private static CardRepository.LockedCard locked(Card card) {
+        return new CardRepository.LockedCard(card, card.getUser().getId());
+    }
+
+    // тот же канонический вид, что и в сервисе
+    private static String storedHash(Long from, Long to, BigDecimal amount) {
+        try {
+            byte[] digest = java.security.MessageDigest.getInstance("SHA-256")
+                    .digest((from + "|" + to + "|" + amount.stripTrailingZeros().toPlainString()).getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            return java.util.HexFormat.of().formatHex(digest);
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
@@ -163,6 +163,38 @@ class CardSpecificationTest {
         verify(criteriaBuilder).or(namePredicate, usernamePredicate, emailPredicate);
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void hasOwnerNamePrefixShouldEscapeWildcardsAndMatchFromStart() {
+        Predicate expectedPredicate = mock(Predicate.class);
+
+        Expression<String> nameLower = mock(Expression.class);
+        Expression<String> usernameLower = mock(Expression.class);
+        Expression<String> emailLower = mock(Expression.class);
+
+        Predicate namePredicate = mock(Predicate.class);
+        Predicate usernamePredicate = mock(Predicate.class);
+        Predicate emailPredicate = mock(Predicate.class);
+
+        when(criteriaBuilder.lower(namePath)).thenReturn(nameLower);
+        when(criteriaBuilder.lower(usernamePath)).thenReturn(usernameLower);
+        when(criteriaBuilder.lower(emailPath)).thenReturn(emailLower);
+
+        when(criteriaBuilder.like(eq(nameLower), anyString(), eq('\\'))).thenReturn(namePredicate);
+        when(criteriaBuilder.like(eq(usernameLower), anyString(), eq('\\'))).thenReturn(usernamePredicate);
+        when(criteriaBuilder.like(eq(emailLower), anyString(), eq('\\'))).thenReturn(emailPredicate);
+
+        when(criteriaBuilder.or(namePredicate, usernamePredicate, emailPredicate)).thenReturn(expectedPredicate);
+
+        Specification<Card> spec = CardSpecification.hasOwnerNamePrefix(" Iv_an% ");
+        Predicate result = spec.toPredicate(root, query, criteriaBuilder);
+
+        assertEquals(expectedPredicate, result);
+        verify(criteriaBuilder).like(nameLower, "iv\\_an\\%%", '\\');
+        verify(criteriaBuilder).like(usernameLower, "iv\\_an\\%%", '\\');
+        verify(criteriaBuilder).like(emailLower, "iv\\_an\\%%", '\\');
+    }
+
     @Test
     void hasMaskShouldAlwaysReturnConjunction() {
         Predicate expectedPredicate = mock(Predicate.class);
@@ -0,0 +1,45 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedTtlCacheTest {
+
+    @Test
+    void put_whenFull_evictsLeastRecentlyUsed() {
+        BoundedTtlCache<String, Integer> cache = new BoundedTtlCache<>(2, Duration.ofMinutes(1));
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a");
+
+        cache.put("c", 3);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get("a")).isEqualTo(1);
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("c")).isEqualTo(3);
+    }
+
+    @Test
+    void get_expiredEntry_returnsNullAndRemovesIt() {
+        BoundedTtlCache<String, Integer> cache = new BoundedTtlCache<>(10, Duration.ofMinutes(1));
+        cache.put("a", 1, System.currentTimeMillis() - 1);
+
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void disabledCache_storesNothing() {
+        BoundedTtlCache<String, Integer> noTtl = new BoundedTtlCache<>(10, Duration.ZERO);
+        BoundedTtlCache<String, Integer> noSize = new BoundedTtlCache<>(0, Duration.ofMinutes(1));
+        noTtl.put("a", 1);
+        noSize.put("a", 1);
+
+        assertThat(noTtl.get("a")).isNull();
+        assertThat(noSize.get("a")).isNull();
+    }
+}